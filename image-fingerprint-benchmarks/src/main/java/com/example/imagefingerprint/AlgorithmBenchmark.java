@@ -0,0 +1,68 @@
+package com.example.imagefingerprint;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of each {@link FingerprintAlgorithm}: hashing a prepared sample grid, and reducing a subsampled
+ * decode to the algorithm's grid plus hashing it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AlgorithmBenchmark {
+
+    @Param({"ahash", "dhash", "phash", "whash"})
+    public String algorithmName;
+
+    @Param({"64", "256", "1024"})
+    public int bits;
+
+    private FingerprintAlgorithm algorithm;
+    private BufferedImage decoded;
+    private int[] luminance;
+    private long[] out;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        algorithm = FingerprintAlgorithms.forName(algorithmName, bits);
+        byte[] encoded = BenchmarkImages.encode(BenchmarkImages.generate(1920, 1080, 42), "jpg");
+        try (ImageInputStream input = new MemoryCacheImageInputStream(new ByteArrayInputStream(encoded))) {
+            int minSize = Math.max(128, algorithm.sampleWidth() * 4);
+            decoded = ImageDecoder.decode(input, minSize, minSize);
+        }
+        luminance = ImageService.resizeAndGrayscale(decoded, algorithm.sampleWidth(), algorithm.sampleHeight());
+        out = new long[bits / 64];
+    }
+
+    @Benchmark
+    public long[] hash() {
+        algorithm.hash(luminance, out);
+        return out;
+    }
+
+    @Benchmark
+    public long[] reduceAndHash() throws IOException {
+        return ImageService.hash(decoded, algorithm);
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.imagefingerprint;
+
+import javax.imageio.ImageIO;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Random;
+
+/**
+ * Deterministic photo-like test images: gradient background, shapes and per-pixel noise so that
+ * JPEG and PNG encoders produce realistically sized files.
+ */
+final class BenchmarkImages {
+
+    private BenchmarkImages() {
+    }
+
+    static BufferedImage generate(int width, int height, long seed) {
+        Random random = new Random(seed);
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        graphics.setPaint(new GradientPaint(0, 0, new Color(random.nextInt(0x1000000)),
+                width, height, new Color(random.nextInt(0x1000000))));
+        graphics.fillRect(0, 0, width, height);
+        for (int i = 0; i < 40; i++) {
+            graphics.setColor(new Color(random.nextInt(0x1000000)));
+            graphics.setStroke(new BasicStroke(1 + random.nextInt(Math.max(2, width / 100))));
+            int x = random.nextInt(width);
+            int y = random.nextInt(height);
+            int w = random.nextInt(width / 3 + 1);
+            int h = random.nextInt(height / 3 + 1);
+            if (i % 2 == 0) {
+                graphics.fillOval(x, y, w, h);
+            } else {
+                graphics.drawRect(x, y, w, h);
+            }
+        }
+        graphics.dispose();
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int noise = random.nextInt(17) - 8;
+                int rgb = image.getRGB(x, y);
+                image.setRGB(x, y, (clamp(((rgb >> 16) & 0xFF) + noise) << 16)
+                        | (clamp(((rgb >> 8) & 0xFF) + noise) << 8) | clamp((rgb & 0xFF) + noise));
+            }
+        }
+        return image;
+    }
+
+    static byte[] encode(BufferedImage image, String format) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            if (!ImageIO.write(image, format, out)) {
+                throw new IllegalArgumentException("No ImageIO writer for " + format);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(255, value));
+    }
+}
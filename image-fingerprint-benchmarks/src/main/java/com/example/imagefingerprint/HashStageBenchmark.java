@@ -0,0 +1,69 @@
+package com.example.imagefingerprint;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Image independent stages: hashing the luminance grid, hex encoding and similarity.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HashStageBenchmark {
+
+    private final ImageService imageService = new ImageService();
+    private int[] luminance;
+    private long hash;
+    private long otherHash;
+    private String hex;
+    private String otherHex;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        luminance = ImageService.resizeAndGrayscale(BenchmarkImages.generate(640, 480, 1));
+        hash = ImageService.calculateBinaryHash(luminance);
+        otherHash = ImageService.calculateBinaryHash(ImageService.resizeAndGrayscale(BenchmarkImages.generate(640, 480, 2)));
+        hex = Fingerprint.toHex(hash);
+        otherHex = Fingerprint.toHex(otherHash);
+    }
+
+    @Benchmark
+    public long calculateBinaryHash() {
+        return ImageService.calculateBinaryHash(luminance);
+    }
+
+    @Benchmark
+    public String binaryToHex() {
+        return Fingerprint.toHex(hash);
+    }
+
+    @Benchmark
+    public long parseHex() {
+        return Fingerprint.parseHex(hex);
+    }
+
+    @Benchmark
+    public double calculateSimilarity() {
+        return ImageService.calculateSimilarity(hash, otherHash);
+    }
+
+    @Benchmark
+    public double calculateSimilarityHex() {
+        return imageService.calculateSimilarity(hex, otherHex);
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.imagefingerprint;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Image dependent stages of {@link ImageService}: decode, reduction to the hash grid and the whole
+ * stream pipeline, across generated images of several sizes and formats.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageStageBenchmark {
+
+    @Param({"640x480", "1920x1080", "6000x4000"})
+    public String size;
+
+    @Param({"jpg", "png"})
+    public String format;
+
+    private byte[] encoded;
+    private BufferedImage decoded;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        String[] dimensions = size.split("x");
+        BufferedImage image = BenchmarkImages.generate(Integer.parseInt(dimensions[0]), Integer.parseInt(dimensions[1]), 42);
+        encoded = BenchmarkImages.encode(image, format);
+        decoded = ImageIO.read(new ByteArrayInputStream(encoded));
+    }
+
+    @Benchmark
+    public BufferedImage imageIoRead() throws IOException {
+        return ImageIO.read(new ByteArrayInputStream(encoded));
+    }
+
+    @Benchmark
+    public BufferedImage subsampledDecode() throws IOException {
+        try (ImageInputStream input = new MemoryCacheImageInputStream(new ByteArrayInputStream(encoded))) {
+            return ImageDecoder.decode(input, 64, 64);
+        }
+    }
+
+    @Benchmark
+    public int[] resizeAndGrayscale() throws IOException {
+        return ImageService.resizeAndGrayscale(decoded);
+    }
+
+    @Benchmark
+    public Fingerprint fullPipeline() throws IOException {
+        return ImageService.computeFingerprint(new ByteArrayInputStream(encoded));
+    }
+}
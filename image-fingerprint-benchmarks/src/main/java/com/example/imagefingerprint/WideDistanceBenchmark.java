@@ -0,0 +1,66 @@
+package com.example.imagefingerprint;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hamming distance of two fingerprints at each supported size, against the single {@code long}
+ * comparison in {@link HashStageBenchmark#calculateSimilarity}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WideDistanceBenchmark {
+
+    @Param({"64", "256", "1024"})
+    public int bits;
+
+    private long[] a;
+    private long[] b;
+    private long single;
+    private long otherSingle;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(bits);
+        a = new long[bits / 64];
+        b = new long[bits / 64];
+        for (int i = 0; i < a.length; i++) {
+            a[i] = random.nextLong();
+            b[i] = random.nextLong();
+        }
+        single = a[0];
+        otherSingle = b[0];
+    }
+
+    @Benchmark
+    public int distance() {
+        return WideFingerprint.distance(a, b);
+    }
+
+    @Benchmark
+    public double similarity() {
+        return WideFingerprint.similarity(a, b);
+    }
+
+    @Benchmark
+    public int singleLongDistance() {
+        return Fingerprint.distance(single, otherSingle);
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.imagefingerprint;
+
+/**
+ * aHash: one bit per cell of a size x size luminance grid, set when the cell is brighter than the grid mean.
+ */
+final class AverageHash implements FingerprintAlgorithm {
+
+    private final int size;
+    private final int cells;
+
+    AverageHash(int size) {
+        this.size = size;
+        this.cells = size * size;
+    }
+
+    @Override
+    public String name() {
+        return "ahash";
+    }
+
+    @Override
+    public int bits() {
+        return cells;
+    }
+
+    @Override
+    public int sampleWidth() {
+        return size;
+    }
+
+    @Override
+    public int sampleHeight() {
+        return size;
+    }
+
+    @Override
+    public void hash(int[] luminance, long[] out) {
+        long sum = 0;
+        for (int i = 0; i < cells; i++) {
+            sum += luminance[i];
+        }
+        long average = sum / cells;
+
+        // First pixel ends up in the most significant bit, matching the previous binary string layout
+        for (int word = 0; word < out.length; word++) {
+            long hash = 0;
+            for (int i = word * Long.SIZE, end = i + Long.SIZE; i < end; i++) {
+                hash = (hash << 1) | (luminance[i] > average ? 1L : 0L);
+            }
+            out[word] = hash;
+        }
+    }
+}
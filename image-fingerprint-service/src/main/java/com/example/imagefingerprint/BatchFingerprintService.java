@@ -0,0 +1,116 @@
+package com.example.imagefingerprint;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.FileNotFoundException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Fingerprints many images per request by fanning the items out over the bounded batch pool.
+ * A failing item is reported in its result and does not fail the rest of the batch.
+ */
+@Service
+public class BatchFingerprintService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchFingerprintService.class);
+
+    private final CachedFingerprintService fingerprintService;
+    private final ExecutorService executor;
+    private final FingerprintProperties properties;
+
+    public BatchFingerprintService(CachedFingerprintService fingerprintService,
+                                   @Qualifier("batchFingerprintExecutor") ExecutorService executor,
+                                   FingerprintProperties properties) {
+        this.fingerprintService = fingerprintService;
+        this.executor = executor;
+        this.properties = properties;
+    }
+
+    public List<BatchItemResult> fingerprintUploads(List<MultipartFile> files, FingerprintAlgorithm algorithm) {
+        checkSize(files);
+        List<String> sources = new ArrayList<>(files.size());
+        List<Callable<String>> tasks = new ArrayList<>(files.size());
+        for (MultipartFile file : files) {
+            String source = file.getOriginalFilename();
+            sources.add(source);
+            tasks.add(() -> {
+                if (file.isEmpty()) {
+                    throw new IllegalArgumentException("File is empty.");
+                }
+                return fingerprintService.fingerprint(file.getInputStream(), "uploaded file: " + source, algorithm, file.getSize()).toHex();
+            });
+        }
+        return run(sources, tasks);
+    }
+
+    public List<BatchItemResult> fingerprintPaths(List<String> filePaths, FingerprintAlgorithm algorithm) {
+        checkSize(filePaths);
+        List<Callable<String>> tasks = new ArrayList<>(filePaths.size());
+        for (String filePath : filePaths) {
+            tasks.add(() -> {
+                if (filePath == null || filePath.trim().isEmpty()) {
+                    throw new IllegalArgumentException("File path cannot be null or empty.");
+                }
+                if (!Files.isRegularFile(Paths.get(filePath))) {
+                    throw new FileNotFoundException("File not found: " + filePath);
+                }
+                return fingerprintService.fingerprint(filePath, algorithm).toHex();
+            });
+        }
+        return run(filePaths, tasks);
+    }
+
+    private void checkSize(List<?> items) {
+        if (items == null || items.isEmpty()) {
+            throw new IllegalArgumentException("Batch must contain at least one item.");
+        }
+        int maxItems = properties.getBatch().getMaxItems();
+        if (items.size() > maxItems) {
+            throw new IllegalArgumentException("Batch contains " + items.size() + " items, the maximum is " + maxItems + ".");
+        }
+    }
+
+    private List<BatchItemResult> run(List<String> sources, List<Callable<String>> tasks) {
+        List<Future<String>> futures = new ArrayList<>(tasks.size());
+        for (Callable<String> task : tasks) {
+            futures.add(executor.submit(task));
+        }
+        List<BatchItemResult> results = new ArrayList<>(tasks.size());
+        for (int i = 0; i < futures.size(); i++) {
+            String source = sources.get(i);
+            try {
+                results.add(BatchItemResult.success(i, source, futures.get(i).get()));
+            } catch (ExecutionException e) {
+                Throwable cause = rootCause(e);
+                logger.debug("Batch item {} ({}) failed: {}", i, source, cause.getMessage());
+                results.add(BatchItemResult.failure(i, source, cause.getMessage()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                for (int j = i; j < futures.size(); j++) {
+                    futures.get(j).cancel(true);
+                }
+                throw new IllegalStateException("Interrupted while waiting for batch results.", e);
+            }
+        }
+        return results;
+    }
+
+    private static Throwable rootCause(Throwable throwable) {
+        Throwable cause = throwable;
+        while (cause.getCause() != null && cause.getCause() != cause) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.imagefingerprint;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Outcome of one item of a batch request: either a fingerprint or an error message.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchItemResult {
+
+    private final int index;
+    private final String source;
+    private final String fingerprint;
+    private final String error;
+
+    private BatchItemResult(int index, String source, String fingerprint, String error) {
+        this.index = index;
+        this.source = source;
+        this.fingerprint = fingerprint;
+        this.error = error;
+    }
+
+    static BatchItemResult success(int index, String source, String fingerprint) {
+        return new BatchItemResult(index, source, fingerprint, null);
+    }
+
+    static BatchItemResult failure(int index, String source, String error) {
+        return new BatchItemResult(index, source, null, error);
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.imagefingerprint;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * BK-tree over Hamming distance, stored in parallel primitive arrays (one slot per node, children
+ * linked through first-child/next-sibling pointers) so millions of entries do not cost one object each.
+ * <p>
+ * Removal only marks the node dead, because its subtree still routes searches. Once dead nodes
+ * outnumber live ones the tree is rebuilt from the live entries.
+ */
+public class BkTreeIndex implements FingerprintIndex {
+
+    private static final int NONE = -1;
+
+    private long[] hashes;
+    private long[] ids;
+    private int[] firstChild;
+    private int[] nextSibling;
+    private byte[] parentDistance;
+    private boolean[] dead;
+    private int nodeCount;
+    private int deadCount;
+    private final LongIntHashMap nodeById;
+
+    public BkTreeIndex() {
+        this(1024);
+    }
+
+    public BkTreeIndex(int expectedSize) {
+        allocate(Math.max(16, expectedSize));
+        nodeById = new LongIntHashMap(expectedSize);
+    }
+
+    @Override
+    public void add(long id, long fingerprint) {
+        remove(id);
+        int node = newNode(id, fingerprint);
+        nodeById.put(id, node);
+        if (node == 0) {
+            return;
+        }
+        int current = 0;
+        while (true) {
+            int distance = Fingerprint.distance(fingerprint, hashes[current]);
+            int child = childAt(current, distance);
+            if (child == NONE) {
+                parentDistance[node] = (byte) distance;
+                nextSibling[node] = firstChild[current];
+                firstChild[current] = node;
+                return;
+            }
+            current = child;
+        }
+    }
+
+    @Override
+    public boolean remove(long id) {
+        int node = nodeById.remove(id);
+        if (node == LongIntHashMap.NO_VALUE) {
+            return false;
+        }
+        dead[node] = true;
+        deadCount++;
+        if (deadCount > 1024 && deadCount > size()) {
+            rebuild();
+        }
+        return true;
+    }
+
+    @Override
+    public List<IndexMatch> search(long fingerprint, int maxDistance, int limit) {
+        List<IndexMatch> matches = new ArrayList<>();
+        if (nodeCount == 0) {
+            return matches;
+        }
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int node = stack[--top];
+            int distance = Fingerprint.distance(fingerprint, hashes[node]);
+            if (distance <= maxDistance && !dead[node]) {
+                matches.add(new IndexMatch(ids[node], hashes[node], distance));
+            }
+            // Triangle inequality: only children whose edge distance is within maxDistance of ours can match
+            int low = distance - maxDistance;
+            int high = distance + maxDistance;
+            for (int child = firstChild[node]; child != NONE; child = nextSibling[child]) {
+                int edge = parentDistance[child];
+                if (edge >= low && edge <= high) {
+                    if (top == stack.length) {
+                        stack = Arrays.copyOf(stack, stack.length * 2);
+                    }
+                    stack[top++] = child;
+                }
+            }
+        }
+        matches.sort(IndexMatch.BY_DISTANCE);
+        return matches.size() > limit ? new ArrayList<>(matches.subList(0, limit)) : matches;
+    }
+
+    @Override
+    public int size() {
+        return nodeCount - deadCount;
+    }
+
+    @Override
+    public long memoryBytes() {
+        // hash + id + two links + edge distance + dead flag per node slot
+        return hashes.length * (8L + 8L + 4L + 4L + 1L + 1L) + nodeById.memoryBytes();
+    }
+
+    private int childAt(int node, int distance) {
+        for (int child = firstChild[node]; child != NONE; child = nextSibling[child]) {
+            if (parentDistance[child] == distance) {
+                return child;
+            }
+        }
+        return NONE;
+    }
+
+    private int newNode(long id, long fingerprint) {
+        if (nodeCount == hashes.length) {
+            grow(hashes.length * 2);
+        }
+        int node = nodeCount++;
+        hashes[node] = fingerprint;
+        ids[node] = id;
+        firstChild[node] = NONE;
+        nextSibling[node] = NONE;
+        parentDistance[node] = 0;
+        dead[node] = false;
+        return node;
+    }
+
+    private void rebuild() {
+        long[] liveIds = new long[size()];
+        long[] liveHashes = new long[size()];
+        int live = 0;
+        for (int node = 0; node < nodeCount; node++) {
+            if (!dead[node]) {
+                liveIds[live] = ids[node];
+                liveHashes[live] = hashes[node];
+                live++;
+            }
+        }
+        allocate(Math.max(16, live * 2));
+        nodeCount = 0;
+        deadCount = 0;
+        nodeById.clear();
+        for (int i = 0; i < live; i++) {
+            add(liveIds[i], liveHashes[i]);
+        }
+    }
+
+    private void allocate(int capacity) {
+        hashes = new long[capacity];
+        ids = new long[capacity];
+        firstChild = new int[capacity];
+        nextSibling = new int[capacity];
+        parentDistance = new byte[capacity];
+        dead = new boolean[capacity];
+    }
+
+    private void grow(int capacity) {
+        hashes = Arrays.copyOf(hashes, capacity);
+        ids = Arrays.copyOf(ids, capacity);
+        firstChild = Arrays.copyOf(firstChild, capacity);
+        nextSibling = Arrays.copyOf(nextSibling, capacity);
+        parentDistance = Arrays.copyOf(parentDistance, capacity);
+        dead = Arrays.copyOf(dead, capacity);
+    }
+}
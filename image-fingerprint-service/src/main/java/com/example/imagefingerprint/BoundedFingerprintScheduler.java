@@ -0,0 +1,67 @@
+package com.example.imagefingerprint;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Component;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * CPU scheduler for the reactive endpoints, with one thread per {@code image.fingerprint.cpu.pool-size}.
+ * At most pool size plus {@code image.fingerprint.cpu.queue-capacity} requests are admitted at once,
+ * counting from before their upload is read, so memory held by uploads in flight is bounded too.
+ * Requests beyond that are turned away instead of queued.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class BoundedFingerprintScheduler implements DisposableBean {
+
+    private final Scheduler scheduler;
+    private final int limit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public BoundedFingerprintScheduler(FingerprintProperties properties) {
+        FingerprintProperties.Cpu cpu = properties.getCpu();
+        this.scheduler = Schedulers.newParallel("fingerprint-reactive", cpu.getPoolSize());
+        this.limit = cpu.getPoolSize() + cpu.getQueueCapacity();
+    }
+
+    public Scheduler scheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Admits a request if fewer than {@link #limit()} are in flight. Every successful call must be
+     * paired with {@link #release()}.
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    public int limit() {
+        return limit;
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.dispose();
+    }
+}
@@ -0,0 +1,240 @@
+package com.example.imagefingerprint;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Fingerprint cache in front of {@link ImageService}. Keys start with the algorithm name and size and the
+ * service's {@link ImageService#pipelineSignature() pipeline signature}. Local
+ * files are keyed by (path, size, mtime), so an unchanged file is never read again; uploaded streams are
+ * keyed by an XXH64 digest of their bytes, so re-submitted content skips decoding. Eviction is Caffeine's size bounded W-TinyLFU policy.
+ * <p>
+ * Entries can be written to a file on shutdown and loaded at startup. Both key kinds stay valid across
+ * restarts: file keys change when the file does and stream keys are content addressed. The file records
+ * the pipeline signature and is discarded when the pipeline settings have changed since it was written.
+ */
+@Service
+public class CachedFingerprintService implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(CachedFingerprintService.class);
+    private static final int PERSISTENCE_MAGIC = 0x49465032; // "IFP2", followed by the pipeline signature
+
+    private final ImageService imageService;
+    private final FingerprintProperties.Cache config;
+    private final Cache<String, long[]> cache;
+
+    public CachedFingerprintService(ImageService imageService, FingerprintProperties properties) {
+        this.imageService = imageService;
+        this.config = properties.getCache();
+        if (config.isEnabled()) {
+            this.cache = Caffeine.newBuilder().maximumSize(config.getMaxEntries()).recordStats().build();
+            load();
+        } else {
+            this.cache = null;
+        }
+    }
+
+    public WideFingerprint fingerprint(String filePath) {
+        return fingerprint(filePath, imageService.defaultAlgorithm());
+    }
+
+    public WideFingerprint fingerprint(String filePath, FingerprintAlgorithm algorithm) {
+        if (cache == null) {
+            return imageService.fingerprint(filePath, algorithm);
+        }
+        String key = fileKey(filePath);
+        if (key == null) {
+            // Unreadable or missing: let the service produce its usual error
+            return imageService.fingerprint(filePath, algorithm);
+        }
+        key = keyPrefix(algorithm) + key;
+        long[] cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return new WideFingerprint(cached);
+        }
+        WideFingerprint fingerprint = imageService.fingerprint(filePath, algorithm);
+        cache.put(key, fingerprint.words());
+        return fingerprint;
+    }
+
+    /**
+     * Fingerprints the stream, reading it fully to digest its content first. The stream is closed.
+     */
+    public WideFingerprint fingerprint(InputStream imageStream, String imageSourceDescription) throws IOException {
+        return fingerprint(imageStream, imageSourceDescription, imageService.defaultAlgorithm());
+    }
+
+    /**
+     * Fingerprints a stream of about sizeHint bytes with the configured algorithm. The stream is closed.
+     */
+    public WideFingerprint fingerprint(InputStream imageStream, String imageSourceDescription, long sizeHint) throws IOException {
+        return fingerprint(imageStream, imageSourceDescription, imageService.defaultAlgorithm(), sizeHint);
+    }
+
+    public WideFingerprint fingerprint(InputStream imageStream, String imageSourceDescription,
+                                       FingerprintAlgorithm algorithm) throws IOException {
+        return fingerprint(imageStream, imageSourceDescription, algorithm, -1);
+    }
+
+    /**
+     * Like {@link #fingerprint(InputStream, String, FingerprintAlgorithm)} for a stream of about sizeHint
+     * bytes, such as an upload's Content-Length, so it is read into a buffer of the right size.
+     */
+    public WideFingerprint fingerprint(InputStream imageStream, String imageSourceDescription,
+                                       FingerprintAlgorithm algorithm, long sizeHint) throws IOException {
+        if (cache == null) {
+            return imageService.fingerprint(imageStream, imageSourceDescription, algorithm, sizeHint);
+        }
+        if (imageStream == null) {
+            throw new IllegalArgumentException("Image stream cannot be null for " + imageSourceDescription);
+        }
+        try (ImageBufferPool.Content content = imageService.buffer(imageStream, sizeHint)) {
+            return fingerprint(content.buffer(), imageSourceDescription, algorithm);
+        }
+    }
+
+    /**
+     * Fingerprints an encoded image already held in a heap buffer.
+     */
+    public WideFingerprint fingerprint(ByteBuffer content, String imageSourceDescription,
+                                       FingerprintAlgorithm algorithm) throws IOException {
+        if (cache == null) {
+            return imageService.fingerprint(content, imageSourceDescription, algorithm);
+        }
+        int length = content.remaining();
+        String key = keyPrefix(algorithm) + "xxh64:"
+                + Long.toHexString(XxHash64.hash(content.array(), content.arrayOffset() + content.position(), length, 0))
+                + ":" + length;
+        long[] cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return new WideFingerprint(cached);
+        }
+        WideFingerprint fingerprint = imageService.fingerprint(content, imageSourceDescription, algorithm);
+        cache.put(key, fingerprint.words());
+        return fingerprint;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", cache != null);
+        if (cache != null) {
+            CacheStats cacheStats = cache.stats();
+            stats.put("size", cache.estimatedSize());
+            stats.put("maxEntries", config.getMaxEntries());
+            stats.put("hits", cacheStats.hitCount());
+            stats.put("misses", cacheStats.missCount());
+            stats.put("hitRate", cacheStats.hitRate());
+            stats.put("evictions", cacheStats.evictionCount());
+        }
+        return stats;
+    }
+
+    Cache<String, long[]> cache() {
+        return cache;
+    }
+
+    @Override
+    public void destroy() {
+        if (cache == null || config.getPersistPath() == null || config.getPersistPath().isEmpty()) {
+            return;
+        }
+        Path target = Paths.get(config.getPersistPath());
+        try {
+            if (target.toAbsolutePath().getParent() != null) {
+                Files.createDirectories(target.toAbsolutePath().getParent());
+            }
+            Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+            Map<String, long[]> entries = cache.asMap();
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                out.writeInt(PERSISTENCE_MAGIC);
+                out.writeUTF(imageService.pipelineSignature());
+                out.writeInt(entries.size());
+                for (Map.Entry<String, long[]> entry : entries.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeByte(entry.getValue().length);
+                    for (long word : entry.getValue()) {
+                        out.writeLong(word);
+                    }
+                }
+            }
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logger.info("Saved {} fingerprint cache entries to {}", entries.size(), target);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not save fingerprint cache to {}: {}", target, e.getMessage());
+        }
+    }
+
+    private void load() {
+        if (config.getPersistPath() == null || config.getPersistPath().isEmpty()) {
+            return;
+        }
+        Path source = Paths.get(config.getPersistPath());
+        if (!Files.isRegularFile(source)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(source)))) {
+            if (in.readInt() != PERSISTENCE_MAGIC) {
+                logger.warn("Ignoring fingerprint cache file {}: unknown format", source);
+                return;
+            }
+            String signature = in.readUTF();
+            if (!signature.equals(imageService.pipelineSignature())) {
+                logger.info("Discarding fingerprint cache file {}: written for pipeline {}, now {}", source, signature,
+                        imageService.pipelineSignature());
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF();
+                long[] words = new long[in.readUnsignedByte()];
+                for (int w = 0; w < words.length; w++) {
+                    words[w] = in.readLong();
+                }
+                cache.put(key, words);
+            }
+            logger.info("Loaded {} fingerprint cache entries from {}", count, source);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not load fingerprint cache from {}: {}", source, e.getMessage());
+        }
+    }
+
+    private String keyPrefix(FingerprintAlgorithm algorithm) {
+        return algorithm.name() + '/' + algorithm.bits() + '/' + imageService.pipelineSignature() + ':';
+    }
+
+    private static String fileKey(String filePath) {
+        if (filePath == null || filePath.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            Path path = Paths.get(filePath).toAbsolutePath().normalize();
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            if (!attributes.isRegularFile()) {
+                return null;
+            }
+            return "file:" + path + "|" + attributes.size() + "|" + attributes.lastModifiedTime().toMillis();
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.imagefingerprint;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Runs decode and hash work on the bounded CPU pool and waits for it on the calling request thread.
+ * On a virtual thread the wait releases the carrier, so slow clients cost no platform thread.
+ */
+@Component
+public class CpuBoundExecutor {
+
+    private final ExecutorService executor;
+
+    public CpuBoundExecutor(@Qualifier("cpuFingerprintExecutor") ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Runs the task on the CPU pool and returns its result, rethrowing its IOException or
+     * unchecked exception as if it had run on the caller.
+     *
+     * @throws DecodeRejectedException, retryable, when the pool's queue is full
+     */
+    public <T> T call(Callable<T> task) throws IOException {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            throw new DecodeRejectedException("All fingerprint threads are busy and the queue is full.", 0, true);
+        }
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause.getMessage(), cause);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the fingerprint.", e);
+        }
+    }
+}
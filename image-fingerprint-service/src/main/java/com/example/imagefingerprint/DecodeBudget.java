@@ -0,0 +1,76 @@
+package com.example.imagefingerprint;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounds the memory held by concurrent decodes. Each decode reserves its estimated size, computed
+ * from the image header before any pixel is read, and waits in arrival order up to a deadline when
+ * the budget is taken. Reservations are counted in KiB so that budgets of any heap size fit the
+ * semaphore's int permits.
+ */
+public class DecodeBudget {
+
+    private static final int UNIT = 1024;
+
+    private final Semaphore permits;
+    private final int totalUnits;
+    private final long maxWaitMillis;
+
+    public DecodeBudget(long budgetBytes, long maxWaitMillis) {
+        if (budgetBytes < UNIT) {
+            throw new IllegalArgumentException("Decode memory budget must be at least " + UNIT + " bytes.");
+        }
+        this.totalUnits = (int) Math.min(Integer.MAX_VALUE, budgetBytes / UNIT);
+        this.permits = new Semaphore(totalUnits, true);
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    /**
+     * The configured budget, or a quarter of the maximum heap when {@code memory-budget} is 0.
+     */
+    static DecodeBudget fromProperties(FingerprintProperties.Admission admission) {
+        long budget = admission.getMemoryBudget() > 0 ? admission.getMemoryBudget() : Runtime.getRuntime().maxMemory() / 4;
+        return new DecodeBudget(budget, admission.getMaxWaitMillis());
+    }
+
+    /**
+     * Reserves bytes from the budget, waiting up to the deadline. Returns the reservation to pass to
+     * {@link #release(int)} once the decoded image is no longer needed.
+     *
+     * @throws DecodeRejectedException when the bytes exceed the whole budget or the deadline passes
+     */
+    public int reserve(long bytes) {
+        int units = (int) Math.max(1, Math.min(Integer.MAX_VALUE, (bytes + UNIT - 1) / UNIT));
+        if (units > totalUnits) {
+            throw new DecodeRejectedException("Image needs about " + bytes + " bytes to decode, more than the decode memory budget of "
+                    + (long) totalUnits * UNIT + " bytes.", bytes, false);
+        }
+        try {
+            if (!permits.tryAcquire(units, maxWaitMillis, TimeUnit.MILLISECONDS)) {
+                throw new DecodeRejectedException("Decode memory budget exhausted, " + bytes
+                        + " bytes not available within " + maxWaitMillis + " ms.", bytes, true);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DecodeRejectedException("Interrupted while waiting for decode memory.", bytes, true);
+        }
+        return units;
+    }
+
+    public void release(int reservation) {
+        permits.release(reservation);
+    }
+
+    public long budgetBytes() {
+        return (long) totalUnits * UNIT;
+    }
+
+    public long availableBytes() {
+        return (long) permits.availablePermits() * UNIT;
+    }
+
+    public int waiting() {
+        return permits.getQueueLength();
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.imagefingerprint;
+
+/**
+ * Thrown when a decode cannot reserve its estimated memory from the {@link DecodeBudget}, either
+ * because the wait deadline passed or because the image would not fit even in an idle budget.
+ */
+public class DecodeRejectedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long requiredBytes;
+    private final boolean retryable;
+
+    public DecodeRejectedException(String message, long requiredBytes, boolean retryable) {
+        super(message);
+        this.requiredBytes = requiredBytes;
+        this.retryable = retryable;
+    }
+
+    public long getRequiredBytes() {
+        return requiredBytes;
+    }
+
+    /**
+     * True when the budget was only busy, false when the image would never fit in it.
+     */
+    public boolean isRetryable() {
+        return retryable;
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.imagefingerprint;
+
+/**
+ * How an image is turned into pixels, chosen from its {@link ImageProbe} before decoding.
+ */
+public enum DecodeStrategy {
+
+    /**
+     * Use the embedded thumbnail, falling back to a subsampled decode when it is missing or unusable.
+     */
+    THUMBNAIL,
+
+    /**
+     * Decode every Nth pixel so the raster is about the size the hash needs.
+     */
+    SUBSAMPLED,
+
+    /**
+     * Subsampled decode of horizontal bands in parallel, for very large images in formats whose
+     * readers can decode a region without the rest of the image.
+     */
+    TILED,
+
+    /**
+     * Decode at full resolution; the image is already no larger than the hash needs.
+     */
+    FULL;
+
+    /**
+     * Thumbnails are only worth reading for JPEGs, whose EXIF thumbnails readers do not report, or
+     * images with reader-visible thumbnails, and only when the main image would need subsampling.
+     * Images of at least tiledMinPixels in a random access format are tiled; 0 disables tiling.
+     */
+    static DecodeStrategy select(ImageProbe probe, boolean useThumbnails, int minWidth, int minHeight, long tiledMinPixels) {
+        boolean subsample = ImageDecoder.subsamplingPeriod(probe.getWidth(), minWidth) > 1
+                || ImageDecoder.subsamplingPeriod(probe.getHeight(), minHeight) > 1;
+        if (!subsample) {
+            return FULL;
+        }
+        if (useThumbnails && ("jpeg".equals(probe.getFormat()) || probe.getThumbnails() > 0)) {
+            return THUMBNAIL;
+        }
+        if (tiledMinPixels > 0 && probe.pixels() >= tiledMinPixels && TiledDecoder.supports(probe.getFormat())) {
+            return TILED;
+        }
+        return SUBSAMPLED;
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.imagefingerprint;
+
+/**
+ * dHash: samples a (size + 1) x size grid and sets one bit per horizontally adjacent pair when the right
+ * cell is brighter than the left one. Tracks gradients rather than absolute brightness, so it is robust to
+ * exposure and contrast changes.
+ */
+final class DifferenceHash implements FingerprintAlgorithm {
+
+    private final int size;
+
+    DifferenceHash(int size) {
+        this.size = size;
+    }
+
+    @Override
+    public String name() {
+        return "dhash";
+    }
+
+    @Override
+    public int bits() {
+        return size * size;
+    }
+
+    @Override
+    public int sampleWidth() {
+        return size + 1;
+    }
+
+    @Override
+    public int sampleHeight() {
+        return size;
+    }
+
+    @Override
+    public void hash(int[] luminance, long[] out) {
+        int width = size + 1;
+        long hash = 0;
+        int bit = 0;
+        for (int y = 0; y < size; y++) {
+            int row = y * width;
+            for (int x = 0; x < size; x++) {
+                hash = (hash << 1) | (luminance[row + x + 1] > luminance[row + x] ? 1L : 0L);
+                if ((++bit & 63) == 0) {
+                    out[(bit >>> 6) - 1] = hash;
+                    hash = 0;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,698 @@
+package com.example.imagefingerprint;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.ImageIO;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fingerprints every image below a root directory and streams the results to an output file.
+ * <p>
+ * The work is split into stages connected by bounded queues: one walker thread lists files with
+ * {@link Files#walkFileTree}, I/O threads read file contents, CPU threads decode and hash, and one writer
+ * thread appends records to the output. The queues bound memory to a few hundred files however large the
+ * tree is, and a full queue stalls the stage in front of it instead of buffering. Files above the
+ * configured maximum size are recorded as failures without being read.
+ * <p>
+ * The writer periodically flushes and records the valid output length in a {@code .checkpoint} file next
+ * to the output. A resumed job truncates the output to the last checkpoint, loads the XXH64 digests of the
+ * paths already fingerprinted into a primitive set and skips them while walking. Files recorded as failures
+ * are tried again and recorded a second time; the last record for a path is the current one.
+ */
+final class DirectoryFingerprintJob {
+
+    private static final Logger logger = LoggerFactory.getLogger(DirectoryFingerprintJob.class);
+
+    private static final Object END = new Object();
+    private static final long POLL_MILLIS = 100;
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+    private static final int BINARY_MAGIC = 0x49465046; // "IFPF"
+    private static final String CSV_HEADER = "path,fingerprint,error\n";
+
+    enum Format {
+        CSV,
+        BINARY;
+
+        static Format parse(String value) {
+            if (value == null || value.isEmpty()) {
+                return CSV;
+            }
+            try {
+                return valueOf(value.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown output format '" + value + "', expected csv or binary.");
+            }
+        }
+    }
+
+    enum State {
+        RUNNING,
+        COMPLETED,
+        FAILED,
+        CANCELLED
+    }
+
+    private final long id;
+    private final Path root;
+    private final Path output;
+    private final Path checkpoint;
+    private final Format format;
+    private final FingerprintAlgorithm algorithm;
+    private final boolean resume;
+    private final ImageService imageService;
+    private final FingerprintProperties.Job config;
+    private final FingerprintMetrics retryingMetrics;
+    private final Set<String> suffixes = new HashSet<>();
+
+    private final BlockingQueue<Object> paths;
+    private final BlockingQueue<Object> contents;
+    private final BlockingQueue<Object> results;
+    private final AtomicInteger activeReaders;
+    private final AtomicInteger activeWorkers;
+    private final List<Thread> threads = new ArrayList<>();
+    private final CountDownLatch finished = new CountDownLatch(1);
+
+    private final AtomicLong discovered = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong bytesRead = new AtomicLong();
+
+    private LongIntHashMap completedPaths = new LongIntHashMap();
+    private long priorRecords;
+    private volatile State state = State.RUNNING;
+    private volatile String error;
+    private volatile boolean cancelled;
+    private long startedAt;
+    private volatile long finishedAt;
+
+    DirectoryFingerprintJob(long id, Path root, Path output, Format format, FingerprintAlgorithm algorithm,
+                            boolean resume, ImageService imageService, FingerprintProperties.Job config) {
+        this.id = id;
+        this.root = root;
+        this.output = output;
+        this.checkpoint = output.resolveSibling(output.getFileName() + ".checkpoint");
+        this.format = format;
+        this.algorithm = algorithm;
+        this.resume = resume;
+        this.imageService = imageService;
+        this.config = config;
+        this.retryingMetrics = imageService.metrics().withoutBusyErrors();
+        for (String suffix : ImageIO.getReaderFileSuffixes()) {
+            suffixes.add(suffix.toLowerCase(Locale.ROOT));
+        }
+        this.paths = new ArrayBlockingQueue<>(config.getQueueCapacity());
+        this.contents = new ArrayBlockingQueue<>(config.getQueueCapacity());
+        this.results = new ArrayBlockingQueue<>(config.getQueueCapacity());
+        this.activeReaders = new AtomicInteger(config.getIoThreads());
+        this.activeWorkers = new AtomicInteger(config.getCpuThreads());
+    }
+
+    long id() {
+        return id;
+    }
+
+    Path output() {
+        return output;
+    }
+
+    boolean isRunning() {
+        return state == State.RUNNING;
+    }
+
+    /**
+     * Prepares the output (truncating to the last checkpoint when resuming) and starts the stage threads.
+     */
+    void start() throws IOException {
+        startedAt = System.currentTimeMillis();
+        long validLength = prepareOutput();
+        OutputStream out = new BufferedOutputStream(Files.newOutputStream(output,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND), 1 << 16);
+
+        threads.add(new Thread(this::walk, "fingerprint-job-" + id + "-walker"));
+        for (int i = 0; i < config.getIoThreads(); i++) {
+            threads.add(new Thread(this::read, "fingerprint-job-" + id + "-io-" + i));
+        }
+        for (int i = 0; i < config.getCpuThreads(); i++) {
+            threads.add(new Thread(this::hash, "fingerprint-job-" + id + "-cpu-" + i));
+        }
+        threads.add(new Thread(() -> write(out, validLength), "fingerprint-job-" + id + "-writer"));
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        logger.info("Started fingerprint job {} over {} writing {} to {}", id, root, format, output);
+    }
+
+    void cancel() {
+        cancelled = true;
+    }
+
+    boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        return finished.await(timeout, unit);
+    }
+
+    Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        long end = finishedAt > 0 ? finishedAt : System.currentTimeMillis();
+        long elapsed = Math.max(1, end - startedAt);
+        status.put("id", id);
+        status.put("state", state.name());
+        status.put("root", root.toString());
+        status.put("output", output.toString());
+        status.put("format", format.name().toLowerCase(Locale.ROOT));
+        status.put("algorithm", algorithm.name());
+        status.put("bits", algorithm.bits());
+        status.put("discovered", discovered.get());
+        status.put("skipped", skipped.get());
+        status.put("processed", processed.get());
+        status.put("failed", failed.get());
+        status.put("bytesRead", bytesRead.get());
+        status.put("elapsedMillis", elapsed);
+        status.put("filesPerSecond", (processed.get() + failed.get()) * 1000.0 / elapsed);
+        if (error != null) {
+            status.put("error", error);
+        }
+        return status;
+    }
+
+    private void walk() {
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                    if (cancelled) {
+                        return FileVisitResult.TERMINATE;
+                    }
+                    if (!attributes.isRegularFile() || !isImage(file)) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                    if (completedPaths.get(pathKey(file.toString())) != LongIntHashMap.NO_VALUE) {
+                        skipped.incrementAndGet();
+                        return FileVisitResult.CONTINUE;
+                    }
+                    discovered.incrementAndGet();
+                    return put(paths, file) ? FileVisitResult.CONTINUE : FileVisitResult.TERMINATE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    logger.debug("Fingerprint job {} cannot visit {}: {}", id, file, e.getMessage());
+                    return put(results, FileResult.failure(file, "Cannot read: " + e.getMessage()))
+                            ? FileVisitResult.CONTINUE : FileVisitResult.TERMINATE;
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            fail("Walking " + root + " failed: " + e.getMessage(), e);
+        } finally {
+            // The set is only needed while walking and can be large for resumed jobs
+            completedPaths = new LongIntHashMap();
+            for (int i = 0; i < config.getIoThreads(); i++) {
+                put(paths, END);
+            }
+        }
+    }
+
+    private void read() {
+        try {
+            Object item;
+            while ((item = take(paths)) != null && item != END) {
+                Path file = (Path) item;
+                try {
+                    long size = Files.size(file);
+                    if (size > config.getMaxFileSize()) {
+                        if (!put(results, FileResult.failure(file, "File of " + size + " bytes exceeds the limit of "
+                                + config.getMaxFileSize() + " bytes."))) {
+                            return;
+                        }
+                        continue;
+                    }
+                    byte[] content = Files.readAllBytes(file);
+                    bytesRead.addAndGet(content.length);
+                    if (!put(contents, new FileContent(file, content))) {
+                        return;
+                    }
+                } catch (IOException e) {
+                    if (!put(results, FileResult.failure(file, "Cannot read: " + e.getMessage()))) {
+                        return;
+                    }
+                }
+            }
+        } finally {
+            if (activeReaders.decrementAndGet() == 0) {
+                for (int i = 0; i < config.getCpuThreads(); i++) {
+                    put(contents, END);
+                }
+            }
+        }
+    }
+
+    private void hash() {
+        try {
+            Object item;
+            while ((item = take(contents)) != null && item != END) {
+                FileContent file = (FileContent) item;
+                FileResult result = fingerprint(file);
+                if (result == null || !put(results, result)) {
+                    return;
+                }
+            }
+        } finally {
+            if (activeWorkers.decrementAndGet() == 0) {
+                put(results, END);
+            }
+        }
+    }
+
+    /**
+     * Fingerprints one file. A decode turned away by admission control is a busy server, not a bad
+     * file, so it is retried with exponential backoff, up to {@code admission-attempts} attempts, before
+     * the file is recorded as a failure. Only that final rejection is counted in the error metrics.
+     * Returns null if the job is cancelled meanwhile.
+     */
+    private FileResult fingerprint(FileContent file) {
+        long backoff = config.getAdmissionBackoffMillis();
+        for (int attempt = 1; !cancelled && !Thread.currentThread().isInterrupted(); attempt++) {
+            try {
+                WideFingerprint fingerprint = imageService.fingerprint(ByteBuffer.wrap(file.content),
+                        "file path: " + file.path, algorithm, retryingMetrics);
+                return FileResult.success(file.path, fingerprint.words());
+            } catch (DecodeRejectedException e) {
+                if (!e.isRetryable()) {
+                    return FileResult.failure(file.path, e.getMessage());
+                }
+                if (attempt >= config.getAdmissionAttempts()) {
+                    imageService.metrics().error(e);
+                    return FileResult.failure(file.path, "Not admitted after " + attempt + " attempts: " + e.getMessage());
+                }
+                logger.debug("Decode of {} not admitted, retrying in {} ms: {}", file.path, backoff, e.getMessage());
+                if (!pause(backoff)) {
+                    return null;
+                }
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+            } catch (IOException | RuntimeException e) {
+                return FileResult.failure(file.path, e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Sleeps for millis in short steps, returning false as soon as the job is cancelled.
+     */
+    private boolean pause(long millis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        try {
+            for (long left = millis; left > 0 && !cancelled; left = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())) {
+                Thread.sleep(Math.min(left, POLL_MILLIS));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancelled = true;
+        }
+        return !cancelled;
+    }
+
+    private void write(OutputStream out, long validLength) {
+        long length = validLength;
+        long sinceCheckpoint = 0;
+        try {
+            try {
+                if (length == 0) {
+                    byte[] header = header();
+                    out.write(header);
+                    length += header.length;
+                }
+                Object item;
+                while ((item = take(results)) != null && item != END) {
+                    FileResult result = (FileResult) item;
+                    byte[] record = encode(result);
+                    out.write(record);
+                    length += record.length;
+                    if (result.error == null) {
+                        processed.incrementAndGet();
+                    } else {
+                        failed.incrementAndGet();
+                    }
+                    if (++sinceCheckpoint >= config.getCheckpointInterval()) {
+                        out.flush();
+                        writeCheckpoint(length);
+                        sinceCheckpoint = 0;
+                    }
+                }
+            } finally {
+                out.close();
+            }
+            writeCheckpoint(length);
+        } catch (IOException | RuntimeException e) {
+            fail("Writing " + output + " failed: " + e.getMessage(), e);
+        } finally {
+            finish();
+        }
+    }
+
+    private void finish() {
+        if (state == State.RUNNING) {
+            state = cancelled ? State.CANCELLED : State.COMPLETED;
+        }
+        cancelled = true;
+        finishedAt = System.currentTimeMillis();
+        finished.countDown();
+        logger.info("Fingerprint job {} {}: {}", id, state, status());
+    }
+
+    private void fail(String message, Exception e) {
+        logger.error("Fingerprint job {}: {}", id, message, e);
+        error = message;
+        state = State.FAILED;
+        cancelled = true;
+    }
+
+    private boolean put(BlockingQueue<Object> queue, Object item) {
+        try {
+            while (!cancelled) {
+                if (queue.offer(item, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancelled = true;
+        }
+        return false;
+    }
+
+    private Object take(BlockingQueue<Object> queue) {
+        try {
+            while (!cancelled) {
+                Object item = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (item != null) {
+                    return item;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancelled = true;
+        }
+        return null;
+    }
+
+    private boolean isImage(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot >= 0 && suffixes.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    static long pathKey(String path) {
+        byte[] bytes = path.getBytes(StandardCharsets.UTF_8);
+        return XxHash64.hash(bytes, 0, bytes.length, 0);
+    }
+
+    // Output format
+
+    private long prepareOutput() throws IOException {
+        if (output.toAbsolutePath().getParent() != null) {
+            Files.createDirectories(output.toAbsolutePath().getParent());
+        }
+        long validLength = resume ? readCheckpoint() : 0;
+        if (Files.isRegularFile(output) && Files.size(output) > 0 && !isJobOutput()) {
+            throw new IllegalArgumentException("Refusing to overwrite " + output + ": it is not a fingerprint job output.");
+        }
+        if (!resume) {
+            // Left in place, an earlier run's checkpoint would let a resume after a crash keep part of this run
+            Files.deleteIfExists(checkpoint);
+        }
+        try (FileChannel channel = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            if (channel.size() > validLength) {
+                // Drops everything after the last checkpoint, including a record torn by a crash
+                channel.truncate(validLength);
+            }
+            validLength = Math.min(validLength, channel.size());
+        }
+        if (validLength > 0) {
+            loadCompletedPaths(validLength);
+            logger.info("Resuming fingerprint job {} after {} fingerprinted files", id, completedPaths.size());
+        }
+        return validLength;
+    }
+
+    /**
+     * Whether the existing output starts with the CSV header or the binary magic of a job output.
+     */
+    private boolean isJobOutput() throws IOException {
+        byte[] csv = CSV_HEADER.getBytes(StandardCharsets.UTF_8);
+        byte[] start = new byte[csv.length];
+        int length;
+        try (InputStream in = Files.newInputStream(output)) {
+            length = in.readNBytes(start, 0, start.length);
+        }
+        if (length == csv.length && Arrays.equals(start, csv)) {
+            return true;
+        }
+        return length >= 4 && ByteBuffer.wrap(start).getInt() == BINARY_MAGIC;
+    }
+
+    private long readCheckpoint() throws IOException {
+        if (!Files.isRegularFile(checkpoint)) {
+            return 0;
+        }
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(checkpoint, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        if (!format.name().equals(properties.getProperty("format"))) {
+            throw new IllegalArgumentException("Cannot resume: " + output + " was written as "
+                    + properties.getProperty("format") + ", not " + format + ".");
+        }
+        String hashedWith = properties.getProperty("algorithm") + "/" + properties.getProperty("bits", "64");
+        if (!hashedWith.equals(algorithm.name() + "/" + algorithm.bits())) {
+            throw new IllegalArgumentException("Cannot resume: " + output + " was hashed with "
+                    + hashedWith + ", not " + algorithm.name() + "/" + algorithm.bits() + ".");
+        }
+        return Long.parseLong(properties.getProperty("length", "0"));
+    }
+
+    private void writeCheckpoint(long length) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("format", format.name());
+        properties.setProperty("algorithm", algorithm.name());
+        properties.setProperty("bits", Integer.toString(algorithm.bits()));
+        properties.setProperty("length", Long.toString(length));
+        properties.setProperty("records", Long.toString(priorRecords + processed.get() + failed.get()));
+        Path temporary = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            properties.store(writer, "Fingerprint job checkpoint");
+        }
+        Files.move(temporary, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void loadCompletedPaths(long validLength) throws IOException {
+        int expected = (int) Math.min(1 << 26, Math.max(16, validLength / 64));
+        completedPaths = new LongIntHashMap(expected);
+        long records = 0;
+        try (InputStream in = new BoundedInputStream(new BufferedInputStream(Files.newInputStream(output), 1 << 16), validLength)) {
+            if (format == Format.CSV) {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+                reader.readLine(); // header
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    records++;
+                    // Successes end with the fingerprint and an empty error field
+                    if (line.endsWith(",") && !line.endsWith(",,")) {
+                        completedPaths.put(pathKey(firstCsvField(line)), 1);
+                    }
+                }
+            } else {
+                DataInputStream data = new DataInputStream(in);
+                if (data.readInt() != BINARY_MAGIC || data.readUnsignedShort() != algorithm.bits()) {
+                    throw new IOException("Cannot resume: " + output + " is not a binary fingerprint job output of "
+                            + algorithm.bits() + "-bit fingerprints.");
+                }
+                try {
+                    while (true) {
+                        byte[] path = new byte[data.readUnsignedShort()];
+                        data.readFully(path);
+                        boolean success = data.readUnsignedByte() == 1;
+                        data.skipBytes(algorithm.bits() / 8);
+                        records++;
+                        if (success) {
+                            completedPaths.put(XxHash64.hash(path, 0, path.length, 0), 1);
+                        }
+                    }
+                } catch (EOFException e) {
+                    // End of the checkpointed records
+                }
+            }
+        }
+        priorRecords = records;
+    }
+
+    private byte[] header() {
+        if (format == Format.CSV) {
+            return CSV_HEADER.getBytes(StandardCharsets.UTF_8);
+        }
+        return ByteBuffer.allocate(6).putInt(BINARY_MAGIC).putShort((short) algorithm.bits()).array();
+    }
+
+    /**
+     * CSV records are {@code path,hex,error}. The binary header is the magic and the fingerprint size in
+     * bits as an unsigned short; records are an unsigned short path length, the UTF-8 path, a status byte
+     * (1 = fingerprinted) and the fingerprint as big-endian longs.
+     */
+    private byte[] encode(FileResult result) {
+        if (format == Format.CSV) {
+            String line = csvField(result.path.toString()) + ','
+                    + (result.error == null ? WideFingerprint.toHex(result.fingerprint) : "") + ','
+                    + (result.error == null ? "" : csvField(result.error)) + '\n';
+            return line.getBytes(StandardCharsets.UTF_8);
+        }
+        byte[] path = result.path.toString().getBytes(StandardCharsets.UTF_8);
+        if (path.length > 0xFFFF) {
+            throw new IllegalArgumentException("Path too long for binary output: " + result.path);
+        }
+        ByteBuffer record = ByteBuffer.allocate(2 + path.length + 1 + algorithm.bits() / 8)
+                .putShort((short) path.length)
+                .put(path)
+                .put((byte) (result.error == null ? 1 : 0));
+        if (result.error == null) {
+            for (long word : result.fingerprint) {
+                record.putLong(word);
+            }
+        }
+        return record.array();
+    }
+
+    static String csvField(String value) {
+        String singleLine = value.replace('\n', ' ').replace('\r', ' ');
+        if (singleLine.indexOf(',') < 0 && singleLine.indexOf('"') < 0) {
+            return singleLine;
+        }
+        return '"' + singleLine.replace("\"", "\"\"") + '"';
+    }
+
+    static String firstCsvField(String line) {
+        if (line.isEmpty() || line.charAt(0) != '"') {
+            int comma = line.indexOf(',');
+            return comma < 0 ? line : line.substring(0, comma);
+        }
+        StringBuilder field = new StringBuilder();
+        for (int i = 1; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    break;
+                }
+            } else {
+                field.append(c);
+            }
+        }
+        return field.toString();
+    }
+
+    private static final class FileContent {
+        final Path path;
+        final byte[] content;
+
+        FileContent(Path path, byte[] content) {
+            this.path = path;
+            this.content = content;
+        }
+    }
+
+    private static final class FileResult {
+        final Path path;
+        final long[] fingerprint;
+        final String error;
+
+        private FileResult(Path path, long[] fingerprint, String error) {
+            this.path = path;
+            this.fingerprint = fingerprint;
+            this.error = error;
+        }
+
+        static FileResult success(Path path, long[] fingerprint) {
+            return new FileResult(path, fingerprint, null);
+        }
+
+        static FileResult failure(Path path, String error) {
+            return new FileResult(path, null, error == null ? "Unknown error" : error);
+        }
+    }
+
+    private static final class BoundedInputStream extends InputStream {
+        private final InputStream in;
+        private long remaining;
+
+        BoundedInputStream(InputStream in, long limit) {
+            this.in = in;
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = in.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = in.read(buffer, offset, (int) Math.min(length, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
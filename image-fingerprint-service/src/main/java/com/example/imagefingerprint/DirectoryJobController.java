@@ -0,0 +1,58 @@
+package com.example.imagefingerprint;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/image/jobs")
+public class DirectoryJobController {
+
+    private final DirectoryJobService jobService;
+
+    public DirectoryJobController(DirectoryJobService jobService) {
+        this.jobService = jobService;
+    }
+
+    @PostMapping
+    public ResponseEntity<Map<String, Object>> start(@RequestBody Map<String, Object> request) {
+        try {
+            Object resume = request.get("resume");
+            Map<String, Object> status = jobService.start((String) request.get("root"), (String) request.get("output"),
+                    (String) request.get("format"), (String) request.get("algorithm"),
+                    ImageController.intParam(request, "bits"), resume != null && Boolean.parseBoolean(resume.toString()));
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(status);
+        } catch (IllegalArgumentException | ClassCastException e) {
+            return ImageController.error(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (IOException e) {
+            return ImageController.error(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to start job: " + e.getMessage());
+        }
+    }
+
+    @GetMapping
+    public List<Map<String, Object>> list() {
+        return jobService.list();
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<Map<String, Object>> status(@PathVariable long id) {
+        Map<String, Object> status = jobService.status(id);
+        return status == null ? ImageController.error(HttpStatus.NOT_FOUND, "No job with id " + id) : ResponseEntity.ok(status);
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Map<String, Object>> cancel(@PathVariable long id) {
+        Map<String, Object> status = jobService.cancel(id);
+        return status == null ? ImageController.error(HttpStatus.NOT_FOUND, "No job with id " + id) : ResponseEntity.ok(status);
+    }
+}
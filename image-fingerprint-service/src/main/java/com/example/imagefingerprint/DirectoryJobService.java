@@ -0,0 +1,118 @@
+package com.example.imagefingerprint;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Starts and tracks {@link DirectoryFingerprintJob}s. Jobs run on their own threads and are kept
+ * for status queries until the application stops.
+ */
+@Service
+public class DirectoryJobService implements DisposableBean {
+
+    private final ImageService imageService;
+    private final FingerprintProperties properties;
+    private final Map<Long, DirectoryFingerprintJob> jobs = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong(1);
+
+    public DirectoryJobService(ImageService imageService, FingerprintProperties properties) {
+        this.imageService = imageService;
+        this.properties = properties;
+    }
+
+    public synchronized Map<String, Object> start(String root, String output, String format, String algorithm,
+                                                  Integer bits, boolean resume) throws IOException {
+        if (root == null || root.trim().isEmpty() || output == null || output.trim().isEmpty()) {
+            throw new IllegalArgumentException("Both root and output must be given.");
+        }
+        Path rootPath = Paths.get(root);
+        if (!Files.isDirectory(rootPath)) {
+            throw new IllegalArgumentException("Directory not found: " + root);
+        }
+        Path outputPath = resolveOutput(output);
+        for (DirectoryFingerprintJob job : jobs.values()) {
+            if (job.isRunning() && job.output().equals(outputPath)) {
+                throw new IllegalArgumentException("Job " + job.id() + " is already writing " + outputPath);
+            }
+        }
+        DirectoryFingerprintJob job = new DirectoryFingerprintJob(nextId.getAndIncrement(), rootPath, outputPath,
+                DirectoryFingerprintJob.Format.parse(format), imageService.algorithm(algorithm, bits), resume,
+                imageService, properties.getJob());
+        job.start();
+        jobs.put(job.id(), job);
+        return job.status();
+    }
+
+    /**
+     * Resolves output against {@code image.fingerprint.job.output-dir}, rejecting paths that lead outside
+     * it, including through symbolic links, so a request cannot overwrite files elsewhere.
+     */
+    Path resolveOutput(String output) throws IOException {
+        Path directory = Files.createDirectories(Paths.get(properties.getJob().getOutputDir())).toRealPath();
+        Path outputPath = directory.resolve(output).normalize();
+        if (!outputPath.startsWith(directory) || outputPath.equals(directory)) {
+            throw new IllegalArgumentException("Output must be a file inside the job output directory " + directory + ".");
+        }
+        Path existing = outputPath.getParent();
+        while (!Files.exists(existing)) {
+            existing = existing.getParent();
+        }
+        if (!existing.toRealPath().startsWith(directory) || Files.isSymbolicLink(outputPath)) {
+            throw new IllegalArgumentException("Output must be a file inside the job output directory " + directory + ".");
+        }
+        return outputPath;
+    }
+
+    /**
+     * Returns the job's progress, or null when there is no such job.
+     */
+    public Map<String, Object> status(long id) {
+        DirectoryFingerprintJob job = jobs.get(id);
+        return job == null ? null : job.status();
+    }
+
+    public List<Map<String, Object>> list() {
+        List<Map<String, Object>> statuses = new ArrayList<>();
+        for (DirectoryFingerprintJob job : jobs.values()) {
+            statuses.add(job.status());
+        }
+        return statuses;
+    }
+
+    /**
+     * Stops the job after the records already hashed are written and checkpointed.
+     */
+    public Map<String, Object> cancel(long id) {
+        DirectoryFingerprintJob job = jobs.get(id);
+        if (job == null) {
+            return null;
+        }
+        job.cancel();
+        return job.status();
+    }
+
+    DirectoryFingerprintJob job(long id) {
+        return jobs.get(id);
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        for (DirectoryFingerprintJob job : jobs.values()) {
+            job.cancel();
+        }
+        for (DirectoryFingerprintJob job : jobs.values()) {
+            job.await(10, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.imagefingerprint;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+/**
+ * Reads the preview thumbnail embedded in a JPEG, either from the EXIF APP1 segment (IFD1) or through
+ * the reader's thumbnail API (JFIF/JFXX). A thumbnail is only returned when it is large enough for the
+ * hash and has the same aspect ratio as the main image, so letterboxed previews are not used.
+ */
+final class EmbeddedThumbnails {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddedThumbnails.class);
+
+    private static final int MARKER_SOI = 0xD8;
+    private static final int MARKER_APP1 = 0xE1;
+    private static final int MARKER_SOS = 0xDA;
+    private static final int MARKER_EOI = 0xD9;
+    private static final int TAG_COMPRESSION = 0x0103;
+    private static final int TAG_JPEG_OFFSET = 0x0201;
+    private static final int TAG_JPEG_LENGTH = 0x0202;
+    private static final double MAX_ASPECT_DIFFERENCE = 0.05;
+
+    private EmbeddedThumbnails() {
+    }
+
+    /**
+     * Returns the embedded thumbnail, or null when the image has none that can stand in for it.
+     * The stream position is left unchanged.
+     */
+    static BufferedImage read(ImageInputStream input, int minSize) throws IOException {
+        long start = input.getStreamPosition();
+        input.mark();
+        try {
+            ImageReader reader = ImageDecoder.acquireReader(input);
+            if (reader == null) {
+                return null;
+            }
+            boolean reusable = false;
+            try {
+                reader.setInput(input, false, false);
+                BufferedImage thumbnail = read(reader, input, start, minSize);
+                reusable = true;
+                return thumbnail;
+            } finally {
+                ImageDecoder.releaseReader(reader, reusable);
+            }
+        } finally {
+            input.reset();
+        }
+    }
+
+    /**
+     * Returns the thumbnail of the image the reader was given, positioned at start, or null when it
+     * has none that can stand in for it. The reader input must have been set without seekForwardOnly.
+     */
+    static BufferedImage read(ImageReader reader, ImageInputStream input, long start, int minSize) throws IOException {
+        int width = reader.getWidth(0);
+        int height = reader.getHeight(0);
+
+        BufferedImage thumbnail = null;
+        if ("jpeg".equalsIgnoreCase(reader.getFormatName())) {
+            thumbnail = readExifThumbnail(input, start);
+        }
+        if (!isUsable(thumbnail, width, height, minSize)) {
+            thumbnail = readReaderThumbnail(reader);
+        }
+        return isUsable(thumbnail, width, height, minSize) ? thumbnail : null;
+    }
+
+    private static BufferedImage readReaderThumbnail(ImageReader reader) throws IOException {
+        BufferedImage largest = null;
+        if (reader.hasThumbnails(0)) {
+            int count = reader.getNumThumbnails(0);
+            for (int i = 0; i < count; i++) {
+                if (largest == null || reader.getThumbnailWidth(0, i) > largest.getWidth()) {
+                    largest = reader.readThumbnail(0, i);
+                }
+            }
+        }
+        return largest;
+    }
+
+    /**
+     * Walks the JPEG marker segments up to the start of scan looking for an EXIF APP1 segment and
+     * decodes the JPEG thumbnail referenced from its IFD1.
+     */
+    static BufferedImage readExifThumbnail(ImageInputStream input, long start) throws IOException {
+        input.mark();
+        try {
+            input.seek(start);
+            if (input.read() != 0xFF || input.read() != MARKER_SOI) {
+                return null;
+            }
+            while (true) {
+                int prefix = input.read();
+                int marker = input.read();
+                if (prefix != 0xFF || marker < 0 || marker == MARKER_SOS || marker == MARKER_EOI) {
+                    return null;
+                }
+                int length = input.readUnsignedShort() - 2;
+                if (length < 0) {
+                    return null;
+                }
+                if (marker != MARKER_APP1) {
+                    input.skipBytes(length);
+                    continue;
+                }
+                byte[] segment = new byte[length];
+                input.readFully(segment);
+                if (isExifHeader(segment)) {
+                    byte[] jpeg = extractIfd1Jpeg(segment, 6);
+                    return jpeg == null ? null : decodeJpeg(jpeg);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.debug("Could not parse EXIF thumbnail: {}", e.getMessage());
+            return null;
+        } finally {
+            input.reset();
+        }
+    }
+
+    private static BufferedImage decodeJpeg(byte[] jpeg) throws IOException {
+        try (ImageInputStream thumbnailInput = new MemoryCacheImageInputStream(new ByteArrayInputStream(jpeg))) {
+            return ImageDecoder.decode(thumbnailInput, 0, 0);
+        }
+    }
+
+    private static boolean isExifHeader(byte[] segment) {
+        return segment.length > 14 && segment[0] == 'E' && segment[1] == 'x' && segment[2] == 'i'
+                && segment[3] == 'f' && segment[4] == 0 && segment[5] == 0;
+    }
+
+    private static byte[] extractIfd1Jpeg(byte[] segment, int tiffStart) {
+        boolean littleEndian = segment[tiffStart] == 'I' && segment[tiffStart + 1] == 'I';
+        if (!littleEndian && !(segment[tiffStart] == 'M' && segment[tiffStart + 1] == 'M')) {
+            return null;
+        }
+        int ifd0 = (int) readUnsigned(segment, tiffStart + 4, 4, littleEndian);
+        int ifd0Entries = (int) readUnsigned(segment, tiffStart + ifd0, 2, littleEndian);
+        int ifd1 = (int) readUnsigned(segment, tiffStart + ifd0 + 2 + ifd0Entries * 12, 4, littleEndian);
+        if (ifd1 == 0) {
+            return null;
+        }
+        int entries = (int) readUnsigned(segment, tiffStart + ifd1, 2, littleEndian);
+        long offset = -1;
+        long length = -1;
+        int compression = 6;
+        for (int i = 0; i < entries; i++) {
+            int entry = tiffStart + ifd1 + 2 + i * 12;
+            int tag = (int) readUnsigned(segment, entry, 2, littleEndian);
+            int type = (int) readUnsigned(segment, entry + 2, 2, littleEndian);
+            // SHORT values are left aligned in the 4 byte value field
+            long value = type == 3 ? readUnsigned(segment, entry + 8, 2, littleEndian) : readUnsigned(segment, entry + 8, 4, littleEndian);
+            if (tag == TAG_COMPRESSION) {
+                compression = (int) value;
+            } else if (tag == TAG_JPEG_OFFSET) {
+                offset = value;
+            } else if (tag == TAG_JPEG_LENGTH) {
+                length = value;
+            }
+        }
+        if (compression != 6 || offset < 0 || length <= 0 || tiffStart + offset + length > segment.length) {
+            return null;
+        }
+        byte[] jpeg = new byte[(int) length];
+        System.arraycopy(segment, (int) (tiffStart + offset), jpeg, 0, (int) length);
+        return jpeg;
+    }
+
+    private static long readUnsigned(byte[] data, int offset, int size, boolean littleEndian) {
+        if (offset < 0 || offset + size > data.length) {
+            throw new IllegalArgumentException("EXIF offset out of range: " + offset);
+        }
+        long value = 0;
+        for (int i = 0; i < size; i++) {
+            int b = data[littleEndian ? offset + size - 1 - i : offset + i] & 0xFF;
+            value = (value << 8) | b;
+        }
+        return value;
+    }
+
+    private static boolean isUsable(BufferedImage thumbnail, int width, int height, int minSize) {
+        if (thumbnail == null || thumbnail.getWidth() < minSize || thumbnail.getHeight() < minSize) {
+            return false;
+        }
+        double imageAspect = (double) width / height;
+        double thumbnailAspect = (double) thumbnail.getWidth() / thumbnail.getHeight();
+        return Math.abs(imageAspect - thumbnailAspect) / imageAspect <= MAX_ASPECT_DIFFERENCE;
+    }
+}
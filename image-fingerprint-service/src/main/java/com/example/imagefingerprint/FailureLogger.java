@@ -0,0 +1,91 @@
+package com.example.imagefingerprint;
+
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Logs request failures at most once per interval for each exception type, so a storm of the same
+ * bad input does not write a stack trace per request. The first failure of a type in an interval is
+ * logged along with the number of failures suppressed since the last one; the rest only increment a
+ * counter. Images the service cannot read are expected input and logged at WARN without a stack
+ * trace; anything else is logged at ERROR with one.
+ */
+class FailureLogger {
+
+    static final long DEFAULT_INTERVAL_MILLIS = 10_000;
+
+    private final Logger logger;
+    private final long intervalNanos;
+    private final Map<Class<?>, Window> windows = new ConcurrentHashMap<>();
+
+    FailureLogger(Logger logger) {
+        this(logger, DEFAULT_INTERVAL_MILLIS);
+    }
+
+    FailureLogger(Logger logger, long intervalMillis) {
+        this.logger = logger;
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+    }
+
+    /**
+     * Logs a failure unless one of the same type was logged within the interval. format takes one
+     * {@code {}} placeholder for source. Returns whether it was logged.
+     */
+    boolean log(String format, Object source, Throwable e) {
+        return log(format, new Object[]{source}, e);
+    }
+
+    boolean log(String message, Throwable e) {
+        return log(message, new Object[0], e);
+    }
+
+    private boolean log(String format, Object[] args, Throwable e) {
+        Window window = windows.computeIfAbsent(type(e), type -> new Window());
+        long now = System.nanoTime();
+        long last = window.lastLogged.get();
+        if (last != Long.MIN_VALUE && now - last < intervalNanos || !window.lastLogged.compareAndSet(last, now)) {
+            window.suppressed.incrementAndGet();
+            return false;
+        }
+        long suppressed = window.suppressed.getAndSet(0);
+        Object[] arguments = Arrays.copyOf(args, args.length + 2);
+        if (isExpected(e)) {
+            arguments[args.length] = e.toString();
+            arguments[args.length + 1] = suppressed;
+            logger.warn(format + ": {} ({} similar failures suppressed)", arguments);
+        } else {
+            // A trailing throwable is logged with its stack trace
+            arguments[args.length] = suppressed;
+            arguments[args.length + 1] = e;
+            logger.error(format + " ({} similar failures suppressed)", arguments);
+        }
+        return true;
+    }
+
+    /**
+     * Groups wrapped failures by the type of their cause.
+     */
+    private static Class<?> type(Throwable e) {
+        return e.getClass() == RuntimeException.class && e.getCause() != null ? e.getCause().getClass() : e.getClass();
+    }
+
+    long suppressed(Class<? extends Throwable> type) {
+        Window window = windows.get(type);
+        return window == null ? 0 : window.suppressed.get();
+    }
+
+    private static boolean isExpected(Throwable e) {
+        return e instanceof IOException || e.getCause() instanceof IOException;
+    }
+
+    private static final class Window {
+        final AtomicLong lastLogged = new AtomicLong(Long.MIN_VALUE);
+        final AtomicLong suppressed = new AtomicLong();
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.imagefingerprint;
+
+/**
+ * A 64-bit perceptual hash held as a primitive {@code long}.
+ * The most significant bit corresponds to the top-left pixel of the hash grid.
+ */
+public final class Fingerprint {
+
+    public static final int BITS = 64;
+    public static final int HEX_LENGTH = BITS / 4;
+    public static final int BYTES = BITS / 8;
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final long value;
+
+    public Fingerprint(long value) {
+        this.value = value;
+    }
+
+    public long value() {
+        return value;
+    }
+
+    public static Fingerprint fromHex(String hex) {
+        return new Fingerprint(parseHex(hex));
+    }
+
+    public static Fingerprint fromBytes(byte[] bytes) {
+        if (bytes == null || bytes.length != BYTES) {
+            throw new IllegalArgumentException("Fingerprint bytes must be exactly " + BYTES + " bytes long.");
+        }
+        return new Fingerprint(readLong(bytes, 0));
+    }
+
+    /**
+     * Parses a 16 character hexadecimal fingerprint without creating intermediate objects.
+     */
+    public static long parseHex(CharSequence hex) {
+        if (hex == null || hex.length() != HEX_LENGTH) {
+            throw new IllegalArgumentException("Fingerprint must be exactly " + HEX_LENGTH + " hexadecimal characters.");
+        }
+        long result = 0;
+        for (int i = 0; i < HEX_LENGTH; i++) {
+            int digit = Character.digit(hex.charAt(i), 16);
+            if (digit < 0) {
+                throw new IllegalArgumentException("Invalid hexadecimal character '" + hex.charAt(i) + "' in fingerprint.");
+            }
+            result = (result << 4) | digit;
+        }
+        return result;
+    }
+
+    public static String toHex(long value) {
+        char[] chars = new char[HEX_LENGTH];
+        for (int i = HEX_LENGTH - 1; i >= 0; i--) {
+            chars[i] = HEX_DIGITS[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+        return new String(chars);
+    }
+
+    public static long readLong(byte[] bytes, int offset) {
+        long result = 0;
+        for (int i = 0; i < BYTES; i++) {
+            result = (result << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return result;
+    }
+
+    public static void writeLong(long value, byte[] bytes, int offset) {
+        for (int i = BYTES - 1; i >= 0; i--) {
+            bytes[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    public static double similarity(long a, long b) {
+        return 1.0 - (double) distance(a, b) / BITS;
+    }
+
+    public String toHex() {
+        return toHex(value);
+    }
+
+    public byte[] toBytes() {
+        byte[] bytes = new byte[BYTES];
+        writeLong(value, bytes, 0);
+        return bytes;
+    }
+
+    public int distanceTo(Fingerprint other) {
+        return distance(value, other.value);
+    }
+
+    public double similarityTo(Fingerprint other) {
+        return similarity(value, other.value);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Fingerprint)) {
+            return false;
+        }
+        return value == ((Fingerprint) o).value;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(value);
+    }
+
+    @Override
+    public String toString() {
+        return toHex();
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.imagefingerprint;
+
+/**
+ * A perceptual hash computed from a grid of luminance values. The image pipeline reduces every image
+ * to a {@link #sampleWidth()} x {@link #sampleHeight()} grid (0-255, row by row) and the algorithm turns
+ * that grid into a fingerprint of {@link #bits()} bits. Implementations are stateless and thread safe.
+ */
+public interface FingerprintAlgorithm {
+
+    /**
+     * Name used to select the algorithm in requests and configuration.
+     */
+    String name();
+
+    /**
+     * Fingerprint size: 64, 256 or 1024.
+     */
+    int bits();
+
+    int sampleWidth();
+
+    int sampleHeight();
+
+    /**
+     * Writes the fingerprint into {@code out}, which holds bits() / 64 words, most significant bit of the
+     * first word first. The words are overwritten, not combined with their previous value.
+     */
+    void hash(int[] luminance, long[] out);
+
+    /**
+     * Convenience for 64-bit algorithms.
+     */
+    default long hash(int[] luminance) {
+        if (bits() != Long.SIZE) {
+            throw new IllegalStateException(name() + " produces " + bits() + "-bit fingerprints.");
+        }
+        long[] out = new long[1];
+        hash(luminance, out);
+        return out[0];
+    }
+}
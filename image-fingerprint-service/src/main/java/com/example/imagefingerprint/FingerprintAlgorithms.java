@@ -0,0 +1,105 @@
+package com.example.imagefingerprint;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The built-in {@link FingerprintAlgorithm}s, looked up by name and fingerprint size. Every algorithm is
+ * available with 64 (8x8), 256 (16x16) and 1024 (32x32) bits.
+ */
+final class FingerprintAlgorithms {
+
+    static final FingerprintAlgorithm AVERAGE = new AverageHash(8);
+    static final FingerprintAlgorithm DIFFERENCE = new DifferenceHash(8);
+    static final FingerprintAlgorithm PERCEPTUAL = new PerceptualHash(8);
+    static final FingerprintAlgorithm WAVELET = new WaveletHash(8);
+
+    private static final Set<String> NAMES;
+    private static final Map<String, FingerprintAlgorithm> BY_KEY = new HashMap<>();
+
+    static {
+        Set<String> names = new LinkedHashSet<>();
+        for (FingerprintAlgorithm algorithm : new FingerprintAlgorithm[]{AVERAGE, DIFFERENCE, PERCEPTUAL, WAVELET}) {
+            names.add(algorithm.name());
+        }
+        NAMES = Collections.unmodifiableSet(names);
+        for (FingerprintAlgorithm algorithm : new FingerprintAlgorithm[]{
+                AVERAGE, new AverageHash(16), new AverageHash(32),
+                DIFFERENCE, new DifferenceHash(16), new DifferenceHash(32),
+                PERCEPTUAL, new PerceptualHash(16), new PerceptualHash(32),
+                WAVELET, new WaveletHash(16), new WaveletHash(32)}) {
+            BY_KEY.put(key(algorithm.name(), algorithm.bits()), algorithm);
+        }
+    }
+
+    private FingerprintAlgorithms() {
+    }
+
+    /**
+     * Returns the algorithm with the given name (case insensitive) and size. A null or empty name selects
+     * {@code defaultName}.
+     */
+    static FingerprintAlgorithm forName(String name, String defaultName, int bits) {
+        String selected = name == null || name.trim().isEmpty() ? defaultName : name.trim().toLowerCase(Locale.ROOT);
+        if (selected == null || !NAMES.contains(selected)) {
+            throw new IllegalArgumentException("Unknown fingerprint algorithm '" + name + "', expected one of " + NAMES + ".");
+        }
+        WideFingerprint.checkBits(bits);
+        return BY_KEY.get(key(selected, bits));
+    }
+
+    static FingerprintAlgorithm forName(String name, int bits) {
+        return forName(name, null, bits);
+    }
+
+    static FingerprintAlgorithm forName(String name) {
+        return forName(name, null, Long.SIZE);
+    }
+
+    static Set<String> names() {
+        return NAMES;
+    }
+
+    private static String key(String name, int bits) {
+        return name + '/' + bits;
+    }
+
+    /**
+     * Sets bit i of {@code out} (most significant bit of the first word first) when values[i] is above
+     * the median. Thresholding at the median keeps the hash balanced whatever the value distribution.
+     */
+    static void thresholdAtMedian(double[] values, long[] out) {
+        thresholdAtMedian(values, new double[values.length], out);
+    }
+
+    /**
+     * Sets the bit of every value above the median, using sorted (of the same length) as scratch space.
+     */
+    static void thresholdAtMedian(double[] values, double[] sorted, long[] out) {
+        System.arraycopy(values, 0, sorted, 0, values.length);
+        Arrays.sort(sorted);
+        int middle = sorted.length / 2;
+        double median = (sorted.length & 1) == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2;
+        Arrays.fill(out, 0L);
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] > median) {
+                setBit(out, i);
+            }
+        }
+    }
+
+    static long thresholdAtMedian(double[] values) {
+        long[] out = new long[1];
+        thresholdAtMedian(values, out);
+        return out[0];
+    }
+
+    static void setBit(long[] out, int bit) {
+        out[bit >>> 6] |= 1L << (63 - (bit & 63));
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.imagefingerprint;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class FingerprintExecutorConfiguration {
+
+    /**
+     * Bounded pool sized to the cores for the decode and hash of single-image requests, so the number
+     * of request threads, virtual or not, does not decide how many images are decoded at once. Tasks
+     * beyond the queue are rejected rather than run on the request thread.
+     */
+    @Bean
+    public ExecutorService cpuFingerprintExecutor(FingerprintProperties properties) {
+        FingerprintProperties.Cpu cpu = properties.getCpu();
+        return new ThreadPoolExecutor(cpu.getPoolSize(), cpu.getPoolSize(), 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(cpu.getQueueCapacity()),
+                new CustomizableThreadFactory("fingerprint-cpu-"),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Bounded pool for batch items. When the queue is full the submitting request thread runs the
+     * item itself, which throttles callers instead of queueing without limit.
+     */
+    @Bean
+    public ExecutorService batchFingerprintExecutor(FingerprintProperties properties) {
+        FingerprintProperties.Batch batch = properties.getBatch();
+        return new ThreadPoolExecutor(batch.getPoolSize(), batch.getPoolSize(), 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(batch.getQueueCapacity()),
+                new CustomizableThreadFactory("fingerprint-batch-"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.imagefingerprint;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Searchable collection of 64-bit fingerprints keyed by caller supplied ids.
+ * Implementations are not thread safe; {@link FingerprintIndexService} guards access.
+ */
+public interface FingerprintIndex {
+
+    /**
+     * Adds or replaces the fingerprint stored under the id.
+     */
+    void add(long id, long fingerprint);
+
+    /**
+     * Removes the id and returns whether it was present.
+     */
+    boolean remove(long id);
+
+    /**
+     * Returns up to limit entries within maxDistance bits of the fingerprint, closest first.
+     */
+    List<IndexMatch> search(long fingerprint, int maxDistance, int limit);
+
+    int size();
+
+    /**
+     * Approximate heap used by the index structures, in bytes.
+     */
+    long memoryBytes();
+
+    /**
+     * Adds implementation specific statistics to the index stats.
+     */
+    default void addStats(Map<String, Object> stats) {
+    }
+}
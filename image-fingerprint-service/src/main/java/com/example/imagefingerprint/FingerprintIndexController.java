@@ -0,0 +1,114 @@
+package com.example.imagefingerprint;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@RequestMapping("/api/image/index")
+public class FingerprintIndexController {
+
+    private final FingerprintIndexService indexService;
+    private final CachedFingerprintService fingerprintService;
+    private final CpuBoundExecutor cpuExecutor;
+
+    public FingerprintIndexController(FingerprintIndexService indexService, CachedFingerprintService fingerprintService,
+                                      CpuBoundExecutor cpuExecutor) {
+        this.indexService = indexService;
+        this.fingerprintService = fingerprintService;
+        this.cpuExecutor = cpuExecutor;
+    }
+
+    @GetMapping
+    public Map<String, Object> stats() {
+        return indexService.stats();
+    }
+
+    @PutMapping(value = "/{id}", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, Object>> add(@PathVariable long id, @RequestBody Map<String, String> request) {
+        try {
+            WideFingerprint fingerprint = WideFingerprint.fromHex(request.get("fingerprint"));
+            indexService.add(id, fingerprint, request.get("metadata"));
+            return ResponseEntity.ok(entry(id, fingerprint));
+        } catch (IllegalArgumentException e) {
+            return ImageController.error(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (IOException e) {
+            return ImageController.error(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to store fingerprint: " + e.getMessage());
+        }
+    }
+
+    @PutMapping(value = "/{id}", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<Map<String, Object>> addImage(@PathVariable long id, @RequestParam("file") MultipartFile file,
+                                                        @RequestParam(value = "metadata", required = false) String metadata) {
+        if (file == null || file.isEmpty()) {
+            return ImageController.error(HttpStatus.BAD_REQUEST, "File cannot be empty.");
+        }
+        try {
+            WideFingerprint fingerprint = cpuExecutor.call(() ->
+                    fingerprintService.fingerprint(file.getInputStream(), "uploaded file: " + file.getOriginalFilename(),
+                            file.getSize()));
+            indexService.add(id, fingerprint, metadata);
+            return ResponseEntity.ok(entry(id, fingerprint));
+        } catch (IllegalArgumentException e) {
+            return ImageController.error(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (DecodeRejectedException e) {
+            return ImageController.unavailable(e);
+        } catch (Exception e) {
+            return ImageController.error(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to process image: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<Map<String, Object>> get(@PathVariable long id) throws IOException {
+        Map<String, Object> entry = indexService.get(id);
+        if (entry == null) {
+            return ImageController.error(HttpStatus.NOT_FOUND, "No stored fingerprint for id " + id);
+        }
+        return ResponseEntity.ok(entry);
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Map<String, Object>> remove(@PathVariable long id) throws IOException {
+        if (!indexService.remove(id)) {
+            return ImageController.error(HttpStatus.NOT_FOUND, "No fingerprint indexed under id " + id);
+        }
+        return ResponseEntity.ok(Collections.singletonMap("id", id));
+    }
+
+    @PostMapping(value = "/search", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, Object>> search(@RequestBody Map<String, Object> request) {
+        try {
+            Object fingerprint = request.get("fingerprint");
+            WideFingerprint query = WideFingerprint.fromHex(fingerprint == null ? null : fingerprint.toString());
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("matches", indexService.search(query, ImageController.intParam(request, "maxDistance"), ImageController.intParam(request, "limit")));
+            return ResponseEntity.ok(body);
+        } catch (IllegalArgumentException e) {
+            return ImageController.error(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    private static Map<String, Object> entry(long id, WideFingerprint fingerprint) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("id", id);
+        body.put("fingerprint", fingerprint.toHex());
+        return body;
+    }
+}
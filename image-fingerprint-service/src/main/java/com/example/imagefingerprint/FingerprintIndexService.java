@@ -0,0 +1,263 @@
+package com.example.imagefingerprint;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Server side near-duplicate index. Searches run concurrently under a read lock while inserts and
+ * deletes take the write lock, since the index structures themselves are not thread safe.
+ * <p>
+ * When the store is enabled every change is appended to a {@link MappedFingerprintStore} before it is
+ * applied to the index, and the index is rebuilt from the store at startup.
+ * <p>
+ * The index holds fingerprints of {@code image.fingerprint.bits} bits. 256 and 1024-bit fingerprints
+ * always use a {@link WideLinearScanIndex} and cannot be persisted, since store records hold one long.
+ */
+@Service
+public class FingerprintIndexService implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(FingerprintIndexService.class);
+
+    private final FingerprintProperties.Index config;
+    private final int bits;
+    private final FingerprintIndex index;
+    private final WideLinearScanIndex wideIndex;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final FingerprintProperties.Store storeConfig;
+    private final MappedFingerprintStore store;
+    private final LongIntHashMap recordById;
+
+    public FingerprintIndexService(FingerprintProperties properties) throws IOException {
+        this.config = properties.getIndex();
+        this.storeConfig = properties.getStore();
+        this.bits = properties.getBits();
+        WideFingerprint.checkBits(bits);
+        if (bits == Fingerprint.BITS) {
+            this.index = createIndex(config);
+            this.wideIndex = null;
+            logger.info("Using {} fingerprint index", config.getType());
+        } else {
+            if (storeConfig.isEnabled()) {
+                throw new IllegalStateException("The fingerprint store only holds 64-bit fingerprints; disable it or use 64 bits.");
+            }
+            this.index = null;
+            this.wideIndex = new WideLinearScanIndex(bits, config.getExpectedSize());
+            logger.info("Using linear scan index for {}-bit fingerprints", bits);
+        }
+        if (storeConfig.isEnabled()) {
+            this.store = MappedFingerprintStore.open(Paths.get(storeConfig.getPath()));
+            this.recordById = new LongIntHashMap(config.getExpectedSize());
+            reload();
+        } else {
+            this.store = null;
+            this.recordById = null;
+        }
+    }
+
+    private void reload() {
+        long started = System.nanoTime();
+        long count = store.recordCount();
+        for (long record = 0; record < count; record++) {
+            long id = store.readId(record);
+            if (store.isDeleted(record)) {
+                index.remove(id);
+                recordById.remove(id);
+            } else {
+                index.add(id, store.readHash(record));
+                recordById.put(id, toRecordIndex(record));
+            }
+        }
+        logger.info("Loaded {} fingerprints from {} store records in {} ms", index.size(), count,
+                (System.nanoTime() - started) / 1_000_000);
+    }
+
+    static FingerprintIndex createIndex(FingerprintProperties.Index config) {
+        switch (config.getType()) {
+            case "bk-tree":
+                return new BkTreeIndex(config.getExpectedSize());
+            case "linear":
+                return new LinearScanIndex(config.getExpectedSize());
+            case "multi-index":
+                return new MultiIndexHashIndex(config.getBands(), config.getExpectedSize());
+            default:
+                throw new IllegalStateException("Unknown fingerprint index type: " + config.getType());
+        }
+    }
+
+    public void add(long id, Fingerprint fingerprint) throws IOException {
+        add(id, fingerprint, null);
+    }
+
+    public void add(long id, Fingerprint fingerprint, String metadata) throws IOException {
+        add(id, WideFingerprint.of(fingerprint), metadata);
+    }
+
+    /**
+     * Adds or replaces the fingerprint for the id. Metadata is only kept when the store is enabled.
+     */
+    public void add(long id, WideFingerprint fingerprint, String metadata) throws IOException {
+        checkBits(fingerprint);
+        if (wideIndex != null) {
+            lock.writeLock().lock();
+            try {
+                wideIndex.add(id, fingerprint.words());
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return;
+        }
+        addToIndex(id, fingerprint.toFingerprint(), metadata);
+    }
+
+    private void addToIndex(long id, Fingerprint fingerprint, String metadata) throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (store != null) {
+                long record = store.append(id, fingerprint.value(), metadata);
+                syncIfConfigured();
+                recordById.put(id, toRecordIndex(record));
+            }
+            index.add(id, fingerprint.value());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean remove(long id) throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (wideIndex != null) {
+                return wideIndex.remove(id);
+            }
+            boolean removed = index.remove(id);
+            if (removed && store != null) {
+                store.appendDelete(id);
+                syncIfConfigured();
+                recordById.remove(id);
+            }
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the stored fingerprint and metadata for the id, or null when the id is unknown or the
+     * store is disabled.
+     */
+    public Map<String, Object> get(long id) throws IOException {
+        if (store == null) {
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            int record = recordById.get(id);
+            if (record == LongIntHashMap.NO_VALUE) {
+                return null;
+            }
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("id", id);
+            entry.put("fingerprint", Fingerprint.toHex(store.readHash(record)));
+            entry.put("metadata", store.readMetadata(store.readMetadataOffset(record)));
+            return entry;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Searches with the configured defaults for missing parameters.
+     */
+    public List<IndexMatch> search(Fingerprint fingerprint, Integer maxDistance, Integer limit) {
+        return search(WideFingerprint.of(fingerprint), maxDistance, limit);
+    }
+
+    /**
+     * Searches with the configured defaults for missing parameters. The default radius is given for 64 bits
+     * and scales with the fingerprint size.
+     */
+    public List<IndexMatch> search(WideFingerprint fingerprint, Integer maxDistance, Integer limit) {
+        checkBits(fingerprint);
+        int distance = maxDistance != null ? maxDistance : config.getDefaultMaxDistance() * (bits / Fingerprint.BITS);
+        int maxResults = limit != null ? limit : config.getMaxLimit();
+        if (distance < 0 || distance > bits) {
+            throw new IllegalArgumentException("maxDistance must be between 0 and " + bits + ".");
+        }
+        if (maxResults <= 0) {
+            throw new IllegalArgumentException("limit must be positive.");
+        }
+        lock.readLock().lock();
+        try {
+            int cappedLimit = Math.min(maxResults, config.getMaxLimit());
+            if (wideIndex != null) {
+                return wideIndex.search(fingerprint.words(), distance, cappedLimit);
+            }
+            return index.search(fingerprint.words()[0], distance, cappedLimit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        lock.readLock().lock();
+        try {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            int size = wideIndex != null ? wideIndex.size() : index.size();
+            long memoryBytes = wideIndex != null ? wideIndex.memoryBytes() : index.memoryBytes();
+            stats.put("type", wideIndex != null ? "linear" : config.getType());
+            stats.put("bits", bits);
+            stats.put("size", size);
+            stats.put("memoryBytes", memoryBytes);
+            stats.put("bytesPerEntry", size == 0 ? 0.0 : (double) memoryBytes / size);
+            if (index != null) {
+                index.addStats(stats);
+            }
+            if (store != null) {
+                stats.put("storeRecords", store.recordCount());
+            }
+            return stats;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        if (store != null) {
+            store.close();
+        }
+    }
+
+    public int bits() {
+        return bits;
+    }
+
+    private void checkBits(WideFingerprint fingerprint) {
+        if (fingerprint.bits() != bits) {
+            throw new IllegalArgumentException("The index holds " + bits + "-bit fingerprints, not " + fingerprint.bits() + "-bit.");
+        }
+    }
+
+    private void syncIfConfigured() throws IOException {
+        if (storeConfig.isSyncWrites()) {
+            store.flush();
+        }
+    }
+
+    private static int toRecordIndex(long record) {
+        if (record > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Fingerprint store exceeds " + Integer.MAX_VALUE + " records; compact it.");
+        }
+        return (int) record;
+    }
+}
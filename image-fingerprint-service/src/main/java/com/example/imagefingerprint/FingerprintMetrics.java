@@ -0,0 +1,153 @@
+package com.example.imagefingerprint;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micrometer meters for the fingerprint pipeline: a timer per stage ({@code read}, {@code decode},
+ * {@code resize}, {@code hash}, {@code compare}) published as percentile histograms, distributions
+ * of image dimensions and encoded size, and failures counted by cause.
+ */
+public class FingerprintMetrics {
+
+    /**
+     * Records nothing, for services created outside the Spring context.
+     */
+    static final FingerprintMetrics NONE = new FingerprintMetrics(new CompositeMeterRegistry());
+
+    /**
+     * Error cause for streams no image reader recognises.
+     */
+    static final String UNSUPPORTED = "unsupported";
+
+    private static final String STAGE = "image.fingerprint.stage";
+
+    private final MeterRegistry registry;
+    private final Timer read;
+    private final Timer decode;
+    private final Timer resize;
+    private final Timer compare;
+    private final Map<String, Timer> hashByAlgorithm = new ConcurrentHashMap<>();
+    private final Map<String, Counter> errorsByCause = new ConcurrentHashMap<>();
+    private final DistributionSummary width;
+    private final DistributionSummary height;
+    private final DistributionSummary bytes;
+    private final DistributionSummary buffered;
+
+    public FingerprintMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.read = stageTimer("read").register(registry);
+        this.decode = stageTimer("decode").register(registry);
+        this.resize = stageTimer("resize").register(registry);
+        this.compare = stageTimer("compare").register(registry);
+        this.width = dimension("width").register(registry);
+        this.height = dimension("height").register(registry);
+        this.bytes = DistributionSummary.builder("image.fingerprint.image.size")
+                .description("Encoded size of fingerprinted images")
+                .baseUnit("bytes")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.buffered = DistributionSummary.builder("image.fingerprint.stream.buffered")
+                .description("Bytes of uploads read into memory buffers before decoding")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    private static Timer.Builder stageTimer(String stage) {
+        return Timer.builder(STAGE)
+                .description("Time spent in each stage of the fingerprint pipeline")
+                .tag("stage", stage)
+                .publishPercentileHistogram();
+    }
+
+    private static DistributionSummary.Builder dimension(String dimension) {
+        return DistributionSummary.builder("image.fingerprint.image.dimension")
+                .description("Width and height of fingerprinted images, from their headers")
+                .baseUnit("pixels")
+                .tag("dimension", dimension)
+                .publishPercentileHistogram();
+    }
+
+    void read(long nanos) {
+        read.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    void decode(long nanos) {
+        decode.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    void resize(long nanos) {
+        resize.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    void hash(FingerprintAlgorithm algorithm, long nanos) {
+        hashByAlgorithm.computeIfAbsent(algorithm.name(), name -> stageTimer("hash").tag("algorithm", name).register(registry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    void compare(long nanos) {
+        compare.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    void image(ImageProbe probe) {
+        width.record(probe.getWidth());
+        height.record(probe.getHeight());
+    }
+
+    void bytes(long size) {
+        bytes.record(size);
+    }
+
+    void buffered(long size) {
+        buffered.record(size);
+    }
+
+    /**
+     * Counts a failed fingerprint under a cause derived from the exception: {@code busy} for decodes
+     * turned away by admission control, {@code too-large}, {@code io} or {@code other}.
+     */
+    void error(Throwable e) {
+        error(cause(e));
+    }
+
+    /**
+     * Records to the same meters, except for decodes turned away by a busy budget, for callers that
+     * retry those and only count the final outcome.
+     */
+    FingerprintMetrics withoutBusyErrors() {
+        return new FingerprintMetrics(registry) {
+            @Override
+            void error(Throwable e) {
+                if (!(e instanceof DecodeRejectedException) || !((DecodeRejectedException) e).isRetryable()) {
+                    super.error(e);
+                }
+            }
+        };
+    }
+
+    void error(String cause) {
+        errorsByCause.computeIfAbsent(cause, c -> Counter.builder("image.fingerprint.errors")
+                        .description("Fingerprint failures by cause")
+                        .tag("cause", c)
+                        .register(registry))
+                .increment();
+    }
+
+    static String cause(Throwable e) {
+        if (e instanceof DecodeRejectedException) {
+            return ((DecodeRejectedException) e).isRetryable() ? "busy" : "too-large";
+        }
+        if (e instanceof IOException) {
+            return "io";
+        }
+        return "other";
+    }
+}
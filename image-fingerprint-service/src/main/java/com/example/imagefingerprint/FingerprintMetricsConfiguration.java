@@ -0,0 +1,68 @@
+package com.example.imagefingerprint;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+
+@Configuration
+public class FingerprintMetricsConfiguration {
+
+    @Bean
+    public FingerprintMetrics fingerprintMetrics(MeterRegistry registry) {
+        return new FingerprintMetrics(registry);
+    }
+
+    /**
+     * Pool sizes, active threads and queue depths of the fingerprint executors, tagged
+     * {@code name=fingerprint-cpu} and {@code name=fingerprint-batch}.
+     */
+    @Bean
+    public MeterBinder fingerprintExecutorMetrics(@Qualifier("cpuFingerprintExecutor") ExecutorService cpuExecutor,
+                                                  @Qualifier("batchFingerprintExecutor") ExecutorService batchExecutor) {
+        return registry -> {
+            new ExecutorServiceMetrics(cpuExecutor, "fingerprint-cpu", Tags.empty()).bindTo(registry);
+            new ExecutorServiceMetrics(batchExecutor, "fingerprint-batch", Tags.empty()).bindTo(registry);
+        };
+    }
+
+    /**
+     * Free decode memory and decodes waiting for it when admission control is enabled, in-flight
+     * requests of the reactive scheduler in reactive mode, pooled upload buffers and the fingerprint
+     * cache statistics.
+     */
+    @Bean
+    public MeterBinder fingerprintAdmissionMetrics(ImageService imageService, CachedFingerprintService fingerprintService,
+                                                   ObjectProvider<BoundedFingerprintScheduler> scheduler) {
+        return registry -> {
+            DecodeBudget budget = imageService.decodeBudget();
+            if (budget != null) {
+                Gauge.builder("image.fingerprint.decode.budget", budget, DecodeBudget::budgetBytes)
+                        .description("Memory concurrent decodes may hold").baseUnit("bytes").register(registry);
+                Gauge.builder("image.fingerprint.decode.available", budget, DecodeBudget::availableBytes)
+                        .description("Decode memory not reserved by running decodes").baseUnit("bytes").register(registry);
+                Gauge.builder("image.fingerprint.decode.waiting", budget, DecodeBudget::waiting)
+                        .description("Decodes waiting for memory").register(registry);
+            }
+            scheduler.ifAvailable(bounded -> {
+                Gauge.builder("image.fingerprint.reactive.in.flight", bounded, BoundedFingerprintScheduler::inFlight)
+                        .description("Reactive requests admitted and not yet completed").register(registry);
+                Gauge.builder("image.fingerprint.reactive.limit", bounded, BoundedFingerprintScheduler::limit)
+                        .description("Reactive requests admitted before new ones are rejected").register(registry);
+            });
+            Gauge.builder("image.fingerprint.stream.pooled", imageService.bufferPool(), ImageBufferPool::pooledBytes)
+                    .description("Memory held by upload buffers waiting for reuse").baseUnit("bytes").register(registry);
+            if (fingerprintService.cache() != null) {
+                CaffeineCacheMetrics.monitor(registry, fingerprintService.cache(), "fingerprints");
+            }
+        };
+    }
+}
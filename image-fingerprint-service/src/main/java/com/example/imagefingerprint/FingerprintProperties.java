@@ -0,0 +1,676 @@
+package com.example.imagefingerprint;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings for the fingerprint pipeline, bound from {@code image.fingerprint.*}.
+ */
+@ConfigurationProperties(prefix = "image.fingerprint")
+public class FingerprintProperties {
+
+    /**
+     * Hash the EXIF/JFIF thumbnail embedded in JPEGs instead of decoding the full image when one is available.
+     */
+    private boolean useEmbeddedThumbnail = false;
+
+    /**
+     * Smallest edge, in pixels, an embedded thumbnail must have to be used in place of the full image.
+     */
+    private int thumbnailMinSize = 64;
+
+    /**
+     * Hash algorithm used when a request does not name one and for indexed images: ahash, dhash, phash or whash.
+     */
+    private String algorithm = "ahash";
+
+    /**
+     * Fingerprint size used when a request does not give one and for indexed images: 64, 256 or 1024 bits.
+     */
+    private int bits = 64;
+
+    private final Probe probe = new Probe();
+
+    private final Admission admission = new Admission();
+
+    private final Stream stream = new Stream();
+
+    private final Tiled tiled = new Tiled();
+
+    private final Frames frames = new Frames();
+
+    private final Cpu cpu = new Cpu();
+
+    private final Reactive reactive = new Reactive();
+
+    private final Batch batch = new Batch();
+
+    private final Index index = new Index();
+
+    private final Store store = new Store();
+
+    private final Cache cache = new Cache();
+
+    private final Job job = new Job();
+
+    public boolean isUseEmbeddedThumbnail() {
+        return useEmbeddedThumbnail;
+    }
+
+    public void setUseEmbeddedThumbnail(boolean useEmbeddedThumbnail) {
+        this.useEmbeddedThumbnail = useEmbeddedThumbnail;
+    }
+
+    public int getThumbnailMinSize() {
+        return thumbnailMinSize;
+    }
+
+    public void setThumbnailMinSize(int thumbnailMinSize) {
+        this.thumbnailMinSize = thumbnailMinSize;
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public void setAlgorithm(String algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    public int getBits() {
+        return bits;
+    }
+
+    public void setBits(int bits) {
+        this.bits = bits;
+    }
+
+    public Probe getProbe() {
+        return probe;
+    }
+
+    public Admission getAdmission() {
+        return admission;
+    }
+
+    public Stream getStream() {
+        return stream;
+    }
+
+    public Tiled getTiled() {
+        return tiled;
+    }
+
+    public Frames getFrames() {
+        return frames;
+    }
+
+    public Cpu getCpu() {
+        return cpu;
+    }
+
+    public Reactive getReactive() {
+        return reactive;
+    }
+
+    public Batch getBatch() {
+        return batch;
+    }
+
+    public Index getIndex() {
+        return index;
+    }
+
+    public Store getStore() {
+        return store;
+    }
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    public Job getJob() {
+        return job;
+    }
+
+    public static class Probe {
+
+        /**
+         * Largest image, in pixels, that is decoded. Checked from the header before any pixel data is
+         * read, so decompression bombs are rejected without decoding. 0 disables the check.
+         */
+        private long maxPixels = 200_000_000L;
+
+        public long getMaxPixels() {
+            return maxPixels;
+        }
+
+        public void setMaxPixels(long maxPixels) {
+            this.maxPixels = maxPixels;
+        }
+    }
+
+    public static class Admission {
+
+        /**
+         * Reserve the estimated memory of every decode from a shared budget before decoding.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Bytes concurrent decodes may hold in total. 0 uses a quarter of the maximum heap.
+         */
+        private long memoryBudget = 0;
+
+        /**
+         * How long a decode waits for budget before it is rejected.
+         */
+        private long maxWaitMillis = 2000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getMemoryBudget() {
+            return memoryBudget;
+        }
+
+        public void setMemoryBudget(long memoryBudget) {
+            this.memoryBudget = memoryBudget;
+        }
+
+        public long getMaxWaitMillis() {
+            return maxWaitMillis;
+        }
+
+        public void setMaxWaitMillis(long maxWaitMillis) {
+            this.maxWaitMillis = maxWaitMillis;
+        }
+    }
+
+    public static class Stream {
+
+        /**
+         * Let ImageIO cache the streams it reads uploads from in temporary files, as it does by default.
+         * When false, uploads are read into pooled memory buffers and ImageIO caches in memory only.
+         */
+        private boolean diskCache = false;
+
+        /**
+         * Buffers kept for reuse between requests.
+         */
+        private int poolSize = 16;
+
+        /**
+         * Largest buffer, in bytes, kept for reuse. Larger uploads are read into a one-off buffer.
+         */
+        private int maxPooledBufferSize = 4 * 1024 * 1024;
+
+        /**
+         * Buffer size, in bytes, a read starts from when the upload size is not known in advance.
+         */
+        private int initialBufferSize = 256 * 1024;
+
+        public boolean isDiskCache() {
+            return diskCache;
+        }
+
+        public void setDiskCache(boolean diskCache) {
+            this.diskCache = diskCache;
+        }
+
+        public int getPoolSize() {
+            return poolSize;
+        }
+
+        public void setPoolSize(int poolSize) {
+            this.poolSize = poolSize;
+        }
+
+        public int getMaxPooledBufferSize() {
+            return maxPooledBufferSize;
+        }
+
+        public void setMaxPooledBufferSize(int maxPooledBufferSize) {
+            this.maxPooledBufferSize = maxPooledBufferSize;
+        }
+
+        public int getInitialBufferSize() {
+            return initialBufferSize;
+        }
+
+        public void setInitialBufferSize(int initialBufferSize) {
+            this.initialBufferSize = initialBufferSize;
+        }
+    }
+
+    public static class Tiled {
+
+        /**
+         * Decode very large TIFF images as horizontal bands in parallel. Only applies to local files and
+         * uploads held in memory, which every band can read independently.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Smallest image, in pixels, decoded in parallel bands. Smaller images decode faster on one thread.
+         */
+        private long minPixels = 50_000_000L;
+
+        /**
+         * Threads of the fork-join pool decoding bands. Defaults to the number of available processors.
+         */
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getMinPixels() {
+            return minPixels;
+        }
+
+        public void setMinPixels(long minPixels) {
+            this.minPixels = minPixels;
+        }
+
+        public int getParallelism() {
+            return parallelism;
+        }
+
+        public void setParallelism(int parallelism) {
+            this.parallelism = parallelism;
+        }
+    }
+
+    public static class Frames {
+
+        /**
+         * Fingerprint every step-th frame of an animation or multi-page image, starting with the first,
+         * when a request does not say.
+         */
+        private int step = 1;
+
+        /**
+         * Most frames fingerprinted per image, used when a request does not say and as the cap on what a
+         * request may ask for; later frames are not decoded.
+         */
+        private int maxFrames = 100;
+
+        public int getStep() {
+            return step;
+        }
+
+        public void setStep(int step) {
+            this.step = step;
+        }
+
+        public int getMaxFrames() {
+            return maxFrames;
+        }
+
+        public void setMaxFrames(int maxFrames) {
+            this.maxFrames = maxFrames;
+        }
+    }
+
+    public static class Cpu {
+
+        /**
+         * Threads decoding and hashing single-image requests. Request threads only read the upload and
+         * wait, so they can be virtual threads while this pool bounds the CPU work to the cores.
+         */
+        private int poolSize = Runtime.getRuntime().availableProcessors();
+
+        /**
+         * Requests waiting for a thread. Requests beyond it are refused with 503 and Retry-After.
+         */
+        private int queueCapacity = 64;
+
+        public int getPoolSize() {
+            return poolSize;
+        }
+
+        public void setPoolSize(int poolSize) {
+            this.poolSize = poolSize;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+    }
+
+    public static class Reactive {
+
+        /**
+         * Largest upload, in bytes, accepted by the reactive endpoints. Uploads are held in memory.
+         */
+        private long maxUploadSize = 50L * 1024 * 1024;
+
+        public long getMaxUploadSize() {
+            return maxUploadSize;
+        }
+
+        public void setMaxUploadSize(long maxUploadSize) {
+            this.maxUploadSize = maxUploadSize;
+        }
+    }
+
+    public static class Batch {
+
+        /**
+         * Worker threads fingerprinting batch items. Defaults to the number of available processors.
+         */
+        private int poolSize = Runtime.getRuntime().availableProcessors();
+
+        /**
+         * Items waiting for a worker before submitting threads run items themselves.
+         */
+        private int queueCapacity = 256;
+
+        /**
+         * Largest number of items accepted in one batch request.
+         */
+        private int maxItems = 500;
+
+        public int getPoolSize() {
+            return poolSize;
+        }
+
+        public void setPoolSize(int poolSize) {
+            this.poolSize = poolSize;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public int getMaxItems() {
+            return maxItems;
+        }
+
+        public void setMaxItems(int maxItems) {
+            this.maxItems = maxItems;
+        }
+    }
+
+    public static class Index {
+
+        /**
+         * Index implementation: {@code bk-tree}, {@code multi-index} or {@code linear} (brute force scan).
+         */
+        private String type = "bk-tree";
+
+        /**
+         * Number of bands the fingerprint is split into by the {@code multi-index} index. Searches within
+         * a distance below the band count only need exact band lookups; wider searches probe neighbouring
+         * band values. Bands of roughly log2(entries) bits keep posting lists short.
+         */
+        private int bands = 4;
+
+        /**
+         * Number of entries to size the index structures for up front.
+         */
+        private int expectedSize = 100_000;
+
+        /**
+         * Search radius, in bits, used when a request does not specify one.
+         */
+        private int defaultMaxDistance = 10;
+
+        /**
+         * Upper bound for the number of matches a search returns.
+         */
+        private int maxLimit = 1000;
+
+        public String getType() {
+            return type;
+        }
+
+        public void setType(String type) {
+            this.type = type;
+        }
+
+        public int getBands() {
+            return bands;
+        }
+
+        public void setBands(int bands) {
+            this.bands = bands;
+        }
+
+        public int getExpectedSize() {
+            return expectedSize;
+        }
+
+        public void setExpectedSize(int expectedSize) {
+            this.expectedSize = expectedSize;
+        }
+
+        public int getDefaultMaxDistance() {
+            return defaultMaxDistance;
+        }
+
+        public void setDefaultMaxDistance(int defaultMaxDistance) {
+            this.defaultMaxDistance = defaultMaxDistance;
+        }
+
+        public int getMaxLimit() {
+            return maxLimit;
+        }
+
+        public void setMaxLimit(int maxLimit) {
+            this.maxLimit = maxLimit;
+        }
+    }
+
+    public static class Store {
+
+        /**
+         * Persist indexed fingerprints to a memory-mapped append-only log and reload them at startup.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Log file location. Metadata is kept next to it with a {@code .meta} suffix.
+         */
+        private String path = "data/fingerprints.store";
+
+        /**
+         * Force every append to the storage device. Appends always survive a process crash; this also
+         * makes them survive power loss, at the cost of a sync per write.
+         */
+        private boolean syncWrites = false;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public void setPath(String path) {
+            this.path = path;
+        }
+
+        public boolean isSyncWrites() {
+            return syncWrites;
+        }
+
+        public void setSyncWrites(boolean syncWrites) {
+            this.syncWrites = syncWrites;
+        }
+    }
+
+    public static class Cache {
+
+        /**
+         * Cache fingerprints of local files by (path, size, mtime) and of uploads by content digest.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Maximum number of cached fingerprints.
+         */
+        private long maxEntries = 100_000;
+
+        /**
+         * File the cache is saved to on shutdown and loaded from at startup. Empty disables persistence.
+         */
+        private String persistPath = "";
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getMaxEntries() {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(long maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        public String getPersistPath() {
+            return persistPath;
+        }
+
+        public void setPersistPath(String persistPath) {
+            this.persistPath = persistPath;
+        }
+    }
+
+    public static class Job {
+
+        /**
+         * Threads reading file contents in a directory job. Sized to the disk, not the CPU.
+         */
+        private int ioThreads = 4;
+
+        /**
+         * Threads decoding and hashing in a directory job.
+         */
+        private int cpuThreads = Runtime.getRuntime().availableProcessors();
+
+        /**
+         * Capacity of each queue between job stages. Bounds the number of files held in memory.
+         */
+        private int queueCapacity = 256;
+
+        /**
+         * Records written between checkpoints. A resumed job repeats at most this many files.
+         */
+        private int checkpointInterval = 1000;
+
+        /**
+         * Directory job outputs are written to. Output paths are resolved against it and may not leave it.
+         */
+        private String outputDir = "fingerprint-jobs";
+
+        /**
+         * Attempts at a file whose decode is turned away because the decode budget is busy, before the file
+         * is recorded as a failure.
+         */
+        private int admissionAttempts = 8;
+
+        /**
+         * Wait before the second attempt at a file turned away by the decode budget. Doubles with every
+         * further attempt, up to 30 seconds.
+         */
+        private long admissionBackoffMillis = 100;
+
+        /**
+         * Largest file, in bytes, a directory job reads. Larger files are recorded as failures without
+         * being read, so the queues hold at most this much per file.
+         */
+        private long maxFileSize = 50L * 1024 * 1024;
+
+        public int getIoThreads() {
+            return ioThreads;
+        }
+
+        public void setIoThreads(int ioThreads) {
+            this.ioThreads = ioThreads;
+        }
+
+        public int getCpuThreads() {
+            return cpuThreads;
+        }
+
+        public void setCpuThreads(int cpuThreads) {
+            this.cpuThreads = cpuThreads;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public int getCheckpointInterval() {
+            return checkpointInterval;
+        }
+
+        public void setCheckpointInterval(int checkpointInterval) {
+            this.checkpointInterval = checkpointInterval;
+        }
+
+        public String getOutputDir() {
+            return outputDir;
+        }
+
+        public void setOutputDir(String outputDir) {
+            this.outputDir = outputDir;
+        }
+
+        public int getAdmissionAttempts() {
+            return admissionAttempts;
+        }
+
+        public void setAdmissionAttempts(int admissionAttempts) {
+            this.admissionAttempts = admissionAttempts;
+        }
+
+        public long getAdmissionBackoffMillis() {
+            return admissionBackoffMillis;
+        }
+
+        public void setAdmissionBackoffMillis(long admissionBackoffMillis) {
+            this.admissionBackoffMillis = admissionBackoffMillis;
+        }
+
+        public long getMaxFileSize() {
+            return maxFileSize;
+        }
+
+        public void setMaxFileSize(long maxFileSize) {
+            this.maxFileSize = maxFileSize;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.example.imagefingerprint;
+
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * Decodes the frames of an animated GIF or the pages of a multi-page TIFF one at a time, handing each
+ * sampled frame to a {@link FrameConsumer} and dropping it before the next is read, so memory stays
+ * at one frame whatever the length of the sequence.
+ * <p>
+ * Every step-th frame is sampled, starting with the first, up to maxFrames frames. TIFF pages are
+ * independent images, so skipped pages are never decoded and sampled ones are decoded subsampled like
+ * single images. GIF frames usually only hold what changed since the previous frame, so they are drawn
+ * onto a canvas of the logical screen size, honouring each frame's disposal method; every frame up to the
+ * last sampled one is decoded, but only sampled frames are handed on. Each frame is checked against
+ * maxPixels before it is read, and frames larger than the canvas reserve the difference from the budget.
+ */
+final class FrameDecoder {
+
+    private static final int BYTES_PER_PIXEL = 4;
+    private static final String GIF_IMAGE_METADATA = "javax_imageio_gif_image_1.0";
+    private static final String GIF_STREAM_METADATA = "javax_imageio_gif_stream_1.0";
+
+    interface FrameConsumer {
+
+        void accept(int index, BufferedImage frame) throws IOException;
+    }
+
+    private FrameDecoder() {
+    }
+
+    /**
+     * Decodes the sampled frames of the stream, handing each to consumer, and returns how many were
+     * handed on, or null when no reader can decode the input. Frames above maxPixels are rejected, and
+     * decode memory is reserved from budget, when not null, until consumer returns.
+     */
+    static FrameCount decode(ImageInputStream input, int minWidth, int minHeight, int step, int maxFrames,
+                             long maxPixels, DecodeBudget budget, FrameConsumer consumer) throws IOException {
+        if (step < 1) {
+            throw new IllegalArgumentException("Frame step must be at least 1.");
+        }
+        if (maxFrames < 1) {
+            throw new IllegalArgumentException("Maximum frames must be at least 1.");
+        }
+        ImageReader reader = ImageDecoder.acquireReader(input);
+        if (reader == null) {
+            return null;
+        }
+        boolean reusable = false;
+        try {
+            reader.setInput(input, true, false);
+            FrameCount count = "gif".equalsIgnoreCase(reader.getFormatName())
+                    ? decodeAnimation(reader, step, maxFrames, maxPixels, budget, consumer)
+                    : decodePages(reader, minWidth, minHeight, step, maxFrames, maxPixels, budget, consumer);
+            reusable = true;
+            return count;
+        } finally {
+            ImageDecoder.releaseReader(reader, reusable);
+        }
+    }
+
+    private static FrameCount decodePages(ImageReader reader, int minWidth, int minHeight, int step, int maxFrames,
+                                          long maxPixels, DecodeBudget budget, FrameConsumer consumer) throws IOException {
+        int sampled = 0;
+        int index = 0;
+        for (; sampled < maxFrames && hasFrame(reader, index); index += step) {
+            int width = reader.getWidth(index);
+            int height = reader.getHeight(index);
+            checkPixels(width, height, maxPixels);
+            ImageReadParam param = reader.getDefaultReadParam();
+            int periodX = ImageDecoder.subsamplingPeriod(width, minWidth);
+            int periodY = ImageDecoder.subsamplingPeriod(height, minHeight);
+            if (periodX > 1 || periodY > 1) {
+                param.setSourceSubsampling(periodX, periodY, 0, 0);
+            }
+            int reservation = budget == null ? 0 : budget.reserve(ImageDecoder.estimateBytes(width, height, periodX, periodY));
+            try {
+                consumer.accept(index, reader.read(index, param));
+            } finally {
+                if (reservation > 0) {
+                    budget.release(reservation);
+                }
+            }
+            sampled++;
+        }
+        return new FrameCount(sampled, hasFrame(reader, index));
+    }
+
+    private static FrameCount decodeAnimation(ImageReader reader, int step, int maxFrames, long maxPixels,
+                                              DecodeBudget budget, FrameConsumer consumer) throws IOException {
+        int canvasWidth = reader.getWidth(0);
+        int canvasHeight = reader.getHeight(0);
+        IIOMetadata streamMetadata = reader.getStreamMetadata();
+        if (streamMetadata != null) {
+            Node screen = child(streamMetadata.getAsTree(GIF_STREAM_METADATA), "LogicalScreenDescriptor");
+            canvasWidth = Math.max(canvasWidth, intAttribute(screen, "logicalScreenWidth"));
+            canvasHeight = Math.max(canvasHeight, intAttribute(screen, "logicalScreenHeight"));
+        }
+        checkPixels(canvasWidth, canvasHeight, maxPixels);
+        // The canvas, the area saved for restoreToPrevious and the decoded frame
+        long bytes = 3L * canvasWidth * canvasHeight * BYTES_PER_PIXEL;
+        int reservation = budget == null ? 0 : budget.reserve(bytes);
+        try {
+            BufferedImage canvas = new BufferedImage(canvasWidth, canvasHeight, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D graphics = canvas.createGraphics();
+            try {
+                int sampled = 0;
+                int index = 0;
+                for (; sampled < maxFrames && hasFrame(reader, index); index++) {
+                    int frameWidth = reader.getWidth(index);
+                    int frameHeight = reader.getHeight(index);
+                    checkPixels(frameWidth, frameHeight, maxPixels);
+                    // The canvas reservation holds frames up to the canvas size; larger ones reserve the rest
+                    long excess = 2L * ((long) frameWidth * frameHeight - (long) canvasWidth * canvasHeight) * BYTES_PER_PIXEL;
+                    int frameReservation = budget == null || excess <= 0 ? 0 : budget.reserve(excess);
+                    try {
+                        BufferedImage frame = reader.read(index);
+                        Node tree = reader.getImageMetadata(index).getAsTree(GIF_IMAGE_METADATA);
+                        Node descriptor = child(tree, "ImageDescriptor");
+                        int x = intAttribute(descriptor, "imageLeftPosition");
+                        int y = intAttribute(descriptor, "imageTopPosition");
+                        String disposal = stringAttribute(child(tree, "GraphicControlExtension"), "disposalMethod");
+
+                        BufferedImage previous = "restoreToPrevious".equals(disposal)
+                                ? copy(canvas, x, y, frame.getWidth(), frame.getHeight()) : null;
+                        graphics.drawImage(frame, x, y, null);
+                        if (index % step == 0) {
+                            consumer.accept(index, canvas);
+                            sampled++;
+                        }
+                        if ("restoreToBackgroundColor".equals(disposal)) {
+                            graphics.setComposite(AlphaComposite.Clear);
+                            graphics.fillRect(x, y, frame.getWidth(), frame.getHeight());
+                            graphics.setComposite(AlphaComposite.SrcOver);
+                        } else if (previous != null) {
+                            graphics.setComposite(AlphaComposite.Src);
+                            graphics.drawImage(previous, x, y, null);
+                            graphics.setComposite(AlphaComposite.SrcOver);
+                        }
+                    } finally {
+                        if (frameReservation > 0) {
+                            budget.release(frameReservation);
+                        }
+                    }
+                }
+                int next = (index + step - 1) / step * step;
+                return new FrameCount(sampled, sampled == maxFrames && hasFrame(reader, next));
+            } finally {
+                graphics.dispose();
+            }
+        } finally {
+            if (reservation > 0) {
+                budget.release(reservation);
+            }
+        }
+    }
+
+    private static boolean hasFrame(ImageReader reader, int index) throws IOException {
+        try {
+            reader.getWidth(index);
+            return true;
+        } catch (IndexOutOfBoundsException e) {
+            return false;
+        }
+    }
+
+    private static void checkPixels(int width, int height, long maxPixels) {
+        long pixels = (long) width * height;
+        if (maxPixels > 0 && pixels > maxPixels) {
+            throw new DecodeRejectedException("Frame of " + width + "x" + height + " pixels exceeds the limit of "
+                    + maxPixels + " pixels.", pixels * BYTES_PER_PIXEL, false);
+        }
+    }
+
+    private static BufferedImage copy(BufferedImage canvas, int x, int y, int width, int height) {
+        BufferedImage copy = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = copy.createGraphics();
+        try {
+            graphics.setComposite(AlphaComposite.Src);
+            graphics.drawImage(canvas, -x, -y, null);
+        } finally {
+            graphics.dispose();
+        }
+        return copy;
+    }
+
+    private static Node child(Node node, String name) {
+        for (Node child = node == null ? null : node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (name.equals(child.getNodeName())) {
+                return child;
+            }
+        }
+        return null;
+    }
+
+    private static String stringAttribute(Node node, String name) {
+        NamedNodeMap attributes = node == null ? null : node.getAttributes();
+        Node attribute = attributes == null ? null : attributes.getNamedItem(name);
+        return attribute == null ? null : attribute.getNodeValue();
+    }
+
+    private static int intAttribute(Node node, String name) {
+        String value = stringAttribute(node, name);
+        return value == null ? 0 : Integer.parseInt(value);
+    }
+
+    /**
+     * How many frames were handed on, and whether the sequence went on past the last of them.
+     */
+    static final class FrameCount {
+
+        private final int sampled;
+        private final boolean truncated;
+
+        FrameCount(int sampled, boolean truncated) {
+            this.sampled = sampled;
+            this.truncated = truncated;
+        }
+
+        int sampled() {
+            return sampled;
+        }
+
+        boolean truncated() {
+            return truncated;
+        }
+    }
+}
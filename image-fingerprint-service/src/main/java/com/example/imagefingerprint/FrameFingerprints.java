@@ -0,0 +1,75 @@
+package com.example.imagefingerprint;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Fingerprints of the sampled frames of an animation or multi-page image, in frame order, and a
+ * sequence fingerprint summarising them: each bit is set when it is set in more than half the frames,
+ * so a handful of frames that differ, such as a fade in, do not change it.
+ */
+public final class FrameFingerprints {
+
+    private final List<Frame> frames;
+    private final boolean truncated;
+
+    FrameFingerprints(List<Frame> frames, boolean truncated) {
+        this.frames = Collections.unmodifiableList(new ArrayList<>(frames));
+        this.truncated = truncated;
+    }
+
+    public List<Frame> frames() {
+        return frames;
+    }
+
+    /**
+     * True when the sequence went on past the last sampled frame, cut off by the frame limit.
+     */
+    public boolean truncated() {
+        return truncated;
+    }
+
+    public WideFingerprint sequence() {
+        long[] first = frames.get(0).fingerprint().words();
+        int bits = first.length * Long.SIZE;
+        int[] counts = new int[bits];
+        for (Frame frame : frames) {
+            long[] words = frame.fingerprint().words();
+            for (int bit = 0; bit < bits; bit++) {
+                if ((words[bit / Long.SIZE] & (1L << (Long.SIZE - 1 - bit % Long.SIZE))) != 0) {
+                    counts[bit]++;
+                }
+            }
+        }
+        long[] sequence = new long[first.length];
+        for (int bit = 0; bit < bits; bit++) {
+            if (counts[bit] * 2 > frames.size()) {
+                sequence[bit / Long.SIZE] |= 1L << (Long.SIZE - 1 - bit % Long.SIZE);
+            }
+        }
+        return new WideFingerprint(sequence);
+    }
+
+    public static final class Frame {
+
+        private final int index;
+        private final WideFingerprint fingerprint;
+
+        Frame(int index, WideFingerprint fingerprint) {
+            this.index = index;
+            this.fingerprint = fingerprint;
+        }
+
+        /**
+         * Position of the frame in the file, counting skipped frames.
+         */
+        public int index() {
+            return index;
+        }
+
+        public WideFingerprint fingerprint() {
+            return fingerprint;
+        }
+    }
+}
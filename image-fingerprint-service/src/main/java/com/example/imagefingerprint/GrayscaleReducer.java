@@ -0,0 +1,203 @@
+package com.example.imagefingerprint;
+
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * Area-averaging grayscale reducer that reads the backing {@link DataBuffer} of a decoded image directly.
+ * Every source pixel is added to the luminance sum of the grid cell it falls into, so a reduction is a
+ * single pass over the pixels with no intermediate images.
+ * <p>
+ * Supported layouts are packed int RGB (INT_RGB, INT_ARGB, INT_BGR, ...) and interleaved 8-bit RGB or
+ * gray (3BYTE_BGR, 4BYTE_ABGR, BYTE_GRAY and the custom interleaved rasters PNG produces). Anything else
+ * has to go through the generic Java2D path.
+ */
+final class GrayscaleReducer {
+
+    private GrayscaleReducer() {
+    }
+
+    static boolean supports(BufferedImage image) {
+        return layoutOf(image) != Layout.UNSUPPORTED;
+    }
+
+    /**
+     * Reduces the whole image to a gridWidth x gridHeight array of average luminance values (0-255),
+     * stored row by row.
+     */
+    static int[] reduce(BufferedImage image, int gridWidth, int gridHeight) {
+        long[] sums = new long[gridWidth * gridHeight];
+        int[] counts = new int[gridWidth * gridHeight];
+        accumulate(image, 0, 0, image.getWidth(), image.getHeight(), gridWidth, gridHeight, sums, counts);
+        return average(sums, counts, new int[gridWidth * gridHeight]);
+    }
+
+    /**
+     * Like {@link #reduce(BufferedImage, int, int)} but without allocating: the result is the
+     * workspace's luminance array, valid until the workspace is next used for a reduction.
+     */
+    static int[] reduce(BufferedImage image, int gridWidth, int gridHeight, HashWorkspace workspace) {
+        int cells = gridWidth * gridHeight;
+        long[] sums = workspace.sums(cells);
+        int[] counts = workspace.counts(cells);
+        accumulate(image, 0, 0, image.getWidth(), image.getHeight(), gridWidth, gridHeight, sums, counts);
+        return average(sums, counts, workspace.luminance(cells));
+    }
+
+    /**
+     * Adds the luminance of every pixel of {@code image} into {@code sums}/{@code counts}. The image is
+     * treated as the region starting at (originX, originY) of a larger fullWidth x fullHeight image, which
+     * lets tiles of one image be reduced independently into the same grid.
+     */
+    static void accumulate(BufferedImage image, int originX, int originY, int fullWidth, int fullHeight,
+                           int gridWidth, int gridHeight, long[] sums, int[] counts) {
+        Layout layout = layoutOf(image);
+        if (layout == Layout.UNSUPPORTED) {
+            throw new IllegalArgumentException("Unsupported image layout for direct reduction: type " + image.getType());
+        }
+        int width = image.getWidth();
+        int height = image.getHeight();
+
+        HashWorkspace workspace = HashWorkspace.current();
+        int[] cellOfColumn = workspace.cellOfColumn(width);
+        int[] columnsPerCell = workspace.columnsPerCell(gridWidth);
+        for (int x = 0; x < width; x++) {
+            int cell = (int) ((long) (originX + x) * gridWidth / fullWidth);
+            cellOfColumn[x] = cell;
+            columnsPerCell[cell]++;
+        }
+
+        WritableRaster raster = image.getRaster();
+        int translateX = raster.getSampleModelTranslateX();
+        int translateY = raster.getSampleModelTranslateY();
+        SampleModel sampleModel = raster.getSampleModel();
+
+        if (layout == Layout.PACKED_INT) {
+            DataBufferInt buffer = (DataBufferInt) raster.getDataBuffer();
+            int[] data = buffer.getData();
+            DirectColorModel colorModel = (DirectColorModel) image.getColorModel();
+            int redShift = Integer.numberOfTrailingZeros(colorModel.getRedMask());
+            int greenShift = Integer.numberOfTrailingZeros(colorModel.getGreenMask());
+            int blueShift = Integer.numberOfTrailingZeros(colorModel.getBlueMask());
+            int scanlineStride = ((SinglePixelPackedSampleModel) sampleModel).getScanlineStride();
+            int base = buffer.getOffset() - translateY * scanlineStride - translateX;
+
+            for (int y = 0; y < height; y++) {
+                int rowOffset = (int) ((long) (originY + y) * gridHeight / fullHeight) * gridWidth;
+                int index = base + y * scanlineStride;
+                for (int x = 0; x < width; x++) {
+                    int pixel = data[index + x];
+                    sums[rowOffset + cellOfColumn[x]] += luminance((pixel >>> redShift) & 0xFF,
+                            (pixel >>> greenShift) & 0xFF, (pixel >>> blueShift) & 0xFF);
+                }
+                addRowCounts(counts, rowOffset, columnsPerCell);
+            }
+            return;
+        }
+
+        DataBufferByte buffer = (DataBufferByte) raster.getDataBuffer();
+        byte[] data = buffer.getData();
+        PixelInterleavedSampleModel interleaved = (PixelInterleavedSampleModel) sampleModel;
+        int pixelStride = interleaved.getPixelStride();
+        int scanlineStride = interleaved.getScanlineStride();
+        int[] bandOffsets = interleaved.getBandOffsets();
+        int base = buffer.getOffset() - translateY * scanlineStride - translateX * pixelStride;
+
+        if (layout == Layout.INTERLEAVED_GRAY) {
+            int grayOffset = bandOffsets[0];
+            for (int y = 0; y < height; y++) {
+                int rowOffset = (int) ((long) (originY + y) * gridHeight / fullHeight) * gridWidth;
+                int index = base + y * scanlineStride + grayOffset;
+                for (int x = 0; x < width; x++, index += pixelStride) {
+                    sums[rowOffset + cellOfColumn[x]] += data[index] & 0xFF;
+                }
+                addRowCounts(counts, rowOffset, columnsPerCell);
+            }
+            return;
+        }
+
+        int redOffset = bandOffsets[0];
+        int greenOffset = bandOffsets[1];
+        int blueOffset = bandOffsets[2];
+        for (int y = 0; y < height; y++) {
+            int rowOffset = (int) ((long) (originY + y) * gridHeight / fullHeight) * gridWidth;
+            int index = base + y * scanlineStride;
+            for (int x = 0; x < width; x++, index += pixelStride) {
+                sums[rowOffset + cellOfColumn[x]] += luminance(data[index + redOffset] & 0xFF,
+                        data[index + greenOffset] & 0xFF, data[index + blueOffset] & 0xFF);
+            }
+            addRowCounts(counts, rowOffset, columnsPerCell);
+        }
+    }
+
+    static int[] average(long[] sums, int[] counts, int[] target) {
+        for (int i = 0; i < sums.length; i++) {
+            target[i] = counts[i] == 0 ? 0 : (int) (sums[i] / counts[i]);
+        }
+        return target;
+    }
+
+    // ITU-R BT.601 weights in 8-bit fixed point
+    static int luminance(int red, int green, int blue) {
+        return (77 * red + 150 * green + 29 * blue + 128) >> 8;
+    }
+
+    private static void addRowCounts(int[] counts, int rowOffset, int[] columnsPerCell) {
+        for (int cell = 0; cell < columnsPerCell.length; cell++) {
+            counts[rowOffset + cell] += columnsPerCell[cell];
+        }
+    }
+
+    private static Layout layoutOf(BufferedImage image) {
+        WritableRaster raster = image.getRaster();
+        SampleModel sampleModel = raster.getSampleModel();
+        ColorModel colorModel = image.getColorModel();
+        DataBuffer dataBuffer = raster.getDataBuffer();
+
+        if (dataBuffer instanceof DataBufferInt && dataBuffer.getNumBanks() == 1
+                && sampleModel instanceof SinglePixelPackedSampleModel
+                && colorModel instanceof DirectColorModel
+                && colorModel.getColorSpace().isCS_sRGB()) {
+            DirectColorModel direct = (DirectColorModel) colorModel;
+            if (isByteMask(direct.getRedMask()) && isByteMask(direct.getGreenMask()) && isByteMask(direct.getBlueMask())) {
+                return Layout.PACKED_INT;
+            }
+            return Layout.UNSUPPORTED;
+        }
+
+        if (dataBuffer instanceof DataBufferByte && dataBuffer.getNumBanks() == 1
+                && sampleModel instanceof PixelInterleavedSampleModel
+                && colorModel instanceof ComponentColorModel
+                && sampleModel.getSampleSize(0) == 8) {
+            ColorSpace colorSpace = colorModel.getColorSpace();
+            if (colorSpace.isCS_sRGB() && colorModel.getNumColorComponents() == 3) {
+                return Layout.INTERLEAVED_RGB;
+            }
+            if (colorSpace.getType() == ColorSpace.TYPE_GRAY && colorModel.getNumColorComponents() == 1) {
+                return Layout.INTERLEAVED_GRAY;
+            }
+        }
+        return Layout.UNSUPPORTED;
+    }
+
+    private static boolean isByteMask(int mask) {
+        return mask != 0 && (mask >>> Integer.numberOfTrailingZeros(mask)) == 0xFF;
+    }
+
+    private enum Layout {
+        PACKED_INT,
+        INTERLEAVED_RGB,
+        INTERLEAVED_GRAY,
+        UNSUPPORTED
+    }
+}
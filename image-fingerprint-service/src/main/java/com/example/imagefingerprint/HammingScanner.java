@@ -0,0 +1,169 @@
+package com.example.imagefingerprint;
+
+/**
+ * Brute force Hamming distance scan over a packed {@code long[]} of fingerprints. The loop is unrolled
+ * by four so the independent XOR/popcount chains can issue in parallel, and the best matches are kept
+ * in a primitive bounded max-heap, so a scan allocates nothing beyond its result.
+ */
+public final class HammingScanner {
+
+    private HammingScanner() {
+    }
+
+    /**
+     * Returns the positions (relative to the array) of up to k fingerprints in {@code hashes[from, to)}
+     * within maxDistance of the query, closest first; ties are broken by position.
+     */
+    public static TopK scan(long query, long[] hashes, int from, int to, int maxDistance, int k) {
+        TopK top = new TopK(k);
+        if (k == 0) {
+            return top;
+        }
+        // Anything farther than this can no longer enter the result
+        int threshold = maxDistance;
+        int i = from;
+        for (int end = to - 3; i < end; i += 4) {
+            int d0 = Long.bitCount(query ^ hashes[i]);
+            int d1 = Long.bitCount(query ^ hashes[i + 1]);
+            int d2 = Long.bitCount(query ^ hashes[i + 2]);
+            int d3 = Long.bitCount(query ^ hashes[i + 3]);
+            if ((d0 <= threshold) | (d1 <= threshold) | (d2 <= threshold) | (d3 <= threshold)) {
+                threshold = offer(top, d0, i, threshold, maxDistance);
+                threshold = offer(top, d1, i + 1, threshold, maxDistance);
+                threshold = offer(top, d2, i + 2, threshold, maxDistance);
+                threshold = offer(top, d3, i + 3, threshold, maxDistance);
+            }
+        }
+        for (; i < to; i++) {
+            threshold = offer(top, Long.bitCount(query ^ hashes[i]), i, threshold, maxDistance);
+        }
+        top.sort();
+        return top;
+    }
+
+    /**
+     * Counts the fingerprints in {@code hashes[from, to)} within maxDistance of the query.
+     */
+    public static int countWithin(long query, long[] hashes, int from, int to, int maxDistance) {
+        int count = 0;
+        int i = from;
+        for (int end = to - 3; i < end; i += 4) {
+            count += (Long.bitCount(query ^ hashes[i]) <= maxDistance ? 1 : 0)
+                    + (Long.bitCount(query ^ hashes[i + 1]) <= maxDistance ? 1 : 0)
+                    + (Long.bitCount(query ^ hashes[i + 2]) <= maxDistance ? 1 : 0)
+                    + (Long.bitCount(query ^ hashes[i + 3]) <= maxDistance ? 1 : 0);
+        }
+        for (; i < to; i++) {
+            count += Long.bitCount(query ^ hashes[i]) <= maxDistance ? 1 : 0;
+        }
+        return count;
+    }
+
+    private static int offer(TopK top, int distance, int position, int threshold, int maxDistance) {
+        if (distance > threshold) {
+            return threshold;
+        }
+        top.offer(distance, position);
+        // Once full, a candidate must beat the current worst; equal distances lose to earlier positions
+        return top.isFull() ? Math.min(maxDistance, top.worstDistance() - 1) : threshold;
+    }
+
+    /**
+     * Bounded max-heap of (distance, position) pairs ordered by distance then position.
+     * After {@link #sort()} the entries are in ascending order.
+     */
+    public static final class TopK {
+
+        private final int[] distances;
+        private final int[] positions;
+        private int size;
+
+        TopK(int capacity) {
+            distances = new int[capacity];
+            positions = new int[capacity];
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public int distance(int i) {
+            return distances[i];
+        }
+
+        public int position(int i) {
+            return positions[i];
+        }
+
+        boolean isFull() {
+            return size == distances.length;
+        }
+
+        int worstDistance() {
+            return distances[0];
+        }
+
+        void offer(int distance, int position) {
+            if (size < distances.length) {
+                distances[size] = distance;
+                positions[size] = position;
+                siftUp(size++);
+            } else if (isBefore(distance, position, distances[0], positions[0])) {
+                distances[0] = distance;
+                positions[0] = position;
+                siftDown(0, size);
+            }
+        }
+
+        // Heap sort in place: repeatedly move the max to the end
+        void sort() {
+            for (int end = size - 1; end > 0; end--) {
+                swap(0, end);
+                siftDown(0, end);
+            }
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!isBefore(distances[parent], positions[parent], distances[i], positions[i])) {
+                    return;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i, int end) {
+            while (true) {
+                int left = 2 * i + 1;
+                if (left >= end) {
+                    return;
+                }
+                int largest = left;
+                int right = left + 1;
+                if (right < end && isBefore(distances[left], positions[left], distances[right], positions[right])) {
+                    largest = right;
+                }
+                if (!isBefore(distances[i], positions[i], distances[largest], positions[largest])) {
+                    return;
+                }
+                swap(i, largest);
+                i = largest;
+            }
+        }
+
+        private void swap(int a, int b) {
+            int distance = distances[a];
+            int position = positions[a];
+            distances[a] = distances[b];
+            positions[a] = positions[b];
+            distances[b] = distance;
+            positions[b] = position;
+        }
+
+        private static boolean isBefore(int distanceA, int positionA, int distanceB, int positionB) {
+            return distanceA < distanceB || (distanceA == distanceB && positionA < positionB);
+        }
+    }
+}
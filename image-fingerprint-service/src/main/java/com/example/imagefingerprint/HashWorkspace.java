@@ -0,0 +1,122 @@
+package com.example.imagefingerprint;
+
+import java.util.Arrays;
+
+/**
+ * Per-thread scratch arrays for reducing a decoded image and hashing it, so that fingerprinting an
+ * image in steady state allocates nothing beyond the decoder's output and the returned words.
+ * <p>
+ * Every array is returned at exactly the requested length, reallocated only when the length changes,
+ * so code looping over {@code array.length} keeps working; a thread alternating between algorithms
+ * with different grids reallocates on each switch. Accumulators are cleared on every call. An array is
+ * only valid until the next request for the same kind on the same thread, which is why the reducer and
+ * the algorithms each use their own kinds. Decoding and hashing run on the bounded CPU and batch
+ * pools, so the number of workspaces follows the number of pool threads, not of requests.
+ */
+final class HashWorkspace {
+
+    private static final ThreadLocal<HashWorkspace> CURRENT = ThreadLocal.withInitial(HashWorkspace::new);
+
+    private long[] sums = new long[0];
+    private int[] counts = new int[0];
+    private int[] luminance = new int[0];
+    private int[] cellOfColumn = new int[0];
+    private int[] columnsPerCell = new int[0];
+    private double[] transform = new double[0];
+    private double[] coefficients = new double[0];
+    private double[] sorted = new double[0];
+
+    static HashWorkspace current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Cleared per-cell luminance sums of the reducer.
+     */
+    long[] sums(int length) {
+        if (sums.length != length) {
+            sums = new long[length];
+        } else {
+            Arrays.fill(sums, 0L);
+        }
+        return sums;
+    }
+
+    /**
+     * Cleared per-cell pixel counts of the reducer.
+     */
+    int[] counts(int length) {
+        if (counts.length != length) {
+            counts = new int[length];
+        } else {
+            Arrays.fill(counts, 0);
+        }
+        return counts;
+    }
+
+    /**
+     * The reduced luminance grid passed to the algorithm. Not cleared.
+     */
+    int[] luminance(int length) {
+        if (luminance.length != length) {
+            luminance = new int[length];
+        }
+        return luminance;
+    }
+
+    /**
+     * The grid column of every image column. Not cleared.
+     */
+    int[] cellOfColumn(int length) {
+        if (cellOfColumn.length != length) {
+            cellOfColumn = new int[length];
+        }
+        return cellOfColumn;
+    }
+
+    /**
+     * Cleared count of image columns in every grid column.
+     */
+    int[] columnsPerCell(int length) {
+        if (columnsPerCell.length != length) {
+            columnsPerCell = new int[length];
+        } else {
+            Arrays.fill(columnsPerCell, 0);
+        }
+        return columnsPerCell;
+    }
+
+    /**
+     * Cleared intermediate values of an algorithm's transform.
+     */
+    double[] transform(int length) {
+        if (transform.length != length) {
+            transform = new double[length];
+        } else {
+            Arrays.fill(transform, 0.0);
+        }
+        return transform;
+    }
+
+    /**
+     * Cleared coefficients an algorithm thresholds into bits.
+     */
+    double[] coefficients(int length) {
+        if (coefficients.length != length) {
+            coefficients = new double[length];
+        } else {
+            Arrays.fill(coefficients, 0.0);
+        }
+        return coefficients;
+    }
+
+    /**
+     * Copy of the coefficients sorted to find their median. Not cleared.
+     */
+    double[] sorted(int length) {
+        if (sorted.length != length) {
+            sorted = new double[length];
+        }
+        return sorted;
+    }
+}
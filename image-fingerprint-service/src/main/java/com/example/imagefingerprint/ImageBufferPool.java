@@ -0,0 +1,121 @@
+package com.example.imagefingerprint;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reusable byte arrays that encoded images are read into before decoding, so uploads are held in
+ * memory instead of ImageIO's temporary cache files and a busy server does not allocate a fresh
+ * array per request. Reads start from the expected size when the caller knows it, such as an
+ * upload's Content-Length, and grow by doubling otherwise. Only arrays up to maxBufferSize are kept.
+ */
+final class ImageBufferPool {
+
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    private final Queue<byte[]> buffers;
+    private final int maxBufferSize;
+    private final int initialBufferSize;
+    private final AtomicLong pooledBytes = new AtomicLong();
+
+    ImageBufferPool(int poolSize, int maxBufferSize, int initialBufferSize) {
+        this.buffers = poolSize > 0 ? new ArrayBlockingQueue<>(poolSize) : null;
+        this.maxBufferSize = maxBufferSize;
+        this.initialBufferSize = Math.max(1, initialBufferSize);
+    }
+
+    static ImageBufferPool fromProperties(FingerprintProperties.Stream stream) {
+        return new ImageBufferPool(stream.getPoolSize(), stream.getMaxPooledBufferSize(), stream.getInitialBufferSize());
+    }
+
+    /**
+     * Reads the stream to its end into a pooled array. sizeHint is the expected length, or a negative
+     * value when unknown. The stream is not closed; the returned content must be.
+     */
+    Content read(InputStream in, long sizeHint) throws IOException {
+        // One spare byte so a correct hint reaches end of stream without growing the array
+        byte[] bytes = acquire(sizeHint >= 0 ? (int) Math.min(MAX_ARRAY_SIZE, sizeHint + 1) : initialBufferSize);
+        int length = 0;
+        try {
+            int n;
+            while ((n = in.read(bytes, length, bytes.length - length)) >= 0) {
+                length += n;
+                if (length == bytes.length) {
+                    if (length == MAX_ARRAY_SIZE) {
+                        throw new IOException("Image stream is larger than " + MAX_ARRAY_SIZE + " bytes.");
+                    }
+                    // The outgrown array is dropped rather than pooled, so the pool converges on arrays large enough
+                    bytes = Arrays.copyOf(bytes, (int) Math.min(MAX_ARRAY_SIZE, 2L * length));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            release(bytes);
+            throw e;
+        }
+        return new Content(bytes, length);
+    }
+
+    byte[] acquire(int minSize) {
+        byte[] bytes = buffers == null ? null : buffers.poll();
+        if (bytes == null) {
+            return new byte[minSize];
+        }
+        pooledBytes.addAndGet(-bytes.length);
+        // A pooled array that is too small is dropped; it is replaced by the larger one on release
+        return bytes.length >= minSize ? bytes : new byte[minSize];
+    }
+
+    void release(byte[] bytes) {
+        if (buffers != null && bytes.length <= maxBufferSize && buffers.offer(bytes)) {
+            pooledBytes.addAndGet(bytes.length);
+        }
+    }
+
+    /**
+     * Bytes held by arrays waiting for reuse.
+     */
+    long pooledBytes() {
+        return pooledBytes.get();
+    }
+
+    /**
+     * Bytes read into a pooled array. Closing returns the array to the pool, after which neither the
+     * content nor buffers obtained from it may be used.
+     */
+    final class Content implements Closeable {
+
+        private final byte[] bytes;
+        private final int length;
+        private boolean released;
+
+        private Content(byte[] bytes, int length) {
+            this.bytes = bytes;
+            this.length = length;
+        }
+
+        int length() {
+            return length;
+        }
+
+        /**
+         * A heap buffer over the content, positioned at its start.
+         */
+        ByteBuffer buffer() {
+            return ByteBuffer.wrap(bytes, 0, length);
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                release(bytes);
+            }
+        }
+    }
+}
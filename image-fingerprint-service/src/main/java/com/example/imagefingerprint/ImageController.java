@@ -0,0 +1,269 @@
+package com.example.imagefingerprint;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@RequestMapping("/api/image")
+public class ImageController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageController.class);
+    private static final FailureLogger failures = new FailureLogger(logger);
+
+    private final ImageService imageService;
+    private final CachedFingerprintService fingerprintService;
+    private final BatchFingerprintService batchFingerprintService;
+    private final CpuBoundExecutor cpuExecutor;
+
+    public ImageController(ImageService imageService, CachedFingerprintService fingerprintService,
+                           BatchFingerprintService batchFingerprintService, CpuBoundExecutor cpuExecutor) {
+        this.imageService = imageService;
+        this.fingerprintService = fingerprintService;
+        this.batchFingerprintService = batchFingerprintService;
+        this.cpuExecutor = cpuExecutor;
+    }
+
+    @PostMapping(value = "/fingerprint", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<Map<String, Object>> fingerprint(@RequestParam("file") MultipartFile file,
+                                                           @RequestParam(value = "algorithm", required = false) String algorithmName,
+                                                           @RequestParam(value = "bits", required = false) Integer bits) {
+        if (file == null || file.isEmpty()) {
+            return error(HttpStatus.BAD_REQUEST, "File cannot be empty.");
+        }
+        try {
+            FingerprintAlgorithm algorithm = imageService.algorithm(algorithmName, bits);
+            WideFingerprint fingerprint = cpuExecutor.call(() ->
+                    fingerprintService.fingerprint(file.getInputStream(), "uploaded file: " + file.getOriginalFilename(), algorithm,
+                            file.getSize()));
+            return ResponseEntity.ok(fingerprintResponse(fingerprint, algorithm));
+        } catch (IllegalArgumentException e) {
+            return error(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (DecodeRejectedException e) {
+            return unavailable(e);
+        } catch (Exception e) {
+            failures.log("Failed to process uploaded file {}", file.getOriginalFilename(), e);
+            return error(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to process image: " + e.getMessage());
+        }
+    }
+
+    @PostMapping(value = "/fingerprint-local", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, Object>> fingerprintLocal(@RequestBody Map<String, Object> request) {
+        String filePath = stringParam(request, "filePath");
+        if (filePath == null || filePath.trim().isEmpty()) {
+            return error(HttpStatus.BAD_REQUEST, "filePath cannot be null or empty.");
+        }
+        try {
+            if (!Files.isRegularFile(Paths.get(filePath))) {
+                return error(HttpStatus.NOT_FOUND, "File not found: " + filePath);
+            }
+        } catch (InvalidPathException e) {
+            return error(HttpStatus.BAD_REQUEST, "Invalid file path: " + e.getReason());
+        }
+        try {
+            FingerprintAlgorithm algorithm = imageService.algorithm(stringParam(request, "algorithm"), intParam(request, "bits"));
+            WideFingerprint fingerprint = cpuExecutor.call(() -> fingerprintService.fingerprint(filePath, algorithm));
+            return ResponseEntity.ok(fingerprintResponse(fingerprint, algorithm));
+        } catch (IllegalArgumentException e) {
+            return error(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (DecodeRejectedException e) {
+            return unavailable(e);
+        } catch (Exception e) {
+            return error(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to process image: " + e.getMessage());
+        }
+    }
+
+    @PostMapping(value = "/fingerprint/frames", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<Map<String, Object>> fingerprintFrames(@RequestParam("file") MultipartFile file,
+                                                                 @RequestParam(value = "algorithm", required = false) String algorithmName,
+                                                                 @RequestParam(value = "bits", required = false) Integer bits,
+                                                                 @RequestParam(value = "step", required = false) Integer step,
+                                                                 @RequestParam(value = "maxFrames", required = false) Integer maxFrames) {
+        if (file == null || file.isEmpty()) {
+            return error(HttpStatus.BAD_REQUEST, "File cannot be empty.");
+        }
+        try {
+            FingerprintAlgorithm algorithm = imageService.algorithm(algorithmName, bits);
+            FrameFingerprints fingerprints = cpuExecutor.call(() ->
+                    imageService.fingerprintFrames(file.getInputStream(), "uploaded file: " + file.getOriginalFilename(),
+                            algorithm, file.getSize(), step, maxFrames));
+            return ResponseEntity.ok(framesResponse(fingerprints, algorithm));
+        } catch (IllegalArgumentException e) {
+            return error(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (DecodeRejectedException e) {
+            return unavailable(e);
+        } catch (Exception e) {
+            failures.log("Failed to process uploaded file {}", file.getOriginalFilename(), e);
+            return error(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to process image: " + e.getMessage());
+        }
+    }
+
+    @PostMapping(value = "/fingerprint/batch", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<Map<String, Object>> fingerprintBatch(@RequestParam("files") List<MultipartFile> files,
+                                                                @RequestParam(value = "algorithm", required = false) String algorithmName,
+                                                                @RequestParam(value = "bits", required = false) Integer bits) {
+        try {
+            FingerprintAlgorithm algorithm = imageService.algorithm(algorithmName, bits);
+            return ResponseEntity.ok(batchResponse(batchFingerprintService.fingerprintUploads(files, algorithm), algorithm));
+        } catch (IllegalArgumentException e) {
+            return error(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    @PostMapping(value = "/fingerprint/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, Object>> fingerprintBatchLocal(@RequestBody Map<String, List<String>> request,
+                                                                     @RequestParam(value = "algorithm", required = false) String algorithmName,
+                                                                @RequestParam(value = "bits", required = false) Integer bits) {
+        try {
+            FingerprintAlgorithm algorithm = imageService.algorithm(algorithmName, bits);
+            return ResponseEntity.ok(batchResponse(batchFingerprintService.fingerprintPaths(request.get("filePaths"), algorithm), algorithm));
+        } catch (IllegalArgumentException e) {
+            return error(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    @PostMapping(value = "/probe", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<Map<String, Object>> probe(@RequestParam("file") MultipartFile file,
+                                                     @RequestParam(value = "algorithm", required = false) String algorithmName,
+                                                     @RequestParam(value = "bits", required = false) Integer bits) {
+        if (file == null || file.isEmpty()) {
+            return error(HttpStatus.BAD_REQUEST, "File cannot be empty.");
+        }
+        try {
+            FingerprintAlgorithm algorithm = imageService.algorithm(algorithmName, bits);
+            ImageProbe probe = ImageProbe.probe(file.getInputStream());
+            if (probe == null) {
+                return error(HttpStatus.UNSUPPORTED_MEDIA_TYPE, "No image reader recognises " + file.getOriginalFilename() + ".");
+            }
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("image", probe);
+            try {
+                body.put("strategy", imageService.route(probe, algorithm).name().toLowerCase());
+                body.put("accepted", true);
+            } catch (DecodeRejectedException e) {
+                body.put("accepted", false);
+                body.put("reason", e.getMessage());
+            }
+            return ResponseEntity.ok(body);
+        } catch (IllegalArgumentException e) {
+            return error(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (Exception e) {
+            return error(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to probe image: " + e.getMessage());
+        }
+    }
+
+    @PostMapping(value = "/similarity", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, Object>> similarity(@RequestBody Map<String, String> request) {
+        try {
+            double similarity = imageService.calculateSimilarity(request.get("fingerprint1"), request.get("fingerprint2"));
+            return ResponseEntity.ok(Collections.singletonMap("similarity", similarity));
+        } catch (IllegalArgumentException e) {
+            return error(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (Exception e) {
+            return error(HttpStatus.INTERNAL_SERVER_ERROR, "An unexpected error occurred: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/cache")
+    public Map<String, Object> cacheStats() {
+        return fingerprintService.stats();
+    }
+
+    static Map<String, Object> fingerprintResponse(WideFingerprint fingerprint, FingerprintAlgorithm algorithm) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("fingerprint", fingerprint.toHex());
+        body.put("algorithm", algorithm.name());
+        body.put("bits", algorithm.bits());
+        return body;
+    }
+
+    private static Map<String, Object> framesResponse(FrameFingerprints fingerprints, FingerprintAlgorithm algorithm) {
+        List<Map<String, Object>> frames = new ArrayList<>();
+        for (FrameFingerprints.Frame frame : fingerprints.frames()) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("index", frame.index());
+            entry.put("fingerprint", frame.fingerprint().toHex());
+            frames.add(entry);
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("sequence", fingerprints.sequence().toHex());
+        body.put("algorithm", algorithm.name());
+        body.put("bits", algorithm.bits());
+        body.put("truncated", fingerprints.truncated());
+        body.put("frames", frames);
+        return body;
+    }
+
+    static String stringParam(Map<String, Object> request, String name) {
+        Object value = request.get(name);
+        return value == null ? null : value.toString();
+    }
+
+    static Integer intParam(Map<String, Object> request, String name) {
+        Object value = request.get(name);
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof Number) {
+            return ((Number) value).intValue();
+        }
+        try {
+            return Integer.valueOf(value.toString());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be an integer.", e);
+        }
+    }
+
+    private static Map<String, Object> batchResponse(List<BatchItemResult> results, FingerprintAlgorithm algorithm) {
+        int succeeded = 0;
+        for (BatchItemResult result : results) {
+            if (result.isSuccess()) {
+                succeeded++;
+            }
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("algorithm", algorithm.name());
+        body.put("bits", algorithm.bits());
+        body.put("succeeded", succeeded);
+        body.put("failed", results.size() - succeeded);
+        body.put("results", results);
+        return body;
+    }
+
+    static ResponseEntity<Map<String, Object>> error(HttpStatus status, String message) {
+        return ResponseEntity.status(status).body(Collections.singletonMap("error", message));
+    }
+
+    /**
+     * 503 for a decode turned away by admission control, so clients back off and retry, or 413 for
+     * an image too large to ever fit the decode memory budget.
+     */
+    static ResponseEntity<Map<String, Object>> unavailable(DecodeRejectedException e) {
+        if (!e.isRetryable()) {
+            return error(HttpStatus.PAYLOAD_TOO_LARGE, e.getMessage());
+        }
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1")
+                .body(Collections.singletonMap("error", e.getMessage()));
+    }
+}
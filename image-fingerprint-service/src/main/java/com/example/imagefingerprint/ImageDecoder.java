@@ -0,0 +1,202 @@
+package com.example.imagefingerprint;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.spi.IIORegistry;
+import javax.imageio.spi.ImageReaderSpi;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+
+/**
+ * Decodes images at a reduced resolution using {@link ImageReadParam#setSourceSubsampling}, so the
+ * decoded raster is sized to what the hash actually needs instead of the full camera resolution.
+ * <p>
+ * ImageReader instances are not thread safe, so readers are cached per thread and per provider and
+ * reset between images instead of being created for every request.
+ * <p>
+ * Every decode starts with an {@link ImageProbe} of the header, read by the same reader that then
+ * decodes, which routes the image to a {@link DecodeStrategy} or rejects it before any pixel data is
+ * read. When given a {@link DecodeBudget}, the memory a decode will need is estimated from the header
+ * dimensions and reserved before decoding, and released once the decode finishes.
+ * <p>
+ * Images routed to {@link DecodeStrategy#TILED} are decoded in parallel bands by {@link TiledDecoder}
+ * when the content is in memory and the reader decodes it in more than one strip or tile.
+ */
+final class ImageDecoder {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageDecoder.class);
+
+    private static final int BYTES_PER_PIXEL = 4; // Decoded rasters are at most one int per pixel
+    private static final int DECODER_ROWS = 16; // Full-width rows a reader buffers while subsampling, e.g. a JPEG MCU row
+
+    private static final ThreadLocal<Map<ImageReaderSpi, ImageReader>> READERS = ThreadLocal.withInitial(HashMap::new);
+
+    private ImageDecoder() {
+    }
+
+    /**
+     * Decodes the first image of the stream so that the result is at least minWidth x minHeight
+     * (or the original size when the image is smaller). Returns null when no reader can decode the input.
+     */
+    static BufferedImage decode(ImageInputStream input, int minWidth, int minHeight) throws IOException {
+        return decode(input, minWidth, minHeight, null);
+    }
+
+    /**
+     * Like {@link #decode(ImageInputStream, int, int)}, reserving the estimated decode memory from
+     * budget, when not null, for the duration of the decode.
+     */
+    static BufferedImage decode(ImageInputStream input, int minWidth, int minHeight, DecodeBudget budget) throws IOException {
+        return decode(input, minWidth, minHeight, budget, probe -> DecodeStrategy.SUBSAMPLED, -1, null);
+    }
+
+    /**
+     * Probes the image, asks router for a strategy, which may throw to reject the image, and decodes
+     * accordingly. thumbnailMinSize is the smallest usable embedded thumbnail, or negative when the
+     * router never picks {@link DecodeStrategy#THUMBNAIL}; the stream is then not kept seekable.
+     * tiles runs the bands of {@link DecodeStrategy#TILED} decodes, which are decoded like subsampled
+     * ones when it is null.
+     */
+    static BufferedImage decode(ImageInputStream input, int minWidth, int minHeight, DecodeBudget budget,
+                                Function<ImageProbe, DecodeStrategy> router, int thumbnailMinSize,
+                                ForkJoinPool tiles) throws IOException {
+        ImageReader reader = acquireReader(input);
+        if (reader == null) {
+            return null;
+        }
+        boolean reusable = false;
+        int reservation = 0;
+        try {
+            long start = input.getStreamPosition();
+            boolean thumbnails = thumbnailMinSize >= 0;
+            // Thumbnail lookups go back to the start of the stream and read metadata
+            reader.setInput(input, !thumbnails, !thumbnails);
+            ImageProbe probe = ImageProbe.read(reader);
+            DecodeStrategy strategy = router.apply(probe);
+            if (strategy == DecodeStrategy.THUMBNAIL && thumbnails) {
+                BufferedImage thumbnail = EmbeddedThumbnails.read(reader, input, start, thumbnailMinSize);
+                if (thumbnail != null) {
+                    reusable = true;
+                    return thumbnail;
+                }
+                input.seek(start);
+                reader.setInput(input, true, true);
+            }
+            int width = probe.getWidth();
+            int height = probe.getHeight();
+
+            ImageReadParam param = reader.getDefaultReadParam();
+            int periodX = subsamplingPeriod(width, minWidth);
+            int periodY = subsamplingPeriod(height, minHeight);
+            if (periodX > 1 || periodY > 1) {
+                param.setSourceSubsampling(periodX, periodY, 0, 0);
+            }
+            int stripHeight = strategy == DecodeStrategy.TILED && tiles != null
+                    && input instanceof ByteBufferImageInputStream ? reader.getTileHeight(0) : height;
+            if (stripHeight < height) {
+                if (budget != null) {
+                    reservation = budget.reserve(estimateTiledBytes(width, height, stripHeight, periodX, periodY,
+                            tiles.getParallelism()));
+                }
+                if (logger.isTraceEnabled()) {
+                    logger.trace("Decoding {}x{} {} image in parallel bands of {}-row strips with subsampling {}x{}",
+                            width, height, reader.getFormatName(), stripHeight, periodX, periodY);
+                }
+                BufferedImage image = TiledDecoder.decode((ByteBufferImageInputStream) input, start, width, height,
+                        stripHeight, periodX, periodY, tiles);
+                reusable = true;
+                return image;
+            }
+            if (budget != null) {
+                reservation = budget.reserve(estimateBytes(width, height, periodX, periodY));
+            }
+            if (logger.isTraceEnabled()) {
+                logger.trace("Decoding {}x{} {} image with subsampling {}x{}", width, height,
+                        reader.getFormatName(), periodX, periodY);
+            }
+            BufferedImage image = reader.read(0, param);
+            reusable = true;
+            return image;
+        } finally {
+            if (reservation > 0) {
+                budget.release(reservation);
+            }
+            releaseReader(reader, reusable);
+        }
+    }
+
+    /**
+     * Memory a decode needs: the subsampled raster plus the full-width rows the reader works on.
+     */
+    static long estimateBytes(int width, int height, int periodX, int periodY) {
+        long decodedWidth = (width + periodX - 1) / periodX;
+        long decodedHeight = (height + periodY - 1) / periodY;
+        return (decodedWidth * decodedHeight + (long) width * DECODER_ROWS) * BYTES_PER_PIXEL;
+    }
+
+    /**
+     * Memory a tiled decode needs: the bands and the subsampled raster they are copied into, plus the
+     * full-width strip each band reader works on.
+     */
+    static long estimateTiledBytes(int width, int height, int stripHeight, int periodX, int periodY, int parallelism) {
+        long decodedWidth = (width + periodX - 1) / periodX;
+        long decodedHeight = (height + periodY - 1) / periodY;
+        long stripBytes = (long) width * Math.max(DECODER_ROWS, stripHeight) * BYTES_PER_PIXEL;
+        return 2 * decodedWidth * decodedHeight * BYTES_PER_PIXEL + parallelism * stripBytes;
+    }
+
+    static int subsamplingPeriod(int size, int minSize) {
+        return minSize <= 0 ? 1 : Math.max(1, size / minSize);
+    }
+
+    /**
+     * Finds a reader able to decode the stream, reusing this thread's instance for that provider.
+     */
+    static ImageReader acquireReader(ImageInputStream input) throws IOException {
+        Iterator<ImageReaderSpi> providers = IIORegistry.getDefaultInstance().getServiceProviders(ImageReaderSpi.class, true);
+        while (providers.hasNext()) {
+            ImageReaderSpi provider = providers.next();
+            input.mark();
+            boolean canDecode;
+            try {
+                canDecode = provider.canDecodeInput(input);
+            } catch (IOException e) {
+                // Truncated input, e.g. shorter than the provider's magic number: same as ImageIO's filter
+                canDecode = false;
+            } finally {
+                input.reset();
+            }
+            if (canDecode) {
+                Map<ImageReaderSpi, ImageReader> readers = READERS.get();
+                ImageReader reader = readers.remove(provider);
+                return reader != null ? reader : provider.createReaderInstance();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns a reader to this thread's cache. Readers that failed mid-decode are disposed rather
+     * than reused, since their internal state is unknown.
+     */
+    static void releaseReader(ImageReader reader, boolean reusable) {
+        if (!reusable) {
+            reader.dispose();
+            return;
+        }
+        reader.reset();
+        ImageReader previous = READERS.get().put(reader.getOriginatingProvider(), reader);
+        if (previous != null && previous != reader) {
+            previous.dispose();
+        }
+    }
+}
@@ -2,8 +2,10 @@ package com.example.imagefingerprint;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 
 @SpringBootApplication
+@EnableConfigurationProperties(FingerprintProperties.class)
 public class ImageFingerprintApplication {
 
 	public static void main(String[] args) {
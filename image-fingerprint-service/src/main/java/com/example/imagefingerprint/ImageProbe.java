@@ -0,0 +1,176 @@
+package com.example.imagefingerprint;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.color.ColorSpace;
+import java.awt.image.ColorModel;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+
+/**
+ * What an image's header says about it, read through an {@link ImageReader} without decoding any
+ * pixel data: format, dimensions, color model, frame count and embedded thumbnails. Probing takes
+ * microseconds, so oversized inputs such as decompression bombs are turned away before a decode starts.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public final class ImageProbe {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageProbe.class);
+
+    private final String format;
+    private final int width;
+    private final int height;
+    private final String colorSpace;
+    private final Integer bitsPerPixel;
+    private final Boolean alpha;
+    private final Integer frames;
+    private final int thumbnails;
+
+    private ImageProbe(String format, int width, int height, String colorSpace, Integer bitsPerPixel, Boolean alpha,
+                       Integer frames, int thumbnails) {
+        this.format = format;
+        this.width = width;
+        this.height = height;
+        this.colorSpace = colorSpace;
+        this.bitsPerPixel = bitsPerPixel;
+        this.alpha = alpha;
+        this.frames = frames;
+        this.thumbnails = thumbnails;
+    }
+
+    /**
+     * Probes a stream, which is closed afterwards. Returns null when no reader recognises the format.
+     */
+    public static ImageProbe probe(InputStream imageStream) throws IOException {
+        try (InputStream in = imageStream; ImageInputStream input = ImageIO.createImageInputStream(in)) {
+            return input == null ? null : read(input);
+        }
+    }
+
+    /**
+     * Probes the image at the current stream position. Some readers, PNG among them, discard the
+     * stream behind the header, so the stream cannot be decoded afterwards; the decode path probes
+     * with its own reader instead, through {@link #read(ImageReader)}.
+     */
+    private static ImageProbe read(ImageInputStream input) throws IOException {
+        ImageReader reader = ImageDecoder.acquireReader(input);
+        if (reader == null) {
+            return null;
+        }
+        boolean reusable = false;
+        try {
+            reader.setInput(input, true, false);
+            ImageProbe probe = read(reader);
+            reusable = true;
+            return probe;
+        } finally {
+            ImageDecoder.releaseReader(reader, reusable);
+        }
+    }
+
+    /**
+     * Probes the first image of a reader whose input is set, reading headers only.
+     */
+    static ImageProbe read(ImageReader reader) throws IOException {
+        int width = reader.getWidth(0);
+        int height = reader.getHeight(0);
+        ColorModel colorModel = null;
+        int frames = -1;
+        int thumbnails = 0;
+        try {
+            ImageTypeSpecifier type = reader.getRawImageType(0);
+            if (type == null) {
+                Iterator<ImageTypeSpecifier> types = reader.getImageTypes(0);
+                type = types.hasNext() ? types.next() : null;
+            }
+            if (type != null) {
+                colorModel = type.getColorModel();
+            }
+            // Only formats that record the count up front answer without scanning the whole stream
+            frames = reader.getNumImages(false);
+            thumbnails = reader.hasThumbnails(0) ? reader.getNumThumbnails(0) : 0;
+        } catch (IOException e) {
+            // Dimensions are all the routing needs; a damaged header past them fails the decode anyway
+            logger.debug("Incomplete {} header: {}", reader.getFormatName(), e.getMessage());
+        }
+        return new ImageProbe(reader.getFormatName().toLowerCase(), width, height,
+                colorModel == null ? null : colorSpaceName(colorModel.getColorSpace().getType()),
+                colorModel == null ? null : colorModel.getPixelSize(),
+                colorModel == null ? null : colorModel.hasAlpha(),
+                frames < 0 ? null : frames,
+                thumbnails);
+    }
+
+    private static String colorSpaceName(int type) {
+        switch (type) {
+            case ColorSpace.TYPE_RGB:
+                return "rgb";
+            case ColorSpace.TYPE_GRAY:
+                return "gray";
+            case ColorSpace.TYPE_CMYK:
+                return "cmyk";
+            case ColorSpace.TYPE_YCbCr:
+                return "ycbcr";
+            default:
+                return "other";
+        }
+    }
+
+    /**
+     * Rejects images with more than maxPixels pixels, which would take too long to decode even subsampled.
+     *
+     * @throws DecodeRejectedException when the image is larger
+     */
+    void checkPixels(long maxPixels) {
+        if (maxPixels > 0 && pixels() > maxPixels) {
+            throw new DecodeRejectedException("Image of " + width + "x" + height + " pixels exceeds the limit of "
+                    + maxPixels + " pixels.", pixels() * 4, false);
+        }
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public long pixels() {
+        return (long) width * height;
+    }
+
+    public String getColorSpace() {
+        return colorSpace;
+    }
+
+    public Integer getBitsPerPixel() {
+        return bitsPerPixel;
+    }
+
+    public Boolean getAlpha() {
+        return alpha;
+    }
+
+    /**
+     * Number of frames, or null when the format only tells by scanning the whole stream.
+     */
+    public Integer getFrames() {
+        return frames;
+    }
+
+    public int getThumbnails() {
+        return thumbnails;
+    }
+}
@@ -1,104 +1,379 @@
 package com.example.imagefingerprint;
 
+import jakarta.annotation.PostConstruct;
 import net.coobird.thumbnailator.Thumbnails;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageInputStream;
 import java.awt.image.BufferedImage;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
-public class ImageService {
+public class ImageService implements DisposableBean {
 
     private static final Logger logger = LoggerFactory.getLogger(ImageService.class);
+    private static final FailureLogger failures = new FailureLogger(logger);
     private static final int HASH_WIDTH = 8; // For an 8x8 hash (64 bits)
     private static final int HASH_HEIGHT = 8;
-    private static final int TOTAL_BITS = HASH_WIDTH * HASH_HEIGHT;
+    private static final int DECODE_SAMPLES_PER_CELL = 8; // Decoded images keep at least 8x8 source pixels per hash cell
+    private static final int MIN_DECODE_SAMPLES_PER_CELL = 4; // ... and at least 4x4 per cell of finer sample grids
+    private static final FingerprintProperties DEFAULT_PROPERTIES = new FingerprintProperties();
+    private static final String PIPELINE_VERSION = "1"; // Bump whenever decoding or reduction changes fingerprints
 
-    private static BufferedImage resizeAndGrayscale(BufferedImage originalImage) throws IOException {
+    private final FingerprintProperties properties;
+    private final DecodeBudget decodeBudget;
+    private final FingerprintMetrics metrics;
+    private final ImageBufferPool bufferPool;
+    private final ForkJoinPool tilePool;
+
+    public ImageService() {
+        this(new FingerprintProperties());
+    }
+
+    public ImageService(FingerprintProperties properties) {
+        this(properties, FingerprintMetrics.NONE);
+    }
+
+    @Autowired
+    public ImageService(FingerprintProperties properties, FingerprintMetrics metrics) {
+        this.properties = properties;
+        this.metrics = metrics;
+        this.decodeBudget = properties.getAdmission().isEnabled() ? DecodeBudget.fromProperties(properties.getAdmission()) : null;
+        this.bufferPool = ImageBufferPool.fromProperties(properties.getStream());
+        this.tilePool = properties.getTiled().isEnabled() ? tilePool(properties.getTiled().getParallelism()) : null;
+    }
+
+    /**
+     * Applies {@code image.fingerprint.stream.disk-cache} to ImageIO once the application's service is
+     * created. The setting is process-wide: it also decides whether streams ImageIO creates elsewhere,
+     * such as for probes, use temporary files. Services created outside Spring leave it alone.
+     */
+    @PostConstruct
+    void configureImageIo() {
+        ImageIO.setUseCache(properties.getStream().isDiskCache());
+    }
+
+    /**
+     * Stops the tile decode workers. Band decodes already submitted run to completion.
+     */
+    @Override
+    public void destroy() {
+        if (tilePool != null) {
+            tilePool.shutdown();
+        }
+    }
+
+    /**
+     * Reduces the image to a HASH_WIDTH x HASH_HEIGHT grid of luminance values.
+     */
+    static int[] resizeAndGrayscale(BufferedImage originalImage) throws IOException {
+        return resizeAndGrayscale(originalImage, HASH_WIDTH, HASH_HEIGHT);
+    }
+
+    /**
+     * Reduces the image to a width x height grid of luminance values.
+     * Common raster layouts are averaged straight from their data buffer; other color models
+     * fall back to thumbnailator.
+     */
+    static int[] resizeAndGrayscale(BufferedImage originalImage, int width, int height) throws IOException {
+        if (originalImage.getWidth() >= width && originalImage.getHeight() >= height
+                && GrayscaleReducer.supports(originalImage)) {
+            return GrayscaleReducer.reduce(originalImage, width, height);
+        }
+        return resizeWithThumbnailator(originalImage, width, height, new int[width * height]);
+    }
+
+    /**
+     * Like {@link #resizeAndGrayscale(BufferedImage, int, int)}, returning the workspace's luminance
+     * array instead of a new one. The thumbnailator fallback still allocates its intermediate images.
+     */
+    static int[] resizeAndGrayscale(BufferedImage originalImage, int width, int height, HashWorkspace workspace) throws IOException {
+        if (originalImage.getWidth() >= width && originalImage.getHeight() >= height
+                && GrayscaleReducer.supports(originalImage)) {
+            return GrayscaleReducer.reduce(originalImage, width, height, workspace);
+        }
+        return resizeWithThumbnailator(originalImage, width, height, workspace.luminance(width * height));
+    }
+
+    private static int[] resizeWithThumbnailator(BufferedImage originalImage, int width, int height, int[] target) throws IOException {
         BufferedImage resizedImage = Thumbnails.of(originalImage)
-                .size(HASH_WIDTH, HASH_HEIGHT)
+                .forceSize(width, height)
                 .imageType(BufferedImage.TYPE_BYTE_GRAY) // Convert to grayscale during resize
                 .asBufferedImage();
         if (resizedImage == null) {
             throw new IOException("Resizing or grayscaling failed, thumbnailator returned null.");
         }
-        return resizedImage;
+        // TYPE_BYTE_GRAY has one band
+        return resizedImage.getRaster().getSamples(0, 0, width, height, 0, target);
     }
 
-    private static String calculateBinaryHash(BufferedImage grayscaleImage) {
-        long sum = 0;
-        for (int y = 0; y < HASH_HEIGHT; y++) {
-            for (int x = 0; x < HASH_WIDTH; x++) {
-                sum += grayscaleImage.getRaster().getSample(x, y, 0); // TYPE_BYTE_GRAY has one band
-            }
+    static long calculateBinaryHash(int[] luminance) {
+        return FingerprintAlgorithms.AVERAGE.hash(luminance);
+    }
+
+    /**
+     * Reduces the image to the algorithm's sample grid and hashes it into bits() / 64 words.
+     */
+    static long[] hash(BufferedImage image, FingerprintAlgorithm algorithm) throws IOException {
+        long[] words = new long[algorithm.bits() / Long.SIZE];
+        algorithm.hash(resizeAndGrayscale(image, algorithm.sampleWidth(), algorithm.sampleHeight(), HashWorkspace.current()), words);
+        return words;
+    }
+
+    public static String calculateFingerprint(String filePath){
+        return computeFingerprint(filePath).toHex();
+    }
+
+    public static String calculateFingerprint(InputStream imageStream) throws IOException {
+        return computeFingerprint(imageStream).toHex();
+    }
+
+    /**
+     * Fingerprints a local file using the configured pipeline options and the configured algorithm at 64 bits.
+     */
+    public Fingerprint fingerprint(String filePath) {
+        return fingerprint(filePath, FingerprintAlgorithms.forName(properties.getAlgorithm())).toFingerprint();
+    }
+
+    public WideFingerprint fingerprint(String filePath, FingerprintAlgorithm algorithm) {
+        return new WideFingerprint(computeWords(filePath, properties, algorithm, decodeBudget, metrics, tilePool));
+    }
+
+    /**
+     * Fingerprints a stream using the configured pipeline options and the configured algorithm at 64 bits.
+     * The stream is closed afterwards.
+     */
+    public Fingerprint fingerprint(InputStream imageStream, String imageSourceDescription) throws IOException {
+        return fingerprint(imageStream, imageSourceDescription, FingerprintAlgorithms.forName(properties.getAlgorithm()))
+                .toFingerprint();
+    }
+
+    public WideFingerprint fingerprint(InputStream imageStream, String imageSourceDescription,
+                                       FingerprintAlgorithm algorithm) throws IOException {
+        return fingerprint(imageStream, imageSourceDescription, algorithm, -1);
+    }
+
+    /**
+     * Fingerprints a stream of about sizeHint bytes, or of unknown size when sizeHint is negative. The
+     * stream is read into a pooled memory buffer first unless {@code image.fingerprint.stream.disk-cache}
+     * is set. The stream is closed afterwards.
+     */
+    public WideFingerprint fingerprint(InputStream imageStream, String imageSourceDescription,
+                                       FingerprintAlgorithm algorithm, long sizeHint) throws IOException {
+        if (properties.getStream().isDiskCache()) {
+            return new WideFingerprint(processImageStream(imageStream, imageSourceDescription, properties, algorithm,
+                    decodeBudget, metrics));
+        }
+        if (imageStream == null) {
+            throw new IllegalArgumentException("Image stream cannot be null for " + imageSourceDescription);
         }
-        long average = sum / TOTAL_BITS;
+        try (ImageBufferPool.Content content = buffer(imageStream, sizeHint)) {
+            return fingerprint(content.buffer(), imageSourceDescription, algorithm);
+        }
+    }
 
-        StringBuilder hashBuilder = new StringBuilder(TOTAL_BITS);
-        for (int y = 0; y < HASH_HEIGHT; y++) {
-            for (int x = 0; x < HASH_WIDTH; x++) {
-                hashBuilder.append(grayscaleImage.getRaster().getSample(x, y, 0) > average ? '1' : '0');
-            }
+    /**
+     * Fingerprints an encoded image already in memory, decoding straight from the buffer.
+     */
+    public WideFingerprint fingerprint(ByteBuffer content, String imageSourceDescription,
+                                       FingerprintAlgorithm algorithm) throws IOException {
+        return fingerprint(content, imageSourceDescription, algorithm, metrics);
+    }
+
+    /**
+     * Like {@link #fingerprint(ByteBuffer, String, FingerprintAlgorithm)}, recording to metrics.
+     */
+    WideFingerprint fingerprint(ByteBuffer content, String imageSourceDescription, FingerprintAlgorithm algorithm,
+                                FingerprintMetrics metrics) throws IOException {
+        try (ImageInputStream input = new ByteBufferImageInputStream(content)) {
+            return new WideFingerprint(processImage(input, imageSourceDescription, properties, algorithm, decodeBudget,
+                    metrics, tilePool));
         }
-        return hashBuilder.toString();
     }
 
-    private static String binaryToHex(String binaryString) {
-        // Ensure the binary string length is a multiple of 4 for direct hex conversion
-        // Pad with leading zeros if necessary, though for 64 bits it should be fine.
-        if (binaryString.length() % 4 != 0) {
-            int padding = 4 - (binaryString.length() % 4);
-            StringBuilder sb = new StringBuilder(binaryString);
-            for(int i=0; i<padding; i++) {
-                sb.insert(0, '0');
-            }
-            binaryString = sb.toString();
+    /**
+     * Fingerprints every step-th frame of an animated GIF or multi-page TIFF, up to maxFrames frames,
+     * buffering the stream like {@link #fingerprint(InputStream, String, FingerprintAlgorithm, long)}.
+     * Null step or maxFrames fall back to {@code image.fingerprint.frames.*}; maxFrames is capped at
+     * {@code image.fingerprint.frames.max-frames}. Single images have one frame. The stream is closed afterwards.
+     */
+    public FrameFingerprints fingerprintFrames(InputStream imageStream, String imageSourceDescription,
+                                               FingerprintAlgorithm algorithm, long sizeHint,
+                                               Integer step, Integer maxFrames) throws IOException {
+        if (imageStream == null) {
+            throw new IllegalArgumentException("Image stream cannot be null for " + imageSourceDescription);
         }
-        BigInteger bigInt = new BigInteger(binaryString, 2);
-        String hex = bigInt.toString(16);
-        // Ensure the hex string is of expected length (e.g., 16 chars for 64 bits) by padding with leading zeros
-        int expectedHexLength = TOTAL_BITS / 4;
-        while(hex.length() < expectedHexLength){
-            hex = "0" + hex;
+        try (ImageBufferPool.Content content = buffer(imageStream, sizeHint)) {
+            return fingerprintFrames(content.buffer(), imageSourceDescription, algorithm, step, maxFrames);
         }
-        return hex;
     }
 
-    public static String calculateFingerprint(String filePath){
+    /**
+     * Like {@link #fingerprintFrames(InputStream, String, FingerprintAlgorithm, long, Integer, Integer)}
+     * for an encoded image already in memory. Each frame is reduced and hashed as soon as it is decoded
+     * and dropped before the next is read.
+     */
+    public FrameFingerprints fingerprintFrames(ByteBuffer content, String imageSourceDescription,
+                                               FingerprintAlgorithm algorithm, Integer step,
+                                               Integer maxFrames) throws IOException {
+        List<FrameFingerprints.Frame> frames = new ArrayList<>();
+        FrameDecoder.FrameCount count;
+        try (ImageInputStream input = new ByteBufferImageInputStream(content)) {
+            count = FrameDecoder.decode(input, decodeSize(HASH_WIDTH, algorithm.sampleWidth()),
+                    decodeSize(HASH_HEIGHT, algorithm.sampleHeight()),
+                    step != null ? step : properties.getFrames().getStep(),
+                    maxFrames != null ? Math.min(maxFrames, properties.getFrames().getMaxFrames())
+                            : properties.getFrames().getMaxFrames(),
+                    properties.getProbe().getMaxPixels(), decodeBudget, (index, frame) -> {
+                        long start = System.nanoTime();
+                        int[] samples = resizeAndGrayscale(frame, algorithm.sampleWidth(), algorithm.sampleHeight(),
+                                HashWorkspace.current());
+                        long resized = System.nanoTime();
+                        metrics.resize(resized - start);
+                        long[] words = new long[algorithm.bits() / Long.SIZE];
+                        algorithm.hash(samples, words);
+                        metrics.hash(algorithm, System.nanoTime() - resized);
+                        frames.add(new FrameFingerprints.Frame(index, new WideFingerprint(words)));
+                    });
+        } catch (IOException | RuntimeException e) {
+            metrics.error(e);
+            throw e;
+        }
+        if (count == null || frames.isEmpty()) {
+            metrics.error(FingerprintMetrics.UNSUPPORTED);
+            throw new IOException("Could not decode image from " + imageSourceDescription + ". The image format might not be supported or the stream is invalid/empty.");
+        }
+        return new FrameFingerprints(frames, count.truncated());
+    }
+
+    /**
+     * Reads the stream to its end into a pooled buffer, which the caller must close, and closes the stream.
+     */
+    ImageBufferPool.Content buffer(InputStream imageStream, long sizeHint) throws IOException {
+        long start = System.nanoTime();
+        ImageBufferPool.Content content;
+        try (InputStream in = imageStream) {
+            content = bufferPool.read(in, sizeHint);
+        }
+        metrics.read(System.nanoTime() - start);
+        metrics.buffered(content.length());
+        return content;
+    }
+
+    ImageBufferPool bufferPool() {
+        return bufferPool;
+    }
+
+    /**
+     * Workers of parallel band decodes, named fingerprint-tile-N. Idle workers exit after a while.
+     */
+    private static ForkJoinPool tilePool(int parallelism) {
+        return new ForkJoinPool(Math.max(1, parallelism), pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("fingerprint-tile-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+    }
+
+    /**
+     * The meters fingerprints are recorded to.
+     */
+    public FingerprintMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * The budget decodes reserve memory from, or null when admission control is disabled.
+     */
+    public DecodeBudget decodeBudget() {
+        return decodeBudget;
+    }
+
+    /**
+     * Identifies the settings other than the algorithm that decide a fingerprint: the pipeline version,
+     * the decode sizes and the thumbnail mode. Fingerprints kept across restarts are only valid for the
+     * signature they were computed with.
+     */
+    public String pipelineSignature() {
+        return "v" + PIPELINE_VERSION + "/" + DECODE_SAMPLES_PER_CELL + "x" + MIN_DECODE_SAMPLES_PER_CELL
+                + (properties.isUseEmbeddedThumbnail() ? "/thumbnail" + properties.getThumbnailMinSize() : "/full");
+    }
+
+    /**
+     * The algorithm and size configured by {@code image.fingerprint.algorithm} and {@code image.fingerprint.bits}.
+     */
+    public FingerprintAlgorithm defaultAlgorithm() {
+        return FingerprintAlgorithms.forName(properties.getAlgorithm(), properties.getBits());
+    }
+
+    /**
+     * Resolves an algorithm name from a request, falling back to the configured algorithm.
+     */
+    public FingerprintAlgorithm algorithm(String name) {
+        return algorithm(name, null);
+    }
+
+    /**
+     * Resolves an algorithm name and size from a request, falling back to the configured ones.
+     */
+    public FingerprintAlgorithm algorithm(String name, Integer bits) {
+        return FingerprintAlgorithms.forName(name, properties.getAlgorithm(), bits != null ? bits : properties.getBits());
+    }
+
+    public static Fingerprint computeFingerprint(String filePath){
+        return computeFingerprint(filePath, DEFAULT_PROPERTIES);
+    }
+
+    public static Fingerprint computeFingerprint(String filePath, FingerprintProperties properties){
+        return new Fingerprint(computeWords(filePath, properties, FingerprintAlgorithms.forName(properties.getAlgorithm()),
+                null, FingerprintMetrics.NONE, null)[0]);
+    }
+
+    private static long[] computeWords(String filePath, FingerprintProperties properties, FingerprintAlgorithm algorithm,
+                                       DecodeBudget budget, FingerprintMetrics metrics, ForkJoinPool tiles){
         if (filePath == null || filePath.trim().isEmpty()) {
             throw new IllegalArgumentException("File path cannot be null or empty.");
         }
-        try (InputStream imageStream = new FileInputStream(filePath)) {
-            return processImageStream(imageStream, "file path: " + filePath);
+        try (ImageInputStream input = ByteBufferImageInputStream.open(Paths.get(filePath))) {
+            return processImage(input, "file path: " + filePath, properties, algorithm, budget, metrics, tiles);
+        } catch (DecodeRejectedException e) {
+            throw e;
         } catch (Exception e) {
-            logger.error("Error: {}", filePath, e);
+            failures.log("Could not fingerprint {}", filePath, e);
             throw new RuntimeException(e);
         }
     }
 
-    public static String calculateFingerprint(InputStream imageStream) throws IOException {
-        return processImageStream(imageStream, "input stream");
+    public static Fingerprint computeFingerprint(InputStream imageStream) throws IOException {
+        return new Fingerprint(processImageStream(imageStream, "input stream", DEFAULT_PROPERTIES, FingerprintAlgorithms.AVERAGE,
+                null, FingerprintMetrics.NONE)[0]);
     }
 
-    private static String processImageStream(InputStream imageStream, String imageSourceDescription) throws IOException {
+    private static long[] processImageStream(InputStream imageStream, String imageSourceDescription,
+                                           FingerprintProperties properties, FingerprintAlgorithm algorithm,
+                                           DecodeBudget budget, FingerprintMetrics metrics) throws IOException {
         if (imageStream == null) {
             throw new IllegalArgumentException("Image stream cannot be null for " + imageSourceDescription);
         }
-        try {
-            BufferedImage originalImage = ImageIO.read(imageStream);
-            if (originalImage == null) {
-                throw new IOException("Could not decode image from " + imageSourceDescription + ". The image format might not be supported or the stream is invalid/empty.");
-            }
-            BufferedImage grayscaleResizedImage = resizeAndGrayscale(originalImage);
-            String binaryHash = calculateBinaryHash(grayscaleResizedImage);
-            return binaryToHex(binaryHash);
+        try (ImageInputStream input = ImageIO.createImageInputStream(imageStream)) {
+            return processImage(input, imageSourceDescription, properties, algorithm, budget, metrics, null);
         } finally {
             try {
                 imageStream.close();
@@ -108,46 +383,167 @@ public class ImageService {
         }
     }
 
-    public double calculateSimilarity(String fingerprint1Hex, String fingerprint2Hex) {
-        if (fingerprint1Hex == null || fingerprint1Hex.isEmpty() || fingerprint1Hex.length() != TOTAL_BITS / 4) {
-            throw new IllegalArgumentException("Fingerprint 1 cannot be null, empty, or of incorrect length.");
+    /**
+     * Decodes, reduces and hashes the image read from input, which may be null when no stream could
+     * be created. Large in-memory images are decoded in parallel bands on tiles when it is not null.
+     * The caller closes input.
+     */
+    private static long[] processImage(ImageInputStream input, String imageSourceDescription,
+                                       FingerprintProperties properties, FingerprintAlgorithm algorithm,
+                                       DecodeBudget budget, FingerprintMetrics metrics, ForkJoinPool tiles) throws IOException {
+        BufferedImage originalImage;
+        long start = System.nanoTime();
+        try {
+            originalImage = input == null ? null : decode(input, properties, algorithm, budget, metrics, tiles);
+        } catch (IOException | RuntimeException e) {
+            metrics.error(e);
+            throw e;
         }
-        if (fingerprint2Hex == null || fingerprint2Hex.isEmpty() || fingerprint2Hex.length() != TOTAL_BITS / 4) {
-            throw new IllegalArgumentException("Fingerprint 2 cannot be null, empty, or of incorrect length.");
+        if (originalImage == null) {
+            metrics.error(FingerprintMetrics.UNSUPPORTED);
+            throw new IOException("Could not decode image from " + imageSourceDescription + ". The image format might not be supported or the stream is invalid/empty.");
         }
+        long decoded = System.nanoTime();
+        metrics.decode(decoded - start);
+        int[] samples = resizeAndGrayscale(originalImage, algorithm.sampleWidth(), algorithm.sampleHeight(), HashWorkspace.current());
+        long resized = System.nanoTime();
+        metrics.resize(resized - decoded);
+        long[] words = new long[algorithm.bits() / Long.SIZE];
+        algorithm.hash(samples, words);
+        metrics.hash(algorithm, System.nanoTime() - resized);
+        return words;
+    }
 
-        try {
-            String binary1 = new BigInteger(fingerprint1Hex, 16).toString(2);
-            String binary2 = new BigInteger(fingerprint2Hex, 16).toString(2);
+    /**
+     * Probes the header, rejects images above {@code image.fingerprint.probe.max-pixels} and routes the
+     * rest to a {@link DecodeStrategy}. Subsampled decodes keep DECODE_SAMPLES_PER_CELL pixels per hash
+     * cell (MIN_DECODE_SAMPLES_PER_CELL for algorithms sampling finer grids) instead of materialising
+     * the full resolution image; with the thumbnail strategy the main image is only decoded when the
+     * image carries no usable thumbnail, and with the tiled strategy it is decoded in bands on tiles.
+     * The main image decode reserves its memory from budget when one is given.
+     * The probed dimensions and the bytes read are recorded to metrics.
+     */
+    private static BufferedImage decode(ImageInputStream input, FingerprintProperties properties,
+                                        FingerprintAlgorithm algorithm, DecodeBudget budget,
+                                        FingerprintMetrics metrics, ForkJoinPool tiles) throws IOException {
+        BufferedImage image = ImageDecoder.decode(input, decodeSize(HASH_WIDTH, algorithm.sampleWidth()),
+                decodeSize(HASH_HEIGHT, algorithm.sampleHeight()), budget, probe -> {
+                    metrics.image(probe);
+                    probe.checkPixels(properties.getProbe().getMaxPixels());
+                    return strategy(probe, properties, algorithm);
+                }, properties.isUseEmbeddedThumbnail() ? properties.getThumbnailMinSize() : -1, tiles);
+        metrics.bytes(input.getStreamPosition());
+        return image;
+    }
 
-            // Pad with leading zeros to ensure fixed length for Hamming distance
-            while (binary1.length() < TOTAL_BITS) {
-                binary1 = "0" + binary1;
-            }
-            while (binary2.length() < TOTAL_BITS) {
-                binary2 = "0" + binary2;
-            }
+    /**
+     * Checks a probed image against the configured limits and returns the strategy
+     * {@link #fingerprint(InputStream, String, FingerprintAlgorithm)} would decode it with.
+     *
+     * @throws DecodeRejectedException when the image exceeds {@code image.fingerprint.probe.max-pixels}
+     */
+    public DecodeStrategy route(ImageProbe probe, FingerprintAlgorithm algorithm) {
+        probe.checkPixels(properties.getProbe().getMaxPixels());
+        return strategy(probe, properties, algorithm);
+    }
 
-            if (binary1.length() != binary2.length()) {
-                 // This should not happen if hex fingerprints were of correct length and padded correctly
-                throw new IllegalArgumentException("Binary fingerprints have different lengths after conversion, which is unexpected.");
-            }
+    private static DecodeStrategy strategy(ImageProbe probe, FingerprintProperties properties, FingerprintAlgorithm algorithm) {
+        return DecodeStrategy.select(probe, properties.isUseEmbeddedThumbnail(),
+                decodeSize(HASH_WIDTH, algorithm.sampleWidth()), decodeSize(HASH_HEIGHT, algorithm.sampleHeight()),
+                properties.getTiled().isEnabled() ? properties.getTiled().getMinPixels() : 0);
+    }
+
+    private static BufferedImage decodeSubsampled(ImageInputStream input, FingerprintAlgorithm algorithm,
+                                                  DecodeBudget budget) throws IOException {
+        return ImageDecoder.decode(input, decodeSize(HASH_WIDTH, algorithm.sampleWidth()),
+                decodeSize(HASH_HEIGHT, algorithm.sampleHeight()), budget);
+    }
+
+    private static int decodeSize(int hashSize, int sampleSize) {
+        return Math.max(hashSize * DECODE_SAMPLES_PER_CELL, sampleSize * MIN_DECODE_SAMPLES_PER_CELL);
+    }
 
-            int hammingDistance = 0;
-            for (int i = 0; i < TOTAL_BITS; i++) {
-                if (binary1.charAt(i) != binary2.charAt(i)) {
-                    hammingDistance++;
+    /**
+     * Compares the embedded thumbnail hash with the full decode hash for every file, to check whether
+     * thumbnail mode is safe to enable for a corpus. Files without a usable thumbnail are only counted.
+     */
+    public ThumbnailValidationReport validateEmbeddedThumbnails(Collection<Path> files, int maxDistance) {
+        ThumbnailValidationReport report = new ThumbnailValidationReport(maxDistance);
+        FingerprintAlgorithm algorithm = defaultAlgorithm();
+        for (Path file : files) {
+            try (ImageInputStream input = ByteBufferImageInputStream.open(file)) {
+                BufferedImage thumbnail = EmbeddedThumbnails.read(input, properties.getThumbnailMinSize());
+                if (thumbnail == null) {
+                    report.recordWithoutThumbnail();
+                    continue;
+                }
+                BufferedImage fullImage = decodeSubsampled(input, algorithm, null);
+                if (fullImage == null) {
+                    report.recordFailure();
+                    continue;
                 }
+                long[] thumbnailHash = hash(thumbnail, algorithm);
+                long[] fullHash = hash(fullImage, algorithm);
+                report.record(file.toString(), WideFingerprint.distance(thumbnailHash, fullHash));
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Thumbnail validation failed for {}: {}", file, e.getMessage());
+                report.recordFailure();
             }
+        }
+        return report;
+    }
 
-            double normalizedDistance = (double) hammingDistance / TOTAL_BITS;
-            return 1.0 - normalizedDistance;
+    /**
+     * Similarity of two hex fingerprints of equal size: 16, 64 or 256 characters for 64, 256 or 1024 bits.
+     */
+    public double calculateSimilarity(String fingerprint1Hex, String fingerprint2Hex) {
+        if (fingerprint1Hex == null || fingerprint1Hex.isEmpty() || !isSupportedHexLength(fingerprint1Hex.length())) {
+            throw new IllegalArgumentException("Fingerprint 1 cannot be null, empty, or of incorrect length.");
+        }
+        if (fingerprint2Hex == null || fingerprint2Hex.isEmpty() || !isSupportedHexLength(fingerprint2Hex.length())) {
+            throw new IllegalArgumentException("Fingerprint 2 cannot be null, empty, or of incorrect length.");
+        }
+        if (fingerprint1Hex.length() != fingerprint2Hex.length()) {
+            throw new IllegalArgumentException("Fingerprints must have the same length.");
+        }
 
-        } catch (NumberFormatException e) {
+        long start = System.nanoTime();
+        try {
+            if (fingerprint1Hex.length() == Fingerprint.HEX_LENGTH) {
+                return calculateSimilarity(Fingerprint.parseHex(fingerprint1Hex), Fingerprint.parseHex(fingerprint2Hex));
+            }
+            return WideFingerprint.similarity(WideFingerprint.parseHex(fingerprint1Hex), WideFingerprint.parseHex(fingerprint2Hex));
+        } catch (IllegalArgumentException e) {
             throw new IllegalArgumentException("Invalid fingerprint format. Fingerprints must be valid hexadecimal strings.", e);
+        } finally {
+            metrics.compare(System.nanoTime() - start);
+        }
+    }
+
+    public double calculateSimilarity(Fingerprint fingerprint1, Fingerprint fingerprint2) {
+        if (fingerprint1 == null || fingerprint2 == null) {
+            throw new IllegalArgumentException("Fingerprints cannot be null.");
         }
+        return calculateSimilarity(fingerprint1.value(), fingerprint2.value());
     }
-    public static void main(String[] args){
+
+    public static double calculateSimilarity(long fingerprint1, long fingerprint2) {
+        return Fingerprint.similarity(fingerprint1, fingerprint2);
+    }
+
+    private static boolean isSupportedHexLength(int length) {
+        return length % Fingerprint.HEX_LENGTH == 0 && WideFingerprint.isSupported(length * 4);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 2 && "--validate-thumbnails".equals(args[0])) {
+            List<Path> files;
+            try (Stream<Path> paths = Files.walk(Paths.get(args[1]))) {
+                files = paths.filter(Files::isRegularFile).collect(Collectors.toList());
+            }
+            logger.info("Thumbnail validation: {}", new ImageService().validateEmbeddedThumbnails(files, 5));
+            return;
+        }
         String hash1=   calculateFingerprint("C:\\Users\\Administrator\\Downloads\\testpic\\1.JPG");
         logger.info("hash1 {}",hash1);
     }
@@ -0,0 +1,39 @@
+package com.example.imagefingerprint;
+
+import java.util.Comparator;
+
+public class IndexMatch {
+
+    static final Comparator<IndexMatch> BY_DISTANCE =
+            Comparator.comparingInt(IndexMatch::getDistance).thenComparingLong(IndexMatch::getId);
+
+    private final long id;
+    private final long[] fingerprint;
+    private final int distance;
+
+    public IndexMatch(long id, long fingerprint, int distance) {
+        this(id, new long[]{fingerprint}, distance);
+    }
+
+    public IndexMatch(long id, long[] fingerprint, int distance) {
+        this.id = id;
+        this.fingerprint = fingerprint;
+        this.distance = distance;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getFingerprint() {
+        return WideFingerprint.toHex(fingerprint);
+    }
+
+    public int getDistance() {
+        return distance;
+    }
+
+    public double getSimilarity() {
+        return 1.0 - (double) distance / (fingerprint.length * Long.SIZE);
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.imagefingerprint;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Brute force index: fingerprints are kept densely packed in a {@code long[]} (removal moves the last
+ * entry into the hole) and every search is a {@link HammingScanner} pass over all of them. Predictable
+ * cost regardless of radius, which suits wide searches where tree and band pruning stop paying off.
+ */
+public class LinearScanIndex implements FingerprintIndex {
+
+    private long[] hashes;
+    private long[] ids;
+    private int size;
+    private final LongIntHashMap slotById;
+
+    public LinearScanIndex(int expectedSize) {
+        int capacity = Math.max(16, expectedSize);
+        hashes = new long[capacity];
+        ids = new long[capacity];
+        slotById = new LongIntHashMap(expectedSize);
+    }
+
+    @Override
+    public void add(long id, long fingerprint) {
+        int slot = slotById.get(id);
+        if (slot != LongIntHashMap.NO_VALUE) {
+            hashes[slot] = fingerprint;
+            return;
+        }
+        if (size == hashes.length) {
+            hashes = Arrays.copyOf(hashes, size * 2);
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        hashes[size] = fingerprint;
+        ids[size] = id;
+        slotById.put(id, size++);
+    }
+
+    @Override
+    public boolean remove(long id) {
+        int slot = slotById.remove(id);
+        if (slot == LongIntHashMap.NO_VALUE) {
+            return false;
+        }
+        int last = --size;
+        if (slot != last) {
+            hashes[slot] = hashes[last];
+            ids[slot] = ids[last];
+            slotById.put(ids[slot], slot);
+        }
+        return true;
+    }
+
+    @Override
+    public List<IndexMatch> search(long fingerprint, int maxDistance, int limit) {
+        HammingScanner.TopK top = HammingScanner.scan(fingerprint, hashes, 0, size, maxDistance, Math.min(limit, size));
+        List<IndexMatch> matches = new ArrayList<>(top.size());
+        for (int i = 0; i < top.size(); i++) {
+            int slot = top.position(i);
+            matches.add(new IndexMatch(ids[slot], hashes[slot], top.distance(i)));
+        }
+        // The scanner breaks ties by slot; callers expect ties ordered by id like the other indexes
+        matches.sort(IndexMatch.BY_DISTANCE);
+        return matches;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public long memoryBytes() {
+        return hashes.length * (8L + 8L) + slotById.memoryBytes();
+    }
+}
@@ -0,0 +1,315 @@
+package com.example.imagefingerprint;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only fingerprint log of fixed width records in a memory-mapped file, with optional string
+ * metadata in a companion {@code .meta} file. Records are never rewritten: replacing an id appends a
+ * new record and deleting one appends a tombstone, so the last record for an id wins on replay.
+ * <p>
+ * Record layout (32 bytes, big endian): id, hash, metadata offset (-1 for none), flags, CRC32 of the
+ * preceding 28 bytes. On open the log is scanned up to the first record whose checksum does not match,
+ * which is where a crash interrupted the last append, and every record after it is cleared, including
+ * any found past a blank gap left by pages that were never flushed.
+ * The file is mapped in fixed size segments so it can grow past 2 GB.
+ */
+public class MappedFingerprintStore implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(MappedFingerprintStore.class);
+
+    static final int RECORD_SIZE = 32;
+    static final int HEADER_SIZE = 64;
+    private static final int MAGIC = 0x49465053; // "IFPS"
+    private static final int VERSION = 1;
+    private static final int FLAG_DELETED = 1;
+    private static final long NO_METADATA = -1L;
+
+    private static final int OFFSET_HASH = 8;
+    private static final int OFFSET_METADATA = 16;
+    private static final int OFFSET_FLAGS = 24;
+    private static final int OFFSET_CRC = 28;
+
+    /**
+     * Visitor for replaying records without creating an object per record.
+     */
+    public interface RecordVisitor {
+        void visit(long id, long hash, long metadataOffset, boolean deleted);
+    }
+
+    private final Path path;
+    private final FileChannel channel;
+    private final FileChannel metadataChannel;
+    private final int recordsPerSegment;
+    private final long segmentBytes;
+    private volatile MappedByteBuffer[] segments;
+    private volatile long recordCount;
+    private final byte[] scratch = new byte[RECORD_SIZE];
+    private final CRC32 crc = new CRC32();
+
+    private MappedFingerprintStore(Path path, int recordsPerSegment) throws IOException {
+        this.path = path;
+        this.recordsPerSegment = recordsPerSegment;
+        this.segmentBytes = (long) recordsPerSegment * RECORD_SIZE;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.metadataChannel = FileChannel.open(Paths.get(path + ".meta"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    public static MappedFingerprintStore open(Path path) throws IOException {
+        return open(path, 1 << 22);
+    }
+
+    static MappedFingerprintStore open(Path path, int recordsPerSegment) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        MappedFingerprintStore store = new MappedFingerprintStore(path, recordsPerSegment);
+        try {
+            store.initialise();
+        } catch (IOException | RuntimeException e) {
+            store.close();
+            throw e;
+        }
+        return store;
+    }
+
+    private void initialise() throws IOException {
+        boolean created = channel.size() == 0;
+        if (created) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putInt(RECORD_SIZE);
+            header.flip();
+            channel.write(header, 0);
+        } else {
+            ByteBuffer header = ByteBuffer.allocate(12);
+            channel.read(header, 0);
+            header.flip();
+            if (header.remaining() < 12 || header.getInt() != MAGIC || header.getInt() != VERSION || header.getInt() != RECORD_SIZE) {
+                throw new IOException("Not a fingerprint store (or unsupported version): " + path);
+            }
+        }
+        long dataBytes = Math.max(0, channel.size() - HEADER_SIZE);
+        int segmentCount = (int) Math.max(1, (dataBytes + segmentBytes - 1) / segmentBytes);
+        MappedByteBuffer[] mapped = new MappedByteBuffer[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            mapped[i] = mapSegment(i);
+        }
+        segments = mapped;
+        recordCount = recover();
+        logger.info("Opened fingerprint store {} with {} records", path, recordCount);
+    }
+
+    /**
+     * Finds the end of the valid log and clears every torn or stale record after it, so a later crash
+     * cannot resurrect records that were never part of the recovered log. Without synchronous writes a
+     * later page can reach the disk before an earlier one, so the whole tail is checked rather than
+     * stopping at the first blank record, and the clearing is forced to disk before appends resume.
+     */
+    private long recover() {
+        long capacity = (long) segments.length * recordsPerSegment;
+        long valid = 0;
+        while (valid < capacity && isValid(valid)) {
+            valid++;
+        }
+        long cleared = 0;
+        for (long record = valid; record < capacity; record++) {
+            if (isBlank(record)) {
+                continue;
+            }
+            ByteBuffer segment = buffer(record);
+            int position = position(record);
+            for (int i = 0; i < RECORD_SIZE; i += 8) {
+                segment.putLong(position + i, 0L);
+            }
+            cleared++;
+        }
+        if (cleared > 0) {
+            for (MappedByteBuffer segment : segments) {
+                segment.force();
+            }
+            logger.warn("Fingerprint store {}: discarded {} incomplete record(s) after record {}", path, cleared, valid);
+        }
+        return valid;
+    }
+
+    public synchronized long append(long id, long hash, String metadata) throws IOException {
+        long metadataOffset = metadata == null ? NO_METADATA : appendMetadata(metadata);
+        return appendRecord(id, hash, metadataOffset, 0);
+    }
+
+    public synchronized long appendDelete(long id) throws IOException {
+        return appendRecord(id, 0L, NO_METADATA, FLAG_DELETED);
+    }
+
+    private long appendRecord(long id, long hash, long metadataOffset, int flags) throws IOException {
+        long record = recordCount;
+        if (record >= (long) segments.length * recordsPerSegment) {
+            MappedByteBuffer[] grown = Arrays.copyOf(segments, segments.length + 1);
+            grown[segments.length] = mapSegment(segments.length);
+            segments = grown;
+        }
+        Fingerprint.writeLong(id, scratch, 0);
+        Fingerprint.writeLong(hash, scratch, OFFSET_HASH);
+        Fingerprint.writeLong(metadataOffset, scratch, OFFSET_METADATA);
+        writeInt(flags, scratch, OFFSET_FLAGS);
+        crc.reset();
+        crc.update(scratch, 0, OFFSET_CRC);
+        writeInt((int) crc.getValue(), scratch, OFFSET_CRC);
+
+        ByteBuffer segment = buffer(record).duplicate();
+        segment.position(position(record));
+        segment.put(scratch);
+        recordCount = record + 1;
+        return record;
+    }
+
+    private long appendMetadata(String metadata) throws IOException {
+        byte[] bytes = metadata.getBytes(StandardCharsets.UTF_8);
+        long offset = metadataChannel.size();
+        ByteBuffer entry = ByteBuffer.allocate(4 + bytes.length);
+        entry.putInt(bytes.length).put(bytes);
+        entry.flip();
+        while (entry.hasRemaining()) {
+            metadataChannel.write(entry, offset + entry.position());
+        }
+        return offset;
+    }
+
+    /**
+     * Reads the metadata entry at offset, or returns null when there is none or the entry is damaged,
+     * e.g. its length was written but not its content before a crash.
+     */
+    public String readMetadata(long offset) throws IOException {
+        if (offset < 0) {
+            return null;
+        }
+        ByteBuffer length = ByteBuffer.allocate(4);
+        if (metadataChannel.read(length, offset) < 4) {
+            return null;
+        }
+        length.flip();
+        int size = length.getInt();
+        if (size < 0 || size > metadataChannel.size() - offset - 4) {
+            return null;
+        }
+        ByteBuffer bytes = ByteBuffer.allocate(size);
+        while (bytes.hasRemaining() && metadataChannel.read(bytes, offset + 4 + bytes.position()) > 0) {
+            // keep reading until the entry is complete or the file ends
+        }
+        return bytes.hasRemaining() ? null : new String(bytes.array(), StandardCharsets.UTF_8);
+    }
+
+    public long recordCount() {
+        return recordCount;
+    }
+
+    public long readId(long record) {
+        return buffer(record).getLong(position(record));
+    }
+
+    public long readHash(long record) {
+        return buffer(record).getLong(position(record) + OFFSET_HASH);
+    }
+
+    public long readMetadataOffset(long record) {
+        return buffer(record).getLong(position(record) + OFFSET_METADATA);
+    }
+
+    public boolean isDeleted(long record) {
+        return (buffer(record).getInt(position(record) + OFFSET_FLAGS) & FLAG_DELETED) != 0;
+    }
+
+    /**
+     * Replays every record in append order.
+     */
+    public void forEach(RecordVisitor visitor) {
+        long count = recordCount;
+        for (long record = 0; record < count; record++) {
+            visitor.visit(readId(record), readHash(record), readMetadataOffset(record), isDeleted(record));
+        }
+    }
+
+    /**
+     * Forces written records and metadata to the storage device. Without this, appends still survive a
+     * process crash (they live in the OS page cache) but not a power failure.
+     */
+    public synchronized void flush() throws IOException {
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+        metadataChannel.force(false);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            if (segments != null && channel.isOpen()) {
+                flush();
+            }
+        } finally {
+            segments = null;
+            channel.close();
+            metadataChannel.close();
+        }
+    }
+
+    private boolean isValid(long record) {
+        ByteBuffer segment = buffer(record);
+        int position = position(record);
+        for (int i = 0; i < RECORD_SIZE; i++) {
+            scratch[i] = segment.get(position + i);
+        }
+        crc.reset();
+        crc.update(scratch, 0, OFFSET_CRC);
+        return (int) crc.getValue() == readInt(scratch, OFFSET_CRC);
+    }
+
+    private boolean isBlank(long record) {
+        ByteBuffer segment = buffer(record);
+        int position = position(record);
+        for (int i = 0; i < RECORD_SIZE; i += 8) {
+            if (segment.getLong(position + i) != 0L) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private MappedByteBuffer mapSegment(int index) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + index * segmentBytes, segmentBytes);
+    }
+
+    private MappedByteBuffer buffer(long record) {
+        return segments[(int) (record / recordsPerSegment)];
+    }
+
+    private int position(long record) {
+        return (int) (record % recordsPerSegment) * RECORD_SIZE;
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xFF) << 24) | ((bytes[offset + 1] & 0xFF) << 16)
+                | ((bytes[offset + 2] & 0xFF) << 8) | (bytes[offset + 3] & 0xFF);
+    }
+
+    private static void writeInt(int value, byte[] bytes, int offset) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+}
@@ -0,0 +1,238 @@
+package com.example.imagefingerprint;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Multi-index hashing: the 64-bit fingerprint is split into k bands and every band value is indexed
+ * in its own exact-match table. By the pigeonhole principle two fingerprints within distance r agree
+ * to within floor(r / k) bits on at least one band, so a search only probes band values that close to
+ * the query's and verifies the candidates it finds with a popcount.
+ * <p>
+ * Entries live in slot arrays; band tables map a band value to a posting list of slots. Removal marks
+ * the slot dead, and dead slots are dropped when the index is compacted.
+ */
+public class MultiIndexHashIndex implements FingerprintIndex {
+
+    private final int bands;
+    private final int[] bandShift;
+    private final long[] bandMask;
+    private final LongIntHashMap[] listByBandValue;
+    private final int[][][] postings;
+    private final int[][] postingSizes;
+    private final int[] listCount;
+
+    private long[] hashes;
+    private long[] ids;
+    private boolean[] dead;
+    private int slotCount;
+    private int deadCount;
+    private final LongIntHashMap slotById;
+
+    private final AtomicLong queries = new AtomicLong();
+    private final AtomicLong candidatesExamined = new AtomicLong();
+
+    public MultiIndexHashIndex(int bands, int expectedSize) {
+        if (bands < 1 || bands > 16) {
+            throw new IllegalArgumentException("Band count must be between 1 and 16, was " + bands);
+        }
+        this.bands = bands;
+        this.bandShift = new int[bands];
+        this.bandMask = new long[bands];
+        int shift = Fingerprint.BITS;
+        for (int band = 0; band < bands; band++) {
+            // Spread the remainder so band widths differ by at most one bit
+            int width = Fingerprint.BITS / bands + (band < Fingerprint.BITS % bands ? 1 : 0);
+            shift -= width;
+            bandShift[band] = shift;
+            bandMask[band] = width == 64 ? -1L : (1L << width) - 1;
+        }
+        this.listByBandValue = new LongIntHashMap[bands];
+        this.postings = new int[bands][][];
+        this.postingSizes = new int[bands][];
+        this.listCount = new int[bands];
+        for (int band = 0; band < bands; band++) {
+            listByBandValue[band] = new LongIntHashMap(Math.min(expectedSize, 1 << 20));
+            postings[band] = new int[1024][];
+            postingSizes[band] = new int[1024];
+        }
+        int capacity = Math.max(16, expectedSize);
+        hashes = new long[capacity];
+        ids = new long[capacity];
+        dead = new boolean[capacity];
+        slotById = new LongIntHashMap(expectedSize);
+    }
+
+    @Override
+    public void add(long id, long fingerprint) {
+        remove(id);
+        if (slotCount == hashes.length) {
+            int capacity = hashes.length * 2;
+            hashes = Arrays.copyOf(hashes, capacity);
+            ids = Arrays.copyOf(ids, capacity);
+            dead = Arrays.copyOf(dead, capacity);
+        }
+        int slot = slotCount++;
+        hashes[slot] = fingerprint;
+        ids[slot] = id;
+        dead[slot] = false;
+        slotById.put(id, slot);
+        for (int band = 0; band < bands; band++) {
+            addPosting(band, bandValue(fingerprint, band), slot);
+        }
+    }
+
+    @Override
+    public boolean remove(long id) {
+        int slot = slotById.remove(id);
+        if (slot == LongIntHashMap.NO_VALUE) {
+            return false;
+        }
+        dead[slot] = true;
+        deadCount++;
+        if (deadCount > 1024 && deadCount > size()) {
+            compact();
+        }
+        return true;
+    }
+
+    @Override
+    public List<IndexMatch> search(long fingerprint, int maxDistance, int limit) {
+        int subRadius = maxDistance / bands;
+        List<IndexMatch> matches = new ArrayList<>();
+        long examined = 0;
+        for (int band = 0; band < bands; band++) {
+            examined += probe(fingerprint, maxDistance, subRadius, band, bandValue(fingerprint, band), 0, subRadius, matches);
+        }
+        queries.incrementAndGet();
+        candidatesExamined.addAndGet(examined);
+        matches.sort(IndexMatch.BY_DISTANCE);
+        return matches.size() > limit ? new ArrayList<>(matches.subList(0, limit)) : matches;
+    }
+
+    @Override
+    public int size() {
+        return slotCount - deadCount;
+    }
+
+    @Override
+    public long memoryBytes() {
+        long bytes = hashes.length * (8L + 8L + 1L) + slotById.memoryBytes();
+        for (int band = 0; band < bands; band++) {
+            bytes += listByBandValue[band].memoryBytes() + postings[band].length * (8L + 4L);
+            for (int list = 0; list < listCount[band]; list++) {
+                bytes += 16L + postings[band][list].length * 4L;
+            }
+        }
+        return bytes;
+    }
+
+    @Override
+    public void addStats(Map<String, Object> stats) {
+        long queryCount = queries.get();
+        stats.put("bands", bands);
+        stats.put("queries", queryCount);
+        stats.put("candidatesExamined", candidatesExamined.get());
+        stats.put("candidatesPerQuery", queryCount == 0 ? 0.0 : (double) candidatesExamined.get() / queryCount);
+    }
+
+    /**
+     * Visits every band value within {@code flipsLeft} more bit flips of {@code value}, flipping only
+     * bits at or above {@code fromBit} so each value is generated once. Returns candidates examined.
+     */
+    private long probe(long query, int maxDistance, int subRadius, int band, long value, int fromBit,
+                       int flipsLeft, List<IndexMatch> matches) {
+        long examined = verify(query, maxDistance, subRadius, band, value, matches);
+        if (flipsLeft == 0) {
+            return examined;
+        }
+        int width = Long.bitCount(bandMask[band]);
+        for (int bit = fromBit; bit < width; bit++) {
+            examined += probe(query, maxDistance, subRadius, band, value ^ (1L << bit), bit + 1, flipsLeft - 1, matches);
+        }
+        return examined;
+    }
+
+    private long verify(long query, int maxDistance, int subRadius, int band, long value, List<IndexMatch> matches) {
+        int list = listByBandValue[band].get(value);
+        if (list == LongIntHashMap.NO_VALUE) {
+            return 0;
+        }
+        int[] slots = postings[band][list];
+        int count = postingSizes[band][list];
+        for (int i = 0; i < count; i++) {
+            int slot = slots[i];
+            if (dead[slot]) {
+                continue;
+            }
+            long hash = hashes[slot];
+            int distance = Fingerprint.distance(query, hash);
+            if (distance <= maxDistance && !foundInEarlierBand(query, hash, band, subRadius)) {
+                matches.add(new IndexMatch(ids[slot], hash, distance));
+            }
+        }
+        return count;
+    }
+
+    // A candidate is reported from the first band that is within subRadius of the query
+    private boolean foundInEarlierBand(long query, long hash, int band, int subRadius) {
+        for (int earlier = 0; earlier < band; earlier++) {
+            if (Long.bitCount((bandValue(query, earlier) ^ bandValue(hash, earlier))) <= subRadius) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private long bandValue(long fingerprint, int band) {
+        return (fingerprint >>> bandShift[band]) & bandMask[band];
+    }
+
+    private void addPosting(int band, long value, int slot) {
+        LongIntHashMap lists = listByBandValue[band];
+        int list = lists.get(value);
+        if (list == LongIntHashMap.NO_VALUE) {
+            list = listCount[band]++;
+            if (list == postings[band].length) {
+                postings[band] = Arrays.copyOf(postings[band], list * 2);
+                postingSizes[band] = Arrays.copyOf(postingSizes[band], list * 2);
+            }
+            postings[band][list] = new int[2];
+            postingSizes[band][list] = 0;
+            lists.put(value, list);
+        }
+        int size = postingSizes[band][list];
+        if (size == postings[band][list].length) {
+            postings[band][list] = Arrays.copyOf(postings[band][list], size + (size >> 1) + 1);
+        }
+        postings[band][list][size] = slot;
+        postingSizes[band][list] = size + 1;
+    }
+
+    private void compact() {
+        long[] liveIds = new long[size()];
+        long[] liveHashes = new long[size()];
+        int live = 0;
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (!dead[slot]) {
+                liveIds[live] = ids[slot];
+                liveHashes[live] = hashes[slot];
+                live++;
+            }
+        }
+        slotCount = 0;
+        deadCount = 0;
+        slotById.clear();
+        for (int band = 0; band < bands; band++) {
+            listByBandValue[band].clear();
+            Arrays.fill(postings[band], 0, listCount[band], null);
+            listCount[band] = 0;
+        }
+        for (int i = 0; i < live; i++) {
+            add(liveIds[i], liveHashes[i]);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.imagefingerprint;
+
+/**
+ * pHash: the size x size lowest frequencies of the DCT-II of a (4 * size) square luminance grid, thresholded
+ * at their median.
+ * <p>
+ * Only a quarter of the coefficients are needed per dimension, so the separable transform computes size
+ * outputs for each row and then size outputs for each of those columns: for the 64-bit hash about 10k
+ * multiply-adds against the 32k of a full 32x32 transform. The orthonormal cosine factors are computed
+ * once into a table; the intermediate arrays come from the thread's {@link HashWorkspace}.
+ */
+final class PerceptualHash implements FingerprintAlgorithm {
+
+    private final int size;
+    private final int low;
+
+    // cosines[x * low + u] = alpha(u) * cos((2x + 1) * u * pi / (2 * size))
+    private final double[] cosines;
+
+    PerceptualHash(int hashSize) {
+        this.low = hashSize;
+        this.size = hashSize * 4;
+        this.cosines = new double[size * low];
+        for (int u = 0; u < low; u++) {
+            double alpha = Math.sqrt((u == 0 ? 1.0 : 2.0) / size);
+            for (int x = 0; x < size; x++) {
+                cosines[x * low + u] = alpha * Math.cos((2 * x + 1) * u * Math.PI / (2 * size));
+            }
+        }
+    }
+
+    @Override
+    public String name() {
+        return "phash";
+    }
+
+    @Override
+    public int bits() {
+        return low * low;
+    }
+
+    @Override
+    public int sampleWidth() {
+        return size;
+    }
+
+    @Override
+    public int sampleHeight() {
+        return size;
+    }
+
+    @Override
+    public void hash(int[] luminance, long[] out) {
+        // rows[y * low + u]: horizontal frequency u of row y. The innermost loops run over independent
+        // outputs rather than summing one output, so the additions do not wait on each other.
+        HashWorkspace workspace = HashWorkspace.current();
+        double[] rows = workspace.transform(size * low);
+        for (int y = 0; y < size; y++) {
+            int target = y * low;
+            for (int x = 0; x < size; x++) {
+                double pixel = luminance[y * size + x];
+                int table = x * low;
+                for (int u = 0; u < low; u++) {
+                    rows[target + u] += pixel * cosines[table + u];
+                }
+            }
+        }
+        double[] coefficients = workspace.coefficients(low * low);
+        for (int y = 0; y < size; y++) {
+            int source = y * low;
+            for (int v = 0; v < low; v++) {
+                double factor = cosines[y * low + v];
+                int target = v * low;
+                for (int u = 0; u < low; u++) {
+                    coefficients[target + u] += rows[source + u] * factor;
+                }
+            }
+        }
+        FingerprintAlgorithms.thresholdAtMedian(coefficients, workspace.sorted(coefficients.length), out);
+    }
+}
@@ -0,0 +1,209 @@
+package com.example.imagefingerprint;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.multipart.FilePartEvent;
+import org.springframework.http.codec.multipart.FormPartEvent;
+import org.springframework.http.codec.multipart.PartEvent;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Reactive variant of the single-image endpoints, active with {@code spring.main.web-application-type=reactive}.
+ * Multipart uploads are consumed as a stream of {@link PartEvent}s and gathered in memory, never spooled
+ * to disk, then decoded and hashed on the {@link BoundedFingerprintScheduler}. When the scheduler is
+ * saturated requests are answered with 429 before their upload is read.
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequestMapping("/api/image")
+public class ReactiveImageController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveImageController.class);
+    private static final FailureLogger failures = new FailureLogger(logger);
+
+    private final ImageService imageService;
+    private final CachedFingerprintService fingerprintService;
+    private final BoundedFingerprintScheduler scheduler;
+    private final int maxUploadSize;
+
+    public ReactiveImageController(ImageService imageService, CachedFingerprintService fingerprintService,
+                                   BoundedFingerprintScheduler scheduler, FingerprintProperties properties) {
+        this.imageService = imageService;
+        this.fingerprintService = fingerprintService;
+        this.scheduler = scheduler;
+        this.maxUploadSize = (int) Math.min(Integer.MAX_VALUE, properties.getReactive().getMaxUploadSize());
+    }
+
+    @PostMapping(value = "/fingerprint", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public Mono<ResponseEntity<Map<String, Object>>> fingerprint(@RequestBody Flux<PartEvent> parts,
+                                                                 @RequestParam(value = "algorithm", required = false) String algorithmName,
+                                                                 @RequestParam(value = "bits", required = false) Integer bits) {
+        return admitted(() -> {
+            Upload upload = new Upload(algorithmName, bits == null ? null : bits.toString());
+            return parts.windowUntil(PartEvent::isLast)
+                    .concatMap(part -> part.switchOnFirst((signal, events) -> read(signal.get(), events, upload)))
+                    .then(Mono.defer(() -> fingerprint(upload)));
+        });
+    }
+
+    @PostMapping(value = "/fingerprint-local", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<Map<String, Object>>> fingerprintLocal(@RequestBody Map<String, Object> request) {
+        String filePath = ImageController.stringParam(request, "filePath");
+        if (filePath == null || filePath.trim().isEmpty()) {
+            return Mono.just(ImageController.error(HttpStatus.BAD_REQUEST, "filePath cannot be null or empty."));
+        }
+        try {
+            if (!Files.isRegularFile(Paths.get(filePath))) {
+                return Mono.just(ImageController.error(HttpStatus.NOT_FOUND, "File not found: " + filePath));
+            }
+        } catch (InvalidPathException e) {
+            return Mono.just(ImageController.error(HttpStatus.BAD_REQUEST, "Invalid file path: " + e.getReason()));
+        }
+        return admitted(() -> {
+            FingerprintAlgorithm algorithm = imageService.algorithm(ImageController.stringParam(request, "algorithm"),
+                    ImageController.intParam(request, "bits"));
+            return Mono.fromCallable(() -> fingerprintService.fingerprint(filePath, algorithm))
+                    .subscribeOn(scheduler.scheduler())
+                    .map(fingerprint -> ResponseEntity.ok(ImageController.fingerprintResponse(fingerprint, algorithm)));
+        });
+    }
+
+    @PostMapping(value = "/similarity", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, Object>> similarity(@RequestBody Map<String, String> request) {
+        try {
+            double similarity = imageService.calculateSimilarity(request.get("fingerprint1"), request.get("fingerprint2"));
+            return ResponseEntity.ok(Collections.singletonMap("similarity", similarity));
+        } catch (IllegalArgumentException e) {
+            return ImageController.error(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    @GetMapping("/cache")
+    public Map<String, Object> cacheStats() {
+        return fingerprintService.stats();
+    }
+
+    /**
+     * Runs the request if the scheduler admits it, holding its slot until the response completes,
+     * fails or is cancelled. Otherwise answers 429 with the current queue depth.
+     */
+    private Mono<ResponseEntity<Map<String, Object>>> admitted(Callable<Mono<ResponseEntity<Map<String, Object>>>> request) {
+        if (!scheduler.tryAcquire()) {
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("error", "Too many images in progress, retry later.");
+            body.put("inFlight", scheduler.inFlight());
+            body.put("limit", scheduler.limit());
+            return Mono.just(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).header(HttpHeaders.RETRY_AFTER, "1").body(body));
+        }
+        return Mono.defer(() -> {
+                    try {
+                        return request.call();
+                    } catch (Exception e) {
+                        return Mono.error(e);
+                    }
+                })
+                .onErrorResume(ReactiveImageController::errorResponse)
+                .doFinally(signal -> scheduler.release());
+    }
+
+    private Mono<Void> read(PartEvent first, Flux<PartEvent> events, Upload upload) {
+        if (first instanceof FormPartEvent) {
+            upload.field(first.name(), ((FormPartEvent) first).value());
+            return events.then();
+        }
+        if (first instanceof FilePartEvent && "file".equals(first.name())) {
+            upload.filename = ((FilePartEvent) first).filename();
+            return DataBufferUtils.join(events.map(PartEvent::content), maxUploadSize)
+                    .doOnNext(buffer -> upload.content = toBytes(buffer))
+                    .then();
+        }
+        return events.doOnNext(event -> DataBufferUtils.release(event.content())).then();
+    }
+
+    private Mono<ResponseEntity<Map<String, Object>>> fingerprint(Upload upload) {
+        if (upload.content == null || upload.content.length == 0) {
+            return Mono.just(ImageController.error(HttpStatus.BAD_REQUEST, "File cannot be empty."));
+        }
+        FingerprintAlgorithm algorithm = imageService.algorithm(upload.algorithm, upload.bits());
+        return Mono.fromCallable(() -> fingerprintService.fingerprint(ByteBuffer.wrap(upload.content),
+                        "uploaded file: " + upload.filename, algorithm))
+                .subscribeOn(scheduler.scheduler())
+                .map(fingerprint -> ResponseEntity.ok(ImageController.fingerprintResponse(fingerprint, algorithm)));
+    }
+
+    private static Mono<ResponseEntity<Map<String, Object>>> errorResponse(Throwable e) {
+        if (e instanceof IllegalArgumentException) {
+            return Mono.just(ImageController.error(HttpStatus.BAD_REQUEST, e.getMessage()));
+        }
+        if (e instanceof DecodeRejectedException) {
+            return Mono.just(ImageController.unavailable((DecodeRejectedException) e));
+        }
+        if (e instanceof DataBufferLimitException) {
+            return Mono.just(ImageController.error(HttpStatus.PAYLOAD_TOO_LARGE, e.getMessage()));
+        }
+        failures.log("Failed to process reactive fingerprint request", e);
+        return Mono.just(ImageController.error(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to process image: " + e.getMessage()));
+    }
+
+    private static byte[] toBytes(DataBuffer buffer) {
+        try {
+            byte[] bytes = new byte[buffer.readableByteCount()];
+            buffer.read(bytes);
+            return bytes;
+        } finally {
+            DataBufferUtils.release(buffer);
+        }
+    }
+
+    /**
+     * Fields of one multipart request. Query parameters give the defaults; form fields override them.
+     */
+    private static final class Upload {
+
+        private String algorithm;
+        private String bits;
+        private String filename;
+        private byte[] content;
+
+        Upload(String algorithm, String bits) {
+            this.algorithm = algorithm;
+            this.bits = bits;
+        }
+
+        void field(String name, String value) {
+            if ("algorithm".equals(name)) {
+                algorithm = value;
+            } else if ("bits".equals(name)) {
+                bits = value;
+            }
+        }
+
+        Integer bits() {
+            return ImageController.intParam(Collections.singletonMap("bits", bits), "bits");
+        }
+    }
+}
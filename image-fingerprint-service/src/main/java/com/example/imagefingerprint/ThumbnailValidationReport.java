@@ -0,0 +1,90 @@
+package com.example.imagefingerprint;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Agreement between thumbnail based and full decode fingerprints over a corpus of files.
+ */
+public class ThumbnailValidationReport {
+
+    private static final int MAX_REPORTED_DISAGREEMENTS = 100;
+
+    private final int maxDistance;
+    private int filesExamined;
+    private int filesWithThumbnail;
+    private int agreeing;
+    private int failures;
+    private long totalDistance;
+    private int worstDistance;
+    private final List<String> disagreements = new ArrayList<>();
+
+    ThumbnailValidationReport(int maxDistance) {
+        this.maxDistance = maxDistance;
+    }
+
+    void recordWithoutThumbnail() {
+        filesExamined++;
+    }
+
+    void recordFailure() {
+        filesExamined++;
+        failures++;
+    }
+
+    void record(String file, int distance) {
+        filesExamined++;
+        filesWithThumbnail++;
+        totalDistance += distance;
+        worstDistance = Math.max(worstDistance, distance);
+        if (distance <= maxDistance) {
+            agreeing++;
+        } else if (disagreements.size() < MAX_REPORTED_DISAGREEMENTS) {
+            disagreements.add(file + " (distance " + distance + ")");
+        }
+    }
+
+    public int getMaxDistance() {
+        return maxDistance;
+    }
+
+    public int getFilesExamined() {
+        return filesExamined;
+    }
+
+    public int getFilesWithThumbnail() {
+        return filesWithThumbnail;
+    }
+
+    public int getAgreeing() {
+        return agreeing;
+    }
+
+    public int getFailures() {
+        return failures;
+    }
+
+    public double getAgreementRate() {
+        return filesWithThumbnail == 0 ? 0.0 : (double) agreeing / filesWithThumbnail;
+    }
+
+    public double getMeanDistance() {
+        return filesWithThumbnail == 0 ? 0.0 : (double) totalDistance / filesWithThumbnail;
+    }
+
+    public int getWorstDistance() {
+        return worstDistance;
+    }
+
+    public List<String> getDisagreements() {
+        return Collections.unmodifiableList(disagreements);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("examined=%d withThumbnail=%d agreeing=%d (%.1f%% within distance %d) meanDistance=%.2f worstDistance=%d failures=%d",
+                filesExamined, filesWithThumbnail, agreeing, getAgreementRate() * 100, maxDistance,
+                getMeanDistance(), worstDistance, failures);
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.imagefingerprint;
+
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Decodes a subsampled image as horizontal bands in parallel. Each band is read by its own reader over a
+ * duplicate of the in-memory stream with {@link ImageReadParam#setSourceRegion}, so readers that can
+ * seek to the strips or tiles of a region (TIFF) only decode their share of the file. Band boundaries
+ * fall on the subsampling grid, so the result has the same pixels as a single subsampled decode; the full
+ * resolution image is never materialised.
+ * <p>
+ * Sequential formats such as PNG and JPEG would have to decode every row above a region to reach it,
+ * so they are never tiled.
+ */
+final class TiledDecoder {
+
+    private static final int BANDS_PER_THREAD = 2; // Evens out bands that decode slower, e.g. compressed strips
+
+    private TiledDecoder() {
+    }
+
+    /**
+     * Whether readers of the format decode a source region without decoding the rest of the image.
+     */
+    static boolean supports(String format) {
+        return "tif".equals(format) || "tiff".equals(format);
+    }
+
+    /**
+     * Decodes the image at start of input with subsampling periodX x periodY. stripHeight is the number
+     * of source rows the reader decodes at once; bands are made no shorter so no strip is decoded twice.
+     */
+    static BufferedImage decode(ByteBufferImageInputStream input, long start, int width, int height, int stripHeight,
+                                int periodX, int periodY, ForkJoinPool pool) throws IOException {
+        int decodedHeight = (height + periodY - 1) / periodY;
+        int bands = Math.max(1, Math.min(decodedHeight, pool.getParallelism() * BANDS_PER_THREAD));
+        int bandRows = Math.max((decodedHeight + bands - 1) / bands, (stripHeight + periodY - 1) / periodY);
+
+        List<ForkJoinTask<BufferedImage>> tasks = new ArrayList<>();
+        for (int row = 0; row < decodedHeight; row += bandRows) {
+            int sourceY = row * periodY;
+            int sourceHeight = Math.min(bandRows * periodY, height - sourceY);
+            tasks.add(pool.submit(() -> decodeBand(input.duplicate(), start,
+                    new Rectangle(0, sourceY, width, sourceHeight), periodX, periodY)));
+        }
+
+        BufferedImage image = null;
+        WritableRaster raster = null;
+        int row = 0;
+        try {
+            for (ForkJoinTask<BufferedImage> task : tasks) {
+                BufferedImage band = task.get();
+                if (image == null) {
+                    raster = band.getRaster().createCompatibleWritableRaster((width + periodX - 1) / periodX, decodedHeight);
+                    image = new BufferedImage(band.getColorModel(), raster, band.isAlphaPremultiplied(), null);
+                }
+                raster.setRect(0, row, band.getRaster());
+                row += band.getHeight();
+            }
+            return image;
+        } catch (ExecutionException e) {
+            cancel(tasks);
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause.getMessage(), cause);
+        } catch (InterruptedException e) {
+            cancel(tasks);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while decoding image bands.", e);
+        }
+    }
+
+    private static BufferedImage decodeBand(ByteBufferImageInputStream input, long start, Rectangle region,
+                                            int periodX, int periodY) throws IOException {
+        input.seek(start);
+        ImageReader reader = ImageDecoder.acquireReader(input);
+        if (reader == null) {
+            throw new IOException("No reader for image band at row " + region.y + ".");
+        }
+        boolean reusable = false;
+        try {
+            reader.setInput(input, true, true);
+            ImageReadParam param = reader.getDefaultReadParam();
+            param.setSourceRegion(region);
+            param.setSourceSubsampling(periodX, periodY, 0, 0);
+            BufferedImage band = reader.read(0, param);
+            reusable = true;
+            return band;
+        } finally {
+            ImageDecoder.releaseReader(reader, reusable);
+        }
+    }
+
+    private static void cancel(List<ForkJoinTask<BufferedImage>> tasks) {
+        for (ForkJoinTask<BufferedImage> task : tasks) {
+            task.cancel(true);
+        }
+    }
+}
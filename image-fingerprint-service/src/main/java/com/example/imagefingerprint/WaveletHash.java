@@ -0,0 +1,61 @@
+package com.example.imagefingerprint;
+
+/**
+ * wHash: the size x size approximation (LL) band of a two level Haar decomposition of a (4 * size) square
+ * luminance grid, thresholded at its median. Sampling finer than the hash and letting the wavelet do the
+ * last reductions smooths aliasing that a plain area average keeps.
+ */
+final class WaveletHash implements FingerprintAlgorithm {
+
+    private final int hashSize;
+    private final int size;
+
+    WaveletHash(int hashSize) {
+        this.hashSize = hashSize;
+        this.size = hashSize * 4;
+    }
+
+    @Override
+    public String name() {
+        return "whash";
+    }
+
+    @Override
+    public int bits() {
+        return hashSize * hashSize;
+    }
+
+    @Override
+    public int sampleWidth() {
+        return size;
+    }
+
+    @Override
+    public int sampleHeight() {
+        return size;
+    }
+
+    @Override
+    public void hash(int[] luminance, long[] out) {
+        HashWorkspace workspace = HashWorkspace.current();
+        double[] band = workspace.transform(size * size);
+        for (int i = 0; i < band.length; i++) {
+            band[i] = luminance[i];
+        }
+        // Each level keeps the orthonormal Haar LL coefficient of every 2x2 block, in place
+        for (int level = size; level > hashSize; level /= 2) {
+            int half = level / 2;
+            for (int y = 0; y < half; y++) {
+                for (int x = 0; x < half; x++) {
+                    int topLeft = 2 * y * size + 2 * x;
+                    band[y * size + x] = (band[topLeft] + band[topLeft + 1] + band[topLeft + size] + band[topLeft + size + 1]) / 2;
+                }
+            }
+        }
+        double[] approximation = workspace.coefficients(hashSize * hashSize);
+        for (int y = 0; y < hashSize; y++) {
+            System.arraycopy(band, y * size, approximation, y * hashSize, hashSize);
+        }
+        FingerprintAlgorithms.thresholdAtMedian(approximation, workspace.sorted(approximation.length), out);
+    }
+}
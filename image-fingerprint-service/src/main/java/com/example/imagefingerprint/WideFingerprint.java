@@ -0,0 +1,182 @@
+package com.example.imagefingerprint;
+
+import java.util.Arrays;
+
+/**
+ * A perceptual hash of 64, 256 or 1024 bits held as a {@code long[]}, most significant bit of the first
+ * word first. A 64-bit wide fingerprint has the same bits and hex form as the {@link Fingerprint}.
+ * <p>
+ * Distances are computed word by word with {@link Long#bitCount}, which the JIT compiles to the POPCNT
+ * instruction, over a loop unrolled by four so the independent XOR/popcount chains issue in parallel.
+ * Comparisons never allocate.
+ */
+public final class WideFingerprint {
+
+    private static final int[] SUPPORTED_BITS = {64, 256, 1024};
+
+    private final long[] words;
+
+    /**
+     * Wraps the words without copying them.
+     */
+    public WideFingerprint(long[] words) {
+        checkBits(words.length * Long.SIZE);
+        this.words = words;
+    }
+
+    public static WideFingerprint fromHex(String hex) {
+        return new WideFingerprint(parseHex(hex));
+    }
+
+    public static WideFingerprint of(Fingerprint fingerprint) {
+        return new WideFingerprint(new long[]{fingerprint.value()});
+    }
+
+    static boolean isSupported(int bits) {
+        for (int supported : SUPPORTED_BITS) {
+            if (supported == bits) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static void checkBits(int bits) {
+        if (!isSupported(bits)) {
+            throw new IllegalArgumentException("Fingerprints must have 64, 256 or 1024 bits, not " + bits + ".");
+        }
+    }
+
+    /**
+     * Parses a fingerprint of 16, 64 or 256 hexadecimal characters.
+     */
+    public static long[] parseHex(CharSequence hex) {
+        if (hex == null || hex.length() % Fingerprint.HEX_LENGTH != 0
+                || !isSupported(hex.length() / Fingerprint.HEX_LENGTH * Long.SIZE)) {
+            throw new IllegalArgumentException("Fingerprint must be 16, 64 or 256 hexadecimal characters.");
+        }
+        long[] words = new long[hex.length() / Fingerprint.HEX_LENGTH];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = Fingerprint.parseHex(hex.subSequence(i * Fingerprint.HEX_LENGTH, (i + 1) * Fingerprint.HEX_LENGTH));
+        }
+        return words;
+    }
+
+    public static String toHex(long[] words) {
+        StringBuilder hex = new StringBuilder(words.length * Fingerprint.HEX_LENGTH);
+        for (long word : words) {
+            hex.append(Fingerprint.toHex(word));
+        }
+        return hex.toString();
+    }
+
+    public static int distance(long[] a, long[] b) {
+        if (a.length != b.length) {
+            throw new IllegalArgumentException("Cannot compare fingerprints of " + a.length * Long.SIZE
+                    + " and " + b.length * Long.SIZE + " bits.");
+        }
+        int distance = 0;
+        for (int i = 0; i < a.length; i++) {
+            distance += Long.bitCount(a[i] ^ b[i]);
+        }
+        return distance;
+    }
+
+    /**
+     * Hamming distance between {@code a[aOffset, aOffset + words)} and {@code b[bOffset, bOffset + words)}.
+     */
+    public static int distance(long[] a, int aOffset, long[] b, int bOffset, int words) {
+        int d0 = 0;
+        int d1 = 0;
+        int d2 = 0;
+        int d3 = 0;
+        int i = 0;
+        for (int end = words - 3; i < end; i += 4) {
+            d0 += Long.bitCount(a[aOffset + i] ^ b[bOffset + i]);
+            d1 += Long.bitCount(a[aOffset + i + 1] ^ b[bOffset + i + 1]);
+            d2 += Long.bitCount(a[aOffset + i + 2] ^ b[bOffset + i + 2]);
+            d3 += Long.bitCount(a[aOffset + i + 3] ^ b[bOffset + i + 3]);
+        }
+        for (; i < words; i++) {
+            d0 += Long.bitCount(a[aOffset + i] ^ b[bOffset + i]);
+        }
+        return d0 + d1 + d2 + d3;
+    }
+
+    /**
+     * Like {@link #distance(long[], int, long[], int, int)} but stops once the distance exceeds
+     * maxDistance, checking after every four words. The result is only exact when it is within maxDistance.
+     */
+    static int boundedDistance(long[] a, int aOffset, long[] b, int bOffset, int words, int maxDistance) {
+        int distance = 0;
+        int i = 0;
+        for (int end = words - 3; i < end; i += 4) {
+            distance += Long.bitCount(a[aOffset + i] ^ b[bOffset + i])
+                    + Long.bitCount(a[aOffset + i + 1] ^ b[bOffset + i + 1])
+                    + Long.bitCount(a[aOffset + i + 2] ^ b[bOffset + i + 2])
+                    + Long.bitCount(a[aOffset + i + 3] ^ b[bOffset + i + 3]);
+            if (distance > maxDistance) {
+                return distance;
+            }
+        }
+        for (; i < words; i++) {
+            distance += Long.bitCount(a[aOffset + i] ^ b[bOffset + i]);
+        }
+        return distance;
+    }
+
+    public static double similarity(long[] a, long[] b) {
+        return 1.0 - (double) distance(a, b) / (a.length * Long.SIZE);
+    }
+
+    /**
+     * The words backing this fingerprint. Callers must not modify them.
+     */
+    public long[] words() {
+        return words;
+    }
+
+    public int bits() {
+        return words.length * Long.SIZE;
+    }
+
+    public String toHex() {
+        return toHex(words);
+    }
+
+    public Fingerprint toFingerprint() {
+        if (words.length != 1) {
+            throw new IllegalArgumentException("A " + bits() + "-bit fingerprint does not fit in 64 bits.");
+        }
+        return new Fingerprint(words[0]);
+    }
+
+    public int distanceTo(WideFingerprint other) {
+        return distance(words, other.words);
+    }
+
+    public double similarityTo(WideFingerprint other) {
+        return similarity(words, other.words);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof WideFingerprint)) {
+            return false;
+        }
+        return Arrays.equals(words, ((WideFingerprint) o).words);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(words);
+    }
+
+    @Override
+    public String toString() {
+        return toHex();
+    }
+}
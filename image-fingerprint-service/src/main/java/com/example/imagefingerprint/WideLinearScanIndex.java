@@ -0,0 +1,112 @@
+package com.example.imagefingerprint;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Brute force index for 256 and 1024-bit fingerprints. Entries are packed back to back in one
+ * {@code long[]} (removal moves the last entry into the hole), so a search is a sequential pass that
+ * allocates nothing per entry. Distances stop early once they exceed the current cut-off, which for
+ * 1024-bit fingerprints usually skips most of each entry.
+ */
+public class WideLinearScanIndex {
+
+    private final int words;
+    private long[] hashes;
+    private long[] ids;
+    private int size;
+    private final LongIntHashMap slotById;
+
+    public WideLinearScanIndex(int bits, int expectedSize) {
+        WideFingerprint.checkBits(bits);
+        this.words = bits / Long.SIZE;
+        int capacity = Math.max(16, expectedSize);
+        hashes = new long[capacity * words];
+        ids = new long[capacity];
+        slotById = new LongIntHashMap(expectedSize);
+    }
+
+    public int bits() {
+        return words * Long.SIZE;
+    }
+
+    /**
+     * Adds or replaces the fingerprint stored under the id.
+     */
+    public void add(long id, long[] fingerprint) {
+        checkWords(fingerprint);
+        int slot = slotById.get(id);
+        if (slot == LongIntHashMap.NO_VALUE) {
+            if (size == ids.length) {
+                hashes = Arrays.copyOf(hashes, size * 2 * words);
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            slot = size++;
+            ids[slot] = id;
+            slotById.put(id, slot);
+        }
+        System.arraycopy(fingerprint, 0, hashes, slot * words, words);
+    }
+
+    public boolean remove(long id) {
+        int slot = slotById.remove(id);
+        if (slot == LongIntHashMap.NO_VALUE) {
+            return false;
+        }
+        int last = --size;
+        if (slot != last) {
+            System.arraycopy(hashes, last * words, hashes, slot * words, words);
+            ids[slot] = ids[last];
+            slotById.put(ids[slot], slot);
+        }
+        return true;
+    }
+
+    /**
+     * Returns up to limit entries within maxDistance bits of the fingerprint, closest first.
+     */
+    public List<IndexMatch> search(long[] fingerprint, int maxDistance, int limit) {
+        checkWords(fingerprint);
+        HammingScanner.TopK top = new HammingScanner.TopK(Math.min(limit, size));
+        if (size > 0 && limit > 0) {
+            int threshold = maxDistance;
+            for (int slot = 0, offset = 0; slot < size; slot++, offset += words) {
+                int distance = WideFingerprint.boundedDistance(fingerprint, 0, hashes, offset, words, threshold);
+                if (distance <= threshold) {
+                    top.offer(distance, slot);
+                    if (top.isFull()) {
+                        // Equal distances lose to earlier slots, so only strictly closer entries can still enter
+                        threshold = Math.min(maxDistance, top.worstDistance() - 1);
+                    }
+                }
+            }
+            top.sort();
+        }
+        List<IndexMatch> matches = new ArrayList<>(top.size());
+        for (int i = 0; i < top.size(); i++) {
+            int slot = top.position(i);
+            matches.add(new IndexMatch(ids[slot], Arrays.copyOfRange(hashes, slot * words, (slot + 1) * words), top.distance(i)));
+        }
+        matches.sort(IndexMatch.BY_DISTANCE);
+        return matches;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Approximate heap used by the index structures, in bytes.
+     */
+    public long memoryBytes() {
+        return hashes.length * 8L + ids.length * 8L + slotById.memoryBytes();
+    }
+
+    private void checkWords(long[] fingerprint) {
+        if (fingerprint.length != words) {
+            throw new IllegalArgumentException("Index holds " + bits() + "-bit fingerprints, not "
+                    + fingerprint.length * Long.SIZE + "-bit.");
+        }
+    }
+}
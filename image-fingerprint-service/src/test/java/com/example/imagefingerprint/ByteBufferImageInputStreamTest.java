@@ -0,0 +1,52 @@
+package com.example.imagefingerprint;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ByteBufferImageInputStreamTest {
+
+    @Test
+    void readsLikeAnImageIoStream() throws Exception {
+        byte[] content = new byte[1000];
+        new Random(7).nextBytes(content);
+        try (ImageInputStream mapped = new ByteBufferImageInputStream(ByteBuffer.wrap(content));
+             ImageInputStream cached = new MemoryCacheImageInputStream(new ByteArrayInputStream(content))) {
+            for (ImageInputStream input : new ImageInputStream[]{mapped, cached}) {
+                input.seek(10);
+                input.mark();
+                input.readBits(3);
+                input.reset();
+            }
+            assertThat(mapped.readBits(13)).isEqualTo(cached.readBits(13));
+            assertThat(mapped.readInt()).isEqualTo(cached.readInt());
+            byte[] a = new byte[500];
+            byte[] b = new byte[500];
+            mapped.readFully(a);
+            cached.readFully(b);
+            assertThat(a).isEqualTo(b);
+            mapped.seek(990);
+            assertThat(mapped.read(a, 0, 100)).isEqualTo(10);
+            assertThat(mapped.read()).isEqualTo(-1);
+            assertThat(mapped.read(a, 0, 100)).isEqualTo(-1);
+            assertThat(mapped.length()).isEqualTo(1000);
+        }
+    }
+
+    @Test
+    void fingerprintsMappedFilesLikeStreams(@TempDir Path directory) throws Exception {
+        byte[] jpeg = ImageServiceTest.encode(ImageServiceTest.testImage(640, 480), "jpg");
+        Path file = Files.write(directory.resolve("a.jpg"), jpeg);
+        assertThat(ImageService.computeFingerprint(file.toString()))
+                .isEqualTo(ImageService.computeFingerprint(new ByteArrayInputStream(jpeg)));
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.imagefingerprint;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CachedFingerprintServiceTest {
+
+    @Test
+    void xxHash64MatchesReferenceVectors() {
+        assertThat(xxHash("")).isEqualTo(0xEF46DB3751D8E999L);
+        assertThat(xxHash("a")).isEqualTo(0xD24EC4F1A98C6E5BL);
+        assertThat(xxHash("abc")).isEqualTo(0x44BC2CF5AD770999L);
+    }
+
+    @Test
+    void uploadsAreCachedByContent() throws IOException {
+        CachedFingerprintService service = new CachedFingerprintService(new ImageService(), new FingerprintProperties());
+        byte[] png = ImageServiceTest.encode(ImageServiceTest.testImage(120, 90), "png");
+
+        WideFingerprint first = service.fingerprint(new ByteArrayInputStream(png), "first upload");
+        WideFingerprint second = service.fingerprint(new ByteArrayInputStream(png.clone()), "second upload");
+
+        assertThat(second).isEqualTo(first).isEqualTo(WideFingerprint.of(ImageService.computeFingerprint(new ByteArrayInputStream(png))));
+        Map<String, Object> stats = service.stats();
+        assertThat(stats).containsEntry("hits", 1L).containsEntry("misses", 1L).containsEntry("size", 1L);
+    }
+
+    @Test
+    void localFilesAreInvalidatedWhenModified(@TempDir Path directory) throws IOException {
+        CachedFingerprintService service = new CachedFingerprintService(new ImageService(), new FingerprintProperties());
+        Path file = directory.resolve("image.png");
+        Files.write(file, ImageServiceTest.encode(ImageServiceTest.testImage(120, 90), "png"));
+
+        WideFingerprint original = service.fingerprint(file.toString());
+        assertThat(service.fingerprint(file.toString())).isEqualTo(original);
+        assertThat(service.stats()).containsEntry("hits", 1L);
+
+        Files.write(file, ImageServiceTest.encode(ImageServiceTest.testImage(90, 120), "png"));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 2000));
+        assertThat(service.fingerprint(file.toString())).isEqualTo(WideFingerprint.of(ImageService.computeFingerprint(file.toString())));
+        assertThat(service.stats()).containsEntry("misses", 2L);
+    }
+
+    @Test
+    void persistsEntriesAcrossRestarts(@TempDir Path directory) throws IOException {
+        FingerprintProperties properties = new FingerprintProperties();
+        properties.getCache().setPersistPath(directory.resolve("cache.bin").toString());
+        byte[] png = ImageServiceTest.encode(ImageServiceTest.testImage(64, 64), "png");
+
+        CachedFingerprintService before = new CachedFingerprintService(new ImageService(), properties);
+        WideFingerprint fingerprint = before.fingerprint(new ByteArrayInputStream(png), "upload");
+        before.destroy();
+
+        CachedFingerprintService after = new CachedFingerprintService(new ImageService(), properties);
+        assertThat(after.fingerprint(new ByteArrayInputStream(png), "upload")).isEqualTo(fingerprint);
+        assertThat(after.stats()).containsEntry("hits", 1L).containsEntry("misses", 0L);
+    }
+
+    @Test
+    void discardsPersistedEntriesAfterPipelineChanges(@TempDir Path directory) throws IOException {
+        FingerprintProperties properties = new FingerprintProperties();
+        properties.getCache().setPersistPath(directory.resolve("cache.bin").toString());
+        byte[] png = ImageServiceTest.encode(ImageServiceTest.testImage(64, 64), "png");
+
+        CachedFingerprintService before = new CachedFingerprintService(new ImageService(properties), properties);
+        before.fingerprint(new ByteArrayInputStream(png), "upload");
+        before.destroy();
+
+        properties.setUseEmbeddedThumbnail(true);
+        CachedFingerprintService after = new CachedFingerprintService(new ImageService(properties), properties);
+        assertThat(after.stats()).containsEntry("size", 0L);
+        after.fingerprint(new ByteArrayInputStream(png), "upload");
+        assertThat(after.stats()).containsEntry("hits", 0L).containsEntry("misses", 1L);
+    }
+
+    private static long xxHash(String input) {
+        byte[] bytes = input.getBytes(StandardCharsets.UTF_8);
+        return XxHash64.hash(bytes, 0, bytes.length, 0);
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.imagefingerprint;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.FileNotFoundException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CpuBoundExecutorTest {
+
+    private final ExecutorService pool = new FingerprintExecutorConfiguration().cpuFingerprintExecutor(new FingerprintProperties());
+
+    @AfterEach
+    void shutDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void runsTasksOnTheCpuPool() throws Exception {
+        String thread = new CpuBoundExecutor(pool).call(() -> Thread.currentThread().getName());
+        assertThat(thread).startsWith("fingerprint-cpu-");
+    }
+
+    @Test
+    void refusesTasksBeyondTheQueueInsteadOfRunningThemOnTheCaller() throws Exception {
+        FingerprintProperties properties = new FingerprintProperties();
+        properties.getCpu().setPoolSize(1);
+        properties.getCpu().setQueueCapacity(1);
+        ExecutorService small = new FingerprintExecutorConfiguration().cpuFingerprintExecutor(properties);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            small.submit(() -> release.await(10, TimeUnit.SECONDS));
+            small.submit(() -> release.await(10, TimeUnit.SECONDS));
+            assertThatThrownBy(() -> new CpuBoundExecutor(small).call(() -> Thread.currentThread().getName()))
+                    .isInstanceOf(DecodeRejectedException.class)
+                    .satisfies(e -> assertThat(((DecodeRejectedException) e).isRetryable()).isTrue());
+        } finally {
+            release.countDown();
+            small.shutdownNow();
+        }
+    }
+
+    @Test
+    void rethrowsTheTaskExceptionUnwrapped() {
+        CpuBoundExecutor executor = new CpuBoundExecutor(pool);
+        assertThatThrownBy(() -> executor.call(() -> {
+            throw new FileNotFoundException("missing.png");
+        })).isInstanceOf(FileNotFoundException.class).hasMessage("missing.png");
+        assertThatThrownBy(() -> executor.call(() -> {
+            throw new IllegalArgumentException("Unsupported image format.");
+        })).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.imagefingerprint;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DecodeBudgetTest {
+
+    @Test
+    void reservesAndReleasesInKibibytes() {
+        DecodeBudget budget = new DecodeBudget(64 * 1024, 10);
+        int first = budget.reserve(40 * 1024);
+        assertThat(budget.availableBytes()).isEqualTo(24 * 1024);
+        assertThatThrownBy(() -> budget.reserve(30 * 1024))
+                .isInstanceOf(DecodeRejectedException.class)
+                .satisfies(e -> assertThat(((DecodeRejectedException) e).isRetryable()).isTrue());
+        budget.release(first);
+        budget.release(budget.reserve(30 * 1024));
+        assertThat(budget.availableBytes()).isEqualTo(budget.budgetBytes());
+    }
+
+    @Test
+    void rejectsImagesLargerThanTheWholeBudgetWithoutWaiting() {
+        DecodeBudget budget = new DecodeBudget(64 * 1024, 60_000);
+        assertThatThrownBy(() -> budget.reserve(65 * 1024))
+                .isInstanceOf(DecodeRejectedException.class)
+                .satisfies(e -> assertThat(((DecodeRejectedException) e).isRetryable()).isFalse());
+    }
+
+    @Test
+    void estimatesFromHeaderDimensionsBeforeDecoding() throws Exception {
+        // 6000x4000 subsampled by 93x62 to 65x65, plus 16 full-width rows
+        assertThat(ImageDecoder.estimateBytes(6000, 4000, 93, 62)).isEqualTo((65L * 65 + 6000L * 16) * 4);
+
+        FingerprintProperties properties = new FingerprintProperties();
+        properties.getAdmission().setMemoryBudget(16 * 1024);
+        properties.getAdmission().setMaxWaitMillis(10);
+        ImageService service = new ImageService(properties);
+        byte[] png = ImageServiceTest.encode(ImageServiceTest.testImage(2000, 1500), "png");
+        assertThatThrownBy(() -> service.fingerprint(new ByteArrayInputStream(png), "png"))
+                .isInstanceOf(DecodeRejectedException.class);
+        assertThat(service.decodeBudget().availableBytes()).isEqualTo(16 * 1024);
+
+        properties.getAdmission().setMemoryBudget(1024 * 1024);
+        assertThat(new ImageService(properties).fingerprint(new ByteArrayInputStream(png), "png"))
+                .isEqualTo(ImageService.computeFingerprint(new ByteArrayInputStream(png)));
+    }
+}
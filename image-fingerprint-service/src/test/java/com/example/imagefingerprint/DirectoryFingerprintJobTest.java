@@ -0,0 +1,198 @@
+package com.example.imagefingerprint;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DirectoryFingerprintJobTest {
+
+    @Test
+    void fingerprintsEveryImageAndResumesFromCheckpoint(@TempDir Path directory) throws Exception {
+        Path root = Files.createDirectories(directory.resolve("images"));
+        Path nested = Files.createDirectories(root.resolve("nested, with comma"));
+        writeImage(root.resolve("a.png"), 120, 90);
+        writeImage(nested.resolve("b.jpg"), 90, 120);
+        Files.write(root.resolve("broken.png"), new byte[]{1, 2, 3});
+        Files.write(root.resolve("notes.txt"), "not an image".getBytes(StandardCharsets.UTF_8));
+        Path output = directory.resolve("out/fingerprints.csv");
+
+        DirectoryJobService service = new DirectoryJobService(new ImageService(), smallJobProperties(directory));
+        Map<String, Object> status = run(service, root, output, "csv", false);
+        assertThat(status).containsEntry("state", "COMPLETED").containsEntry("processed", 2L).containsEntry("failed", 1L);
+
+        List<String> lines = Files.readAllLines(output, StandardCharsets.UTF_8);
+        assertThat(lines).hasSize(4).first().isEqualTo("path,fingerprint,error");
+        String expected = ImageService.computeFingerprint(nested.resolve("b.jpg").toString()).toHex();
+        assertThat(lines).contains('"' + nested.resolve("b.jpg").toString() + "\"," + expected + ",");
+
+        // A record written after the last checkpoint is dropped and redone on resume, and failures are retried
+        Files.write(output, "torn,rec".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        writeImage(root.resolve("c.bmp"), 64, 64);
+        writeImage(root.resolve("broken.png"), 64, 64);
+        status = run(service, root, output, "csv", true);
+        assertThat(status).containsEntry("state", "COMPLETED").containsEntry("skipped", 2L)
+                .containsEntry("processed", 2L).containsEntry("failed", 0L);
+        lines = Files.readAllLines(output, StandardCharsets.UTF_8);
+        assertThat(lines).hasSize(6).noneMatch(line -> line.startsWith("torn"));
+        assertThat(lines.subList(4, 6)).anyMatch(line -> line.startsWith(root.resolve("c.bmp").toString() + ","))
+                .anyMatch(line -> line.startsWith(root.resolve("broken.png").toString() + ",") && line.endsWith(","));
+    }
+
+    @Test
+    void writesBinaryRecords(@TempDir Path directory) throws Exception {
+        Path root = Files.createDirectories(directory.resolve("images"));
+        writeImage(root.resolve("a.png"), 120, 90);
+        Path output = directory.resolve("fingerprints.bin");
+
+        Map<String, Object> status = run(new DirectoryJobService(new ImageService(), smallJobProperties(directory)),
+                root, output, "binary", false);
+        assertThat(status).containsEntry("state", "COMPLETED").containsEntry("processed", 1L);
+
+        byte[] bytes = Files.readAllBytes(output);
+        byte[] path = root.resolve("a.png").toString().getBytes(StandardCharsets.UTF_8);
+        assertThat(bytes).hasSize(6 + 2 + path.length + 1 + Fingerprint.BYTES);
+        assertThat(bytes[6 + 2 + path.length]).isEqualTo((byte) 1);
+        assertThat(Fingerprint.readLong(bytes, 6 + 2 + path.length + 1))
+                .isEqualTo(ImageService.computeFingerprint(root.resolve("a.png").toString()).value());
+
+        Files.write(root.resolve("broken.png"), new byte[]{1, 2, 3});
+        DirectoryJobService service = new DirectoryJobService(new ImageService(), smallJobProperties(directory));
+        assertThat(run(service, root, output, "binary", true)).containsEntry("skipped", 1L).containsEntry("failed", 1L);
+        writeImage(root.resolve("broken.png"), 64, 64);
+        assertThat(run(service, root, output, "binary", true)).containsEntry("skipped", 1L).containsEntry("processed", 1L);
+    }
+
+    @Test
+    void onlyWritesJobOutputsInsideTheOutputDirectory(@TempDir Path directory) throws Exception {
+        Path root = Files.createDirectories(directory.resolve("images"));
+        writeImage(root.resolve("a.png"), 120, 90);
+        Path jobs = Files.createDirectories(directory.resolve("jobs"));
+        Path config = Files.write(directory.resolve("application.properties"), "keep=me".getBytes(StandardCharsets.UTF_8));
+        DirectoryJobService service = new DirectoryJobService(new ImageService(), smallJobProperties(jobs));
+
+        assertThatThrownBy(() -> service.start(root.toString(), config.toString(), "csv", null, null, false))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.start(root.toString(), "../application.properties", "csv", null, null, false))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(Files.readAllLines(config)).containsExactly("keep=me");
+
+        // Inside the directory, files that are not job outputs are not truncated either
+        Path notes = Files.write(jobs.resolve("notes.csv"), "keep=me".getBytes(StandardCharsets.UTF_8));
+        assertThatThrownBy(() -> service.start(root.toString(), "notes.csv", "csv", null, null, false))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("not a fingerprint job output");
+        assertThat(Files.readAllLines(notes)).containsExactly("keep=me");
+
+        Map<String, Object> status = run(service, root, Path.of("nested/fingerprints.csv"), "csv", false);
+        assertThat(status).containsEntry("state", "COMPLETED")
+                .containsEntry("output", jobs.toRealPath().resolve("nested/fingerprints.csv").toString());
+        status = run(service, root, Path.of("nested/fingerprints.csv"), "csv", false);
+        assertThat(status).containsEntry("state", "COMPLETED").containsEntry("processed", 1L);
+    }
+
+    @Test
+    void givesUpOnFilesTheBusyBudgetKeepsTurningAway(@TempDir Path directory) throws Exception {
+        Path root = Files.createDirectories(directory.resolve("images"));
+        writeImage(root.resolve("a.png"), 120, 90);
+        FingerprintProperties properties = smallJobProperties(directory);
+        properties.getAdmission().setMaxWaitMillis(0);
+        properties.getJob().setAdmissionAttempts(3);
+        properties.getJob().setAdmissionBackoffMillis(1);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ImageService imageService = new ImageService(properties, new FingerprintMetrics(registry));
+        DecodeBudget budget = imageService.decodeBudget();
+        int reservation = budget.reserve(budget.budgetBytes());
+        try {
+            Map<String, Object> status = run(new DirectoryJobService(imageService, properties),
+                    root, directory.resolve("fingerprints.csv"), "csv", false);
+            assertThat(status).containsEntry("state", "COMPLETED").containsEntry("failed", 1L);
+        } finally {
+            budget.release(reservation);
+        }
+        assertThat(Files.readAllLines(directory.resolve("fingerprints.csv"), StandardCharsets.UTF_8).get(1))
+                .contains("Not admitted after 3 attempts");
+        assertThat(registry.get("image.fingerprint.errors").tag("cause", "busy").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void restartingDiscardsTheEarlierRunsCheckpoint(@TempDir Path directory) throws Exception {
+        Path first = Files.createDirectories(directory.resolve("first"));
+        writeImage(first.resolve("a.png"), 120, 90);
+        Path second = Files.createDirectories(directory.resolve("second"));
+        for (String name : new String[]{"b.png", "c.png", "d.png"}) {
+            writeImage(second.resolve(name), 64, 64);
+        }
+        Path output = directory.resolve("fingerprints.csv");
+        DirectoryJobService service = new DirectoryJobService(new ImageService(), smallJobProperties(directory));
+        assertThat(run(service, first, output, "csv", false)).containsEntry("state", "COMPLETED");
+
+        // The restart dies before its first checkpoint, leaving a torn record
+        Path blocked = Files.createDirectory(directory.resolve("fingerprints.csv.checkpoint.tmp"));
+        assertThat(run(service, second, output, "csv", false)).containsEntry("state", "FAILED");
+        Files.write(output, "torn,rec".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        Files.delete(blocked);
+
+        assertThat(run(service, second, output, "csv", true)).containsEntry("state", "COMPLETED")
+                .containsEntry("skipped", 0L).containsEntry("processed", 3L);
+        List<String> lines = Files.readAllLines(output, StandardCharsets.UTF_8);
+        assertThat(lines).hasSize(4);
+        assertThat(lines.subList(1, 4)).allMatch(line -> line.startsWith(second.toString()) && line.endsWith(","));
+    }
+
+    @Test
+    void recordsFilesAboveTheSizeLimitAsFailures(@TempDir Path directory) throws Exception {
+        Path root = Files.createDirectories(directory.resolve("images"));
+        writeImage(root.resolve("small.png"), 16, 16);
+        writeImage(root.resolve("large.png"), 400, 300);
+        FingerprintProperties properties = smallJobProperties(directory);
+        properties.getJob().setMaxFileSize(Files.size(root.resolve("small.png")));
+
+        Map<String, Object> status = run(new DirectoryJobService(new ImageService(), properties),
+                root, directory.resolve("fingerprints.csv"), "csv", false);
+        assertThat(status).containsEntry("state", "COMPLETED").containsEntry("processed", 1L).containsEntry("failed", 1L)
+                .containsEntry("bytesRead", Files.size(root.resolve("small.png")));
+        assertThat(Files.readAllLines(directory.resolve("fingerprints.csv"), StandardCharsets.UTF_8))
+                .anyMatch(line -> line.startsWith(root.resolve("large.png") + ",") && line.contains("exceeds the limit"));
+    }
+
+    @Test
+    void parsesQuotedCsvFields() {
+        String path = "dir, \"quoted\"/x.png";
+        assertThat(DirectoryFingerprintJob.firstCsvField(DirectoryFingerprintJob.csvField(path) + ",abc,")).isEqualTo(path);
+        assertThat(DirectoryFingerprintJob.firstCsvField("plain.png,abc,")).isEqualTo("plain.png");
+    }
+
+    private static Map<String, Object> run(DirectoryJobService service, Path root, Path output, String format,
+                                           boolean resume) throws IOException, InterruptedException {
+        long id = (Long) service.start(root.toString(), output.toString(), format, null, null, resume).get("id");
+        assertThat(service.job(id).await(30, TimeUnit.SECONDS)).isTrue();
+        return service.status(id);
+    }
+
+    private static FingerprintProperties smallJobProperties(Path directory) {
+        FingerprintProperties properties = new FingerprintProperties();
+        properties.getJob().setIoThreads(2);
+        properties.getJob().setCpuThreads(2);
+        properties.getJob().setQueueCapacity(2);
+        properties.getJob().setCheckpointInterval(1);
+        properties.getJob().setOutputDir(directory.toString());
+        return properties;
+    }
+
+    private static void writeImage(Path file, int width, int height) throws IOException {
+        String name = file.getFileName().toString();
+        Files.write(file, ImageServiceTest.encode(ImageServiceTest.testImage(width, height), name.substring(name.lastIndexOf('.') + 1)));
+    }
+}
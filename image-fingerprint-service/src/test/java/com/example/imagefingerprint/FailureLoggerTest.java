@@ -0,0 +1,42 @@
+package com.example.imagefingerprint;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FailureLoggerTest {
+
+    @Test
+    void logsEachFailureTypeOncePerInterval() throws Exception {
+        Logger logger = (Logger) LoggerFactory.getLogger(FailureLoggerTest.class.getName() + ".failures");
+        ListAppender<ILoggingEvent> events = new ListAppender<>();
+        events.start();
+        logger.addAppender(events);
+        logger.setAdditive(false);
+
+        FailureLogger failures = new FailureLogger(logger, 200);
+        for (int i = 0; i < 5; i++) {
+            failures.log("Could not fingerprint {}", "bad-" + i, new RuntimeException(new IOException("not an image")));
+        }
+        assertThat(failures.log("Failed to process {}", "x", new IllegalStateException("bug"))).isTrue();
+        assertThat(failures.suppressed(IOException.class)).isEqualTo(4);
+        assertThat(events.list).hasSize(2);
+        assertThat(events.list.get(0).getLevel()).isEqualTo(Level.WARN);
+        assertThat(events.list.get(0).getThrowableProxy()).isNull();
+        assertThat(events.list.get(0).getFormattedMessage()).startsWith("Could not fingerprint bad-0: ");
+        assertThat(events.list.get(1).getLevel()).isEqualTo(Level.ERROR);
+        assertThat(events.list.get(1).getThrowableProxy()).isNotNull();
+
+        Thread.sleep(250);
+        assertThat(failures.log("Could not fingerprint {}", "bad-5", new RuntimeException(new IOException("not an image")))).isTrue();
+        assertThat(events.list.get(2).getFormattedMessage()).endsWith("(4 similar failures suppressed)");
+        assertThat(failures.suppressed(IOException.class)).isZero();
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.imagefingerprint;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FingerprintAlgorithmTest {
+
+    @Test
+    void differenceHashSetsBitsForRisingGradients() {
+        int[] rising = new int[9 * 8];
+        for (int i = 0; i < rising.length; i++) {
+            rising[i] = (i % 9) * 20;
+        }
+        assertThat(FingerprintAlgorithms.DIFFERENCE.hash(rising)).isEqualTo(-1L);
+        for (int i = 0; i < rising.length; i++) {
+            rising[i] = 255 - rising[i];
+        }
+        assertThat(FingerprintAlgorithms.DIFFERENCE.hash(rising)).isEqualTo(0L);
+    }
+
+    @Test
+    void perceptualHashMatchesDirectDct() {
+        Random random = new Random(3);
+        for (int round = 0; round < 20; round++) {
+            int[] luminance = new int[32 * 32];
+            for (int i = 0; i < luminance.length; i++) {
+                luminance[i] = random.nextInt(256);
+            }
+            double[] lowFrequencies = new double[64];
+            for (int v = 0; v < 8; v++) {
+                for (int u = 0; u < 8; u++) {
+                    double sum = 0;
+                    for (int y = 0; y < 32; y++) {
+                        for (int x = 0; x < 32; x++) {
+                            sum += luminance[y * 32 + x] * Math.cos((2 * x + 1) * u * Math.PI / 64) * Math.cos((2 * y + 1) * v * Math.PI / 64);
+                        }
+                    }
+                    lowFrequencies[v * 8 + u] = sum * Math.sqrt((u == 0 ? 1.0 : 2.0) / 32) * Math.sqrt((v == 0 ? 1.0 : 2.0) / 32);
+                }
+            }
+            assertThat(FingerprintAlgorithms.PERCEPTUAL.hash(luminance))
+                    .isEqualTo(FingerprintAlgorithms.thresholdAtMedian(lowFrequencies));
+        }
+    }
+
+    @Test
+    void waveletHashThresholdsBlockAverages() {
+        Random random = new Random(5);
+        int[] luminance = new int[32 * 32];
+        for (int i = 0; i < luminance.length; i++) {
+            luminance[i] = random.nextInt(256);
+        }
+        double[] blocks = new double[64];
+        for (int i = 0; i < luminance.length; i++) {
+            blocks[(i / 32 / 4) * 8 + (i % 32) / 4] += luminance[i];
+        }
+        assertThat(FingerprintAlgorithms.WAVELET.hash(luminance)).isEqualTo(FingerprintAlgorithms.thresholdAtMedian(blocks));
+    }
+
+    @Test
+    void everyAlgorithmToleratesReencodingAndSeparatesDifferentImages() throws IOException {
+        BufferedImage image = ImageServiceTest.testImage(640, 480);
+        BufferedImage other = ImageServiceTest.testImage(480, 640);
+        byte[] png = ImageServiceTest.encode(image, "png");
+        byte[] jpeg = ImageServiceTest.encode(image, "jpg");
+        byte[] otherPng = ImageServiceTest.encode(flip(other), "png");
+        ImageService service = new ImageService();
+
+        for (String name : FingerprintAlgorithms.names()) {
+            FingerprintAlgorithm algorithm = FingerprintAlgorithms.forName(name);
+            WideFingerprint original = service.fingerprint(new ByteArrayInputStream(png), "png", algorithm);
+            WideFingerprint reencoded = service.fingerprint(new ByteArrayInputStream(jpeg), "jpeg", algorithm);
+            WideFingerprint different = service.fingerprint(new ByteArrayInputStream(otherPng), "other", algorithm);
+            assertThat(original.distanceTo(reencoded)).as(name).isLessThanOrEqualTo(4);
+            assertThat(original.distanceTo(different)).as(name).isGreaterThan(16);
+        }
+    }
+
+    @Test
+    void largerSizesKeepTheirWordCountAndStillMatchReencodings() throws IOException {
+        BufferedImage image = ImageServiceTest.testImage(640, 480);
+        byte[] png = ImageServiceTest.encode(image, "png");
+        byte[] jpeg = ImageServiceTest.encode(image, "jpg");
+        byte[] otherPng = ImageServiceTest.encode(flip(ImageServiceTest.testImage(480, 640)), "png");
+        ImageService service = new ImageService();
+
+        for (String name : FingerprintAlgorithms.names()) {
+            for (int bits : new int[]{256, 1024}) {
+                FingerprintAlgorithm algorithm = FingerprintAlgorithms.forName(name, bits);
+                assertThat(algorithm.bits()).isEqualTo(bits);
+                WideFingerprint original = service.fingerprint(new ByteArrayInputStream(png), "png", algorithm);
+                WideFingerprint reencoded = service.fingerprint(new ByteArrayInputStream(jpeg), "jpeg", algorithm);
+                WideFingerprint different = service.fingerprint(new ByteArrayInputStream(otherPng), "other", algorithm);
+                assertThat(original.words()).as(name + "/" + bits).hasSize(bits / 64);
+                assertThat(original.distanceTo(reencoded)).as(name + "/" + bits).isLessThanOrEqualTo(bits / 16);
+                assertThat(original.distanceTo(different)).as(name + "/" + bits).isGreaterThan(bits / 4);
+            }
+        }
+        assertThatThrownBy(() -> service.algorithm("ahash", 128)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void averageHashIsTheDefaultAndUnknownNamesAreRejected() throws IOException {
+        byte[] png = ImageServiceTest.encode(ImageServiceTest.testImage(200, 150), "png");
+        ImageService service = new ImageService();
+        assertThat(service.algorithm(null)).isSameAs(FingerprintAlgorithms.AVERAGE);
+        assertThat(service.fingerprint(new ByteArrayInputStream(png), "png").value())
+                .isEqualTo(ImageService.computeFingerprint(new ByteArrayInputStream(png)).value());
+        assertThat(service.algorithm("PHASH")).isSameAs(FingerprintAlgorithms.PERCEPTUAL);
+        assertThatThrownBy(() -> service.algorithm("md5")).isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("ahash");
+    }
+
+    private static BufferedImage flip(BufferedImage image) {
+        BufferedImage flipped = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                flipped.setRGB(image.getWidth() - 1 - x, image.getHeight() - 1 - y, image.getRGB(x, y));
+            }
+        }
+        return flipped;
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.imagefingerprint;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FingerprintIndexTest {
+
+    @Test
+    void bkTreeMatchesBruteForce() {
+        assertMatchesBruteForce(new BkTreeIndex(16));
+    }
+
+    @Test
+    void multiIndexHashingMatchesBruteForce() {
+        assertMatchesBruteForce(new MultiIndexHashIndex(4, 16));
+        assertMatchesBruteForce(new MultiIndexHashIndex(3, 16));
+    }
+
+    @Test
+    void linearScanMatchesBruteForce() {
+        assertMatchesBruteForce(new LinearScanIndex(16));
+    }
+
+    @Test
+    void multiIndexHashingReportsCandidateStats() {
+        MultiIndexHashIndex index = new MultiIndexHashIndex(4, 16);
+        index.add(1L, 0L);
+        index.add(2L, -1L);
+        // The entry equal to the query sits in every band's posting list; the opposite one in none
+        assertThat(index.search(0L, 3, 10)).hasSize(1);
+        Map<String, Object> stats = new HashMap<>();
+        index.addStats(stats);
+        assertThat(stats).containsEntry("queries", 1L).containsEntry("candidatesExamined", 4L);
+    }
+
+    @Test
+    void longIntHashMapSurvivesRemovalsAndGrowth() {
+        LongIntHashMap map = new LongIntHashMap();
+        for (int i = 0; i < 10_000; i++) {
+            map.put(i * 7919L, i);
+        }
+        for (int i = 0; i < 10_000; i += 2) {
+            assertThat(map.remove(i * 7919L)).isEqualTo(i);
+        }
+        assertThat(map.size()).isEqualTo(5_000);
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(map.get(i * 7919L)).isEqualTo(i % 2 == 0 ? LongIntHashMap.NO_VALUE : i);
+        }
+    }
+
+    static void assertMatchesBruteForce(FingerprintIndex index) {
+        Random random = new Random(42);
+        Map<Long, Long> expected = new HashMap<>();
+        List<Long> centres = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            centres.add(random.nextLong());
+        }
+        // Clusters of near duplicates around a few centres, so searches have something to find
+        for (long id = 0; id < 5_000; id++) {
+            long hash = centres.get(random.nextInt(centres.size()));
+            for (int flips = random.nextInt(12); flips > 0; flips--) {
+                hash ^= 1L << random.nextInt(64);
+            }
+            index.add(id, hash);
+            expected.put(id, hash);
+        }
+        for (long id = 0; id < 5_000; id += 3) {
+            assertThat(index.remove(id)).isTrue();
+            expected.remove(id);
+        }
+        index.add(1L, centres.get(0));
+        expected.put(1L, centres.get(0));
+        assertThat(index.remove(-1L)).isFalse();
+        assertThat(index.size()).isEqualTo(expected.size());
+
+        for (int query = 0; query < 20; query++) {
+            long probe = centres.get(query) ^ (1L << query);
+            for (int radius : new int[]{0, 3, 8}) {
+                List<IndexMatch> matches = index.search(probe, radius, Integer.MAX_VALUE);
+                long bruteForce = expected.values().stream().filter(h -> Long.bitCount(h ^ probe) <= radius).count();
+                assertThat(matches).hasSize((int) bruteForce);
+                for (IndexMatch match : matches) {
+                    assertThat(expected.get(match.getId())).isEqualTo(Fingerprint.fromHex(match.getFingerprint()).value());
+                    assertThat(match.getDistance()).isLessThanOrEqualTo(radius);
+                }
+                assertThat(matches).isSortedAccordingTo(IndexMatch.BY_DISTANCE);
+            }
+        }
+        assertThat(index.search(centres.get(0), 8, 5)).hasSizeLessThanOrEqualTo(5);
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.imagefingerprint;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FingerprintMetricsTest {
+
+    @Test
+    void timesEveryStageAndRecordsImageSize() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ImageService service = new ImageService(new FingerprintProperties(), new FingerprintMetrics(registry));
+        byte[] png = ImageServiceTest.encode(ImageServiceTest.testImage(200, 150), "png");
+
+        service.fingerprint(new ByteArrayInputStream(png), "png", FingerprintAlgorithms.PERCEPTUAL);
+        service.calculateSimilarity("0000000000000000", "000000000000000f");
+
+        for (String stage : new String[]{"decode", "resize", "hash", "compare"}) {
+            assertThat(registry.get("image.fingerprint.stage").tag("stage", stage).timer().count()).as(stage).isEqualTo(1);
+        }
+        assertThat(registry.get("image.fingerprint.stage").tags("stage", "hash", "algorithm", "phash").timer().count())
+                .isEqualTo(1);
+        assertThat(registry.get("image.fingerprint.image.dimension").tag("dimension", "width").summary().totalAmount())
+                .isEqualTo(200);
+        assertThat(registry.get("image.fingerprint.image.dimension").tag("dimension", "height").summary().totalAmount())
+                .isEqualTo(150);
+        assertThat(registry.get("image.fingerprint.image.size").summary().totalAmount()).isPositive();
+    }
+
+    @Test
+    void recordsLocalFilesThroughTheInstancePipeline(@TempDir Path directory) throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        FingerprintProperties properties = new FingerprintProperties();
+        properties.getAdmission().setMemoryBudget(1024);
+        ImageService service = new ImageService(properties, new FingerprintMetrics(registry));
+        Path file = Files.write(directory.resolve("a.png"), ImageServiceTest.encode(ImageServiceTest.testImage(200, 150), "png"));
+
+        // The 1 KiB budget is too small for the decode, so admission control applies
+        assertThatThrownBy(() -> service.fingerprint(file.toString())).isInstanceOf(DecodeRejectedException.class);
+        assertThat(registry.get("image.fingerprint.errors").tag("cause", "too-large").counter().count()).isEqualTo(1);
+
+        assertThat(new ImageService(new FingerprintProperties(), new FingerprintMetrics(registry)).fingerprint(file.toString()))
+                .isEqualTo(ImageService.computeFingerprint(file.toString()));
+        assertThat(registry.get("image.fingerprint.stage").tag("stage", "decode").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void countsErrorsByCause() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ImageService service = new ImageService(new FingerprintProperties(), new FingerprintMetrics(registry));
+
+        assertThatThrownBy(() -> service.fingerprint(new ByteArrayInputStream(new byte[]{1, 2, 3}), "garbage"));
+        assertThatThrownBy(() -> service.fingerprint(new ByteArrayInputStream(ImageProbeTest.pngHeader(100_000, 100_000)), "bomb"))
+                .isInstanceOf(DecodeRejectedException.class);
+
+        assertThat(registry.get("image.fingerprint.errors").tag("cause", FingerprintMetrics.UNSUPPORTED).counter().count())
+                .isEqualTo(1);
+        assertThat(registry.get("image.fingerprint.errors").tag("cause", "too-large").counter().count()).isEqualTo(1);
+        assertThat(FingerprintMetrics.cause(new DecodeRejectedException("busy", 1, true))).isEqualTo("busy");
+    }
+}
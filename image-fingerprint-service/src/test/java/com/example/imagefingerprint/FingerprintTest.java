@@ -0,0 +1,37 @@
+package com.example.imagefingerprint;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FingerprintTest {
+
+    @Test
+    void hexRoundTripKeepsLeadingZeros() {
+        Fingerprint fingerprint = Fingerprint.fromHex("00ff00000000000a");
+        assertThat(fingerprint.value()).isEqualTo(0x00ff00000000000aL);
+        assertThat(fingerprint.toHex()).isEqualTo("00ff00000000000a");
+        assertThat(Fingerprint.toHex(-1L)).isEqualTo("ffffffffffffffff");
+    }
+
+    @Test
+    void byteRoundTrip() {
+        Fingerprint fingerprint = new Fingerprint(0x8123456789abcdefL);
+        assertThat(Fingerprint.fromBytes(fingerprint.toBytes())).isEqualTo(fingerprint);
+    }
+
+    @Test
+    void similarityUsesHammingDistance() {
+        assertThat(Fingerprint.distance(0L, 0xFL)).isEqualTo(4);
+        assertThat(Fingerprint.similarity(0L, -1L)).isEqualTo(0.0);
+        assertThat(new ImageService().calculateSimilarity("0000000000000000", "000000000000000f"))
+                .isEqualTo(1.0 - 4.0 / 64);
+    }
+
+    @Test
+    void rejectsInvalidHex() {
+        assertThatThrownBy(() -> Fingerprint.parseHex("xyz")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> Fingerprint.parseHex("000000000000000g")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.imagefingerprint;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FrameDecoderTest {
+
+    private final ImageService service = new ImageService();
+
+    @Test
+    void fingerprintsSampledPagesLikeSingleImages() throws IOException {
+        List<BufferedImage> pages = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            pages.add(quadrants(400 + 40 * i, 300, i));
+        }
+        ByteBuffer tiff = ByteBuffer.wrap(sequence("tiff", pages, null));
+
+        FrameFingerprints frames = service.fingerprintFrames(tiff, "tiff", FingerprintAlgorithms.AVERAGE, 2, 2);
+        assertThat(frames.frames()).extracting(FrameFingerprints.Frame::index).containsExactly(0, 2);
+        assertThat(frames.truncated()).isTrue();
+        for (FrameFingerprints.Frame frame : frames.frames()) {
+            assertThat(frame.fingerprint()).isEqualTo(single(pages.get(frame.index())));
+        }
+
+        FrameFingerprints all = service.fingerprintFrames(tiff, "tiff", FingerprintAlgorithms.AVERAGE, 2, 10);
+        assertThat(all.frames()).extracting(FrameFingerprints.Frame::index).containsExactly(0, 2, 4);
+        assertThat(all.truncated()).isFalse();
+    }
+
+    @Test
+    void capsRequestedFramesAtTheConfiguredMaximum() throws IOException {
+        List<BufferedImage> pages = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            pages.add(quadrants(200, 150, i));
+        }
+        FingerprintProperties properties = new FingerprintProperties();
+        properties.getFrames().setMaxFrames(2);
+
+        FrameFingerprints frames = new ImageService(properties).fingerprintFrames(
+                ByteBuffer.wrap(sequence("tiff", pages, null)), "tiff", FingerprintAlgorithms.AVERAGE, 1, Integer.MAX_VALUE);
+        assertThat(frames.frames()).extracting(FrameFingerprints.Frame::index).containsExactly(0, 1);
+        assertThat(frames.truncated()).isTrue();
+    }
+
+    @Test
+    void drawsGifFramesOntoTheCanvasBeforeHashing() throws IOException {
+        BufferedImage background = quadrants(160, 120, 0);
+        BufferedImage patch = new BufferedImage(80, 60, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = patch.createGraphics();
+        graphics.setColor(Color.BLUE);
+        graphics.fillRect(0, 0, 80, 60);
+        graphics.dispose();
+        BufferedImage composite = quadrants(160, 120, 0);
+        graphics = composite.createGraphics();
+        graphics.drawImage(patch, 80, 60, null);
+        graphics.dispose();
+
+        List<BufferedImage> frames = List.of(background, patch, patch, patch);
+        int[][] positions = {{0, 0}, {80, 60}, {80, 60}, {80, 60}};
+        FrameFingerprints fingerprints = service.fingerprintFrames(ByteBuffer.wrap(sequence("gif", frames, positions)),
+                "gif", FingerprintAlgorithms.AVERAGE, null, null);
+
+        assertThat(fingerprints.frames()).hasSize(4);
+        assertThat(fingerprints.frames().get(0).fingerprint()).isEqualTo(single(background));
+        assertThat(fingerprints.frames().get(1).fingerprint()).isEqualTo(single(composite))
+                .isNotEqualTo(fingerprints.frames().get(0).fingerprint());
+        // Three of the four frames show the composite
+        assertThat(fingerprints.sequence()).isEqualTo(single(composite));
+    }
+
+    @Test
+    void checksEveryGifFrameBeforeDecodingIt() throws IOException {
+        BufferedImage huge = quadrants(2000, 2000, 1);
+        byte[] gif = sequence("gif", List.of(quadrants(200, 150, 0), huge), new int[][]{{0, 0}, {0, 0}});
+
+        FingerprintProperties properties = new FingerprintProperties();
+        properties.getProbe().setMaxPixels(1_000_000);
+        assertThatThrownBy(() -> new ImageService(properties).fingerprintFrames(ByteBuffer.wrap(gif), "gif",
+                FingerprintAlgorithms.AVERAGE, null, null))
+                .isInstanceOf(DecodeRejectedException.class)
+                .hasMessageContaining("2000x2000");
+
+        // The canvas fits the budget, the second frame does not
+        try (ImageInputStream input = new ByteBufferImageInputStream(ByteBuffer.wrap(gif))) {
+            assertThatThrownBy(() -> FrameDecoder.decode(input, 8, 8, 1, 10, 0, new DecodeBudget(4_000_000, 0),
+                    (index, frame) -> { }))
+                    .isInstanceOf(DecodeRejectedException.class)
+                    .satisfies(e -> assertThat(((DecodeRejectedException) e).isRetryable()).isFalse());
+        }
+    }
+
+    @Test
+    void singleImagesHaveOneFrame() throws IOException {
+        BufferedImage image = ImageServiceTest.testImage(200, 150);
+        FrameFingerprints frames = service.fingerprintFrames(ByteBuffer.wrap(ImageServiceTest.encode(image, "png")),
+                "png", FingerprintAlgorithms.AVERAGE, null, null);
+        assertThat(frames.frames()).hasSize(1);
+        assertThat(frames.sequence()).isEqualTo(frames.frames().get(0).fingerprint()).isEqualTo(single(image));
+    }
+
+    private WideFingerprint single(BufferedImage image) throws IOException {
+        return service.fingerprint(ByteBuffer.wrap(ImageServiceTest.encode(image, "png")), "png", FingerprintAlgorithms.AVERAGE);
+    }
+
+    /**
+     * Four flat quadrants in colors exact in any GIF palette, rotated by shift.
+     */
+    private static BufferedImage quadrants(int width, int height, int shift) {
+        Color[] colors = {Color.BLACK, Color.WHITE, Color.RED, Color.GREEN};
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        for (int i = 0; i < 4; i++) {
+            graphics.setColor(colors[(i + shift) % 4]);
+            graphics.fillRect(i % 2 * width / 2, i / 2 * height / 2, width / 2, height / 2);
+        }
+        graphics.dispose();
+        return image;
+    }
+
+    /**
+     * Writes the images as the frames of one file. GIF frames are placed at positions, when given, and
+     * left on the canvas by the next frame.
+     */
+    static byte[] sequence(String format, List<BufferedImage> images, int[][] positions) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName(format).next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(output);
+            writer.prepareWriteSequence(null);
+            for (int i = 0; i < images.size(); i++) {
+                BufferedImage image = images.get(i);
+                IIOMetadata metadata = null;
+                if (positions != null) {
+                    metadata = writer.getDefaultImageMetadata(ImageTypeSpecifier.createFromRenderedImage(image), null);
+                    IIOMetadataNode root = new IIOMetadataNode("javax_imageio_gif_image_1.0");
+                    IIOMetadataNode descriptor = new IIOMetadataNode("ImageDescriptor");
+                    descriptor.setAttribute("imageLeftPosition", String.valueOf(positions[i][0]));
+                    descriptor.setAttribute("imageTopPosition", String.valueOf(positions[i][1]));
+                    descriptor.setAttribute("imageWidth", String.valueOf(image.getWidth()));
+                    descriptor.setAttribute("imageHeight", String.valueOf(image.getHeight()));
+                    descriptor.setAttribute("interlaceFlag", "FALSE");
+                    root.appendChild(descriptor);
+                    IIOMetadataNode control = new IIOMetadataNode("GraphicControlExtension");
+                    control.setAttribute("disposalMethod", "doNotDispose");
+                    control.setAttribute("userInputFlag", "FALSE");
+                    control.setAttribute("transparentColorFlag", "FALSE");
+                    control.setAttribute("delayTime", "10");
+                    control.setAttribute("transparentColorIndex", "0");
+                    root.appendChild(control);
+                    metadata.mergeTree("javax_imageio_gif_image_1.0", root);
+                }
+                writer.writeToSequence(new IIOImage(image, null, metadata), null);
+            }
+            writer.endWriteSequence();
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.imagefingerprint;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GrayscaleReducerTest {
+
+    private static final int[] RGB_TYPES = {
+            BufferedImage.TYPE_INT_RGB,
+            BufferedImage.TYPE_INT_ARGB,
+            BufferedImage.TYPE_INT_BGR,
+            BufferedImage.TYPE_3BYTE_BGR,
+            BufferedImage.TYPE_4BYTE_ABGR
+    };
+
+    @Test
+    void rgbLayoutsMatchReferenceAverage() {
+        for (int type : RGB_TYPES) {
+            BufferedImage image = randomImage(37, 23, type);
+            assertThat(GrayscaleReducer.supports(image)).as("type %s", type).isTrue();
+            assertThat(GrayscaleReducer.reduce(image, 8, 8)).as("type %s", type).containsExactly(referenceReduce(image, 8, 8));
+        }
+    }
+
+    @Test
+    void grayLayoutAveragesRawSamples() {
+        BufferedImage image = new BufferedImage(16, 16, BufferedImage.TYPE_BYTE_GRAY);
+        for (int y = 0; y < 16; y++) {
+            for (int x = 0; x < 16; x++) {
+                image.getRaster().setSample(x, y, 0, x < 8 ? 10 : 200);
+            }
+        }
+        int[] reduced = GrayscaleReducer.reduce(image, 2, 2);
+        assertThat(reduced).containsExactly(10, 200, 10, 200);
+    }
+
+    @Test
+    void subImagesHonourRasterTranslation() {
+        BufferedImage image = randomImage(64, 48, BufferedImage.TYPE_3BYTE_BGR);
+        BufferedImage sub = image.getSubimage(5, 7, 40, 30);
+        assertThat(GrayscaleReducer.reduce(sub, 8, 8)).containsExactly(referenceReduce(sub, 8, 8));
+    }
+
+    @Test
+    void tilesAccumulateToTheSameResultAsTheWholeImage() {
+        BufferedImage image = randomImage(50, 41, BufferedImage.TYPE_INT_RGB);
+        long[] sums = new long[64];
+        int[] counts = new int[64];
+        GrayscaleReducer.accumulate(image.getSubimage(0, 0, 50, 20), 0, 0, 50, 41, 8, 8, sums, counts);
+        GrayscaleReducer.accumulate(image.getSubimage(0, 20, 50, 21), 0, 20, 50, 41, 8, 8, sums, counts);
+        assertThat(GrayscaleReducer.average(sums, counts, new int[64])).containsExactly(GrayscaleReducer.reduce(image, 8, 8));
+    }
+
+    private static BufferedImage randomImage(int width, int height, int type) {
+        Random random = new Random(width * 31L + height + type);
+        BufferedImage image = new BufferedImage(width, height, type);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, 0xFF000000 | random.nextInt(0x1000000));
+            }
+        }
+        return image;
+    }
+
+    private static int[] referenceReduce(BufferedImage image, int gridWidth, int gridHeight) {
+        long[] sums = new long[gridWidth * gridHeight];
+        int[] counts = new int[gridWidth * gridHeight];
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                int rgb = image.getRGB(x, y);
+                int cell = (y * gridHeight / image.getHeight()) * gridWidth + x * gridWidth / image.getWidth();
+                sums[cell] += GrayscaleReducer.luminance((rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF);
+                counts[cell]++;
+            }
+        }
+        return GrayscaleReducer.average(sums, counts, new int[sums.length]);
+    }
+}
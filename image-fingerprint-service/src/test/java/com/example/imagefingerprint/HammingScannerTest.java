@@ -0,0 +1,52 @@
+package com.example.imagefingerprint;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HammingScannerTest {
+
+    @Test
+    void topKMatchesSortedReference() {
+        Random random = new Random(7);
+        long query = random.nextLong();
+        long[] hashes = new long[10_003];
+        for (int i = 0; i < hashes.length; i++) {
+            long hash = query;
+            for (int flips = random.nextInt(40); flips > 0; flips--) {
+                hash ^= 1L << random.nextInt(64);
+            }
+            hashes[i] = hash;
+        }
+
+        for (int k : new int[]{1, 10, 500}) {
+            for (int maxDistance : new int[]{4, 16, 64}) {
+                int[] expected = IntStream.range(1, hashes.length - 1)
+                        .filter(i -> Long.bitCount(query ^ hashes[i]) <= maxDistance)
+                        .boxed()
+                        .sorted(Comparator.<Integer>comparingInt(i -> Long.bitCount(query ^ hashes[i])).thenComparingInt(i -> i))
+                        .limit(k)
+                        .mapToInt(Integer::intValue)
+                        .toArray();
+
+                HammingScanner.TopK top = HammingScanner.scan(query, hashes, 1, hashes.length - 1, maxDistance, k);
+                int[] positions = IntStream.range(0, top.size()).map(top::position).toArray();
+                assertThat(positions).as("k=%d maxDistance=%d", k, maxDistance).containsExactly(expected);
+                for (int i = 0; i < top.size(); i++) {
+                    assertThat(top.distance(i)).isEqualTo(Long.bitCount(query ^ hashes[top.position(i)]));
+                }
+            }
+        }
+    }
+
+    @Test
+    void countsFingerprintsWithinDistance() {
+        long[] hashes = {0L, 1L, 3L, 7L, 15L, -1L};
+        assertThat(HammingScanner.countWithin(0L, hashes, 0, hashes.length, 2)).isEqualTo(3);
+        assertThat(HammingScanner.countWithin(0L, hashes, 1, 5, 64)).isEqualTo(4);
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.imagefingerprint;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HashWorkspaceTest {
+
+    @Test
+    void reusedArraysGiveTheSameFingerprints() throws Exception {
+        BufferedImage image = ImageServiceTest.testImage(300, 200);
+        HashWorkspace workspace = HashWorkspace.current();
+        for (int round = 0; round < 2; round++) {
+            for (String name : new String[]{"ahash", "dhash", "phash", "whash"}) {
+                for (int bits : new int[]{64, 256}) {
+                    FingerprintAlgorithm algorithm = FingerprintAlgorithms.forName(name, bits);
+                    long[] expected = new long[bits / Long.SIZE];
+                    algorithm.hash(GrayscaleReducer.reduce(image, algorithm.sampleWidth(), algorithm.sampleHeight()), expected);
+                    assertThat(ImageService.hash(image, algorithm)).as("%s %d", name, bits).containsExactly(expected);
+                    assertThat(ImageService.resizeAndGrayscale(image, algorithm.sampleWidth(), algorithm.sampleHeight(), workspace))
+                            .isSameAs(workspace.luminance(algorithm.sampleWidth() * algorithm.sampleHeight()));
+                }
+            }
+        }
+    }
+
+    @Test
+    void steadyStateHashingDoesNotAllocate() throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        BufferedImage image = ImageServiceTest.testImage(128, 128);
+        FingerprintAlgorithm algorithm = FingerprintAlgorithms.PERCEPTUAL;
+        HashWorkspace workspace = HashWorkspace.current();
+        long[] out = new long[1];
+        for (int i = 0; i < 200; i++) {
+            algorithm.hash(ImageService.resizeAndGrayscale(image, 32, 32, workspace), out);
+        }
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 1000; i++) {
+            algorithm.hash(ImageService.resizeAndGrayscale(image, 32, 32, workspace), out);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+        // Fresh arrays would be about 20 KB per image; allow a few bytes per image for the harness
+        assertThat(allocated).isLessThan(1000 * 16L);
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.imagefingerprint;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ImageBufferPoolTest {
+
+    @Test
+    void readsWholeStreamsAndReusesBuffers() throws Exception {
+        ImageBufferPool pool = new ImageBufferPool(2, 64 * 1024, 16);
+        byte[] data = new byte[10_000];
+        new Random(3).nextBytes(data);
+
+        ByteBuffer first;
+        try (ImageBufferPool.Content content = pool.read(new ByteArrayInputStream(data), -1)) {
+            assertThat(content.length()).isEqualTo(data.length);
+            first = content.buffer();
+            byte[] copy = new byte[first.remaining()];
+            first.duplicate().get(copy);
+            assertThat(copy).isEqualTo(data);
+        }
+        assertThat(pool.pooledBytes()).isGreaterThanOrEqualTo(data.length);
+
+        try (ImageBufferPool.Content content = pool.read(new ByteArrayInputStream(data), data.length)) {
+            assertThat(content.buffer().array()).isSameAs(first.array());
+            assertThat(pool.pooledBytes()).isLessThan(data.length);
+        }
+    }
+
+    @Test
+    void keepsOnlyBuffersUpToTheMaximumSize() throws Exception {
+        ImageBufferPool pool = new ImageBufferPool(2, 1024, 16);
+        pool.read(new ByteArrayInputStream(new byte[4096]), 4096).close();
+        assertThat(pool.pooledBytes()).isLessThanOrEqualTo(1024);
+    }
+
+    @Test
+    void fingerprintsFromPooledBuffersWithoutImageIoFileCache() throws Exception {
+        boolean useCache = ImageIO.getUseCache();
+        ImageService service = new ImageService();
+        // Only the application's service applies the setting; other instances leave the process-wide switch alone
+        assertThat(ImageIO.getUseCache()).isEqualTo(useCache);
+        service.configureImageIo();
+        assertThat(ImageIO.getUseCache()).isFalse();
+        byte[] png = ImageServiceTest.encode(ImageServiceTest.testImage(200, 150), "png");
+        assertThat(service.fingerprint(new ByteArrayInputStream(png), "png", FingerprintAlgorithms.AVERAGE, png.length).toFingerprint())
+                .isEqualTo(ImageService.computeFingerprint(new ByteArrayInputStream(png)));
+        assertThat(service.bufferPool().pooledBytes()).isGreaterThan(png.length);
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.imagefingerprint;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.hasLength;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "image.fingerprint.admission.max-wait-millis=50")
+@AutoConfigureMockMvc
+class ImageControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ImageService imageService;
+
+    @Test
+    void fingerprintsSingleUpload() throws Exception {
+        byte[] png = ImageServiceTest.encode(ImageServiceTest.testImage(200, 150), "png");
+        mockMvc.perform(multipart("/api/image/fingerprint").file(new MockMultipartFile("file", "a.png", "image/png", png)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.fingerprint").value(ImageService.calculateFingerprint(new ByteArrayInputStream(png))));
+    }
+
+    @Test
+    void appliesTheImageIoCacheSettingAtStartup() {
+        assertThat(ImageIO.getUseCache()).isFalse();
+    }
+
+    @Test
+    void fingerprintsWithRequestedAlgorithm() throws Exception {
+        byte[] png = ImageServiceTest.encode(ImageServiceTest.testImage(200, 150), "png");
+        String expected = new ImageService().fingerprint(new ByteArrayInputStream(png), "png", FingerprintAlgorithms.PERCEPTUAL).toHex();
+        mockMvc.perform(multipart("/api/image/fingerprint").file(new MockMultipartFile("file", "a.png", "image/png", png))
+                        .param("algorithm", "phash"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.algorithm").value("phash"))
+                .andExpect(jsonPath("$.fingerprint").value(expected));
+        mockMvc.perform(multipart("/api/image/fingerprint").file(new MockMultipartFile("file", "a.png", "image/png", png))
+                        .param("algorithm", "nope"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(multipart("/api/image/fingerprint").file(new MockMultipartFile("file", "a.png", "image/png", png))
+                        .param("algorithm", "dhash").param("bits", "256"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.bits").value(256))
+                .andExpect(jsonPath("$.fingerprint").value(hasLength(64)));
+    }
+
+    @Test
+    void answers503WhileTheDecodeBudgetIsTaken() throws Exception {
+        byte[] png = ImageServiceTest.encode(ImageServiceTest.testImage(210, 150), "png");
+        DecodeBudget budget = imageService.decodeBudget();
+        int reservation = budget.reserve(budget.budgetBytes());
+        try {
+            mockMvc.perform(multipart("/api/image/fingerprint").file(new MockMultipartFile("file", "a.png", "image/png", png)))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(header().string("Retry-After", "1"));
+        } finally {
+            budget.release(reservation);
+        }
+        mockMvc.perform(multipart("/api/image/fingerprint").file(new MockMultipartFile("file", "a.png", "image/png", png)))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void probesHeadersAndReportsTheRoute() throws Exception {
+        byte[] png = ImageServiceTest.encode(ImageServiceTest.testImage(1200, 900), "png");
+        mockMvc.perform(multipart("/api/image/probe").file(new MockMultipartFile("file", "a.png", "image/png", png)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.image.format").value("png"))
+                .andExpect(jsonPath("$.image.width").value(1200))
+                .andExpect(jsonPath("$.strategy").value("subsampled"))
+                .andExpect(jsonPath("$.accepted").value(true));
+        byte[] bomb = ImageProbeTest.pngHeader(100_000, 100_000);
+        mockMvc.perform(multipart("/api/image/probe").file(new MockMultipartFile("file", "bomb.png", "image/png", bomb)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted").value(false));
+        mockMvc.perform(multipart("/api/image/fingerprint").file(new MockMultipartFile("file", "bomb.png", "image/png", bomb)))
+                .andExpect(status().isPayloadTooLarge());
+    }
+
+    @Test
+    void exposesStageTimersAndPoolGauges() throws Exception {
+        byte[] png = ImageServiceTest.encode(ImageServiceTest.testImage(220, 150), "png");
+        mockMvc.perform(multipart("/api/image/fingerprint").file(new MockMultipartFile("file", "a.png", "image/png", png)))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/actuator/metrics/image.fingerprint.stage").param("tag", "stage:decode"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.baseUnit").value("seconds"));
+        mockMvc.perform(get("/actuator/metrics/executor.queued").param("tag", "name:fingerprint-cpu"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/actuator/metrics/image.fingerprint.decode.available"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void fingerprintsSampledFrames() throws Exception {
+        List<BufferedImage> pages = List.of(ImageServiceTest.testImage(200, 150),
+                ImageServiceTest.testImage(150, 200), ImageServiceTest.testImage(200, 150));
+        byte[] tiff = FrameDecoderTest.sequence("tiff", pages, null);
+        mockMvc.perform(multipart("/api/image/fingerprint/frames").file(new MockMultipartFile("file", "a.tiff", "image/tiff", tiff))
+                        .param("step", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.sequence", hasLength(16)))
+                .andExpect(jsonPath("$.truncated").value(false))
+                .andExpect(jsonPath("$.frames.length()").value(2))
+                .andExpect(jsonPath("$.frames[1].index").value(2));
+        mockMvc.perform(multipart("/api/image/fingerprint/frames").file(new MockMultipartFile("file", "a.tiff", "image/tiff", tiff))
+                        .param("maxFrames", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void batchReportsPerItemResults() throws Exception {
+        byte[] png = ImageServiceTest.encode(ImageServiceTest.testImage(200, 150), "png");
+        mockMvc.perform(multipart("/api/image/fingerprint/batch")
+                        .file(new MockMultipartFile("files", "good.png", "image/png", png))
+                        .file(new MockMultipartFile("files", "bad.png", "image/png", new byte[]{1, 2, 3})))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.succeeded").value(1))
+                .andExpect(jsonPath("$.failed").value(1))
+                .andExpect(jsonPath("$.results[0].source").value("good.png"))
+                .andExpect(jsonPath("$.results[0].fingerprint").isString())
+                .andExpect(jsonPath("$.results[1].error").isString());
+    }
+
+    @Test
+    void batchOfMissingLocalPathsReportsErrors() throws Exception {
+        mockMvc.perform(post("/api/image/fingerprint/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"filePaths\": [\"/does/not/exist.jpg\"]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.failed").value(1))
+                .andExpect(jsonPath("$.results[0].error").value("File not found: /does/not/exist.jpg"));
+    }
+
+    @Test
+    void rejectsMalformedLocalPaths() throws Exception {
+        mockMvc.perform(post("/api/image/fingerprint-local")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"filePath\": \"/tmp/a\\u0000.png\"}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Invalid file path: Nul character not allowed"));
+    }
+
+    @Test
+    void similarityRejectsInvalidFingerprints() throws Exception {
+        mockMvc.perform(post("/api/image/similarity")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"fingerprint1\": \"abc\", \"fingerprint2\": \"0000000000000000\"}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").isString());
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.imagefingerprint;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ImageProbeTest {
+
+    @Test
+    void readsHeaderFieldsWithoutDecoding() throws IOException {
+        ImageProbe png = ImageProbe.probe(new ByteArrayInputStream(ImageServiceTest.encode(ImageServiceTest.testImage(640, 480), "png")));
+        assertThat(png.getFormat()).isEqualTo("png");
+        assertThat(png.getWidth()).isEqualTo(640);
+        assertThat(png.getHeight()).isEqualTo(480);
+        assertThat(png.getColorSpace()).isEqualTo("rgb");
+        assertThat(png.getBitsPerPixel()).isEqualTo(24);
+        assertThat(png.getAlpha()).isFalse();
+
+        ImageProbe jpeg = ImageProbe.probe(new ByteArrayInputStream(ImageServiceTest.encode(ImageServiceTest.testImage(300, 200), "jpg")));
+        assertThat(jpeg.getFormat()).isEqualTo("jpeg");
+        assertThat(jpeg.getWidth()).isEqualTo(300);
+        assertThat(ImageProbe.probe(new ByteArrayInputStream(new byte[]{1, 2, 3}))).isNull();
+    }
+
+    @Test
+    void rejectsDecompressionBombsFromTheHeader() throws IOException {
+        byte[] bomb = pngHeader(100_000, 100_000);
+        assertThat(ImageProbe.probe(new ByteArrayInputStream(bomb)).pixels()).isEqualTo(10_000_000_000L);
+        ImageService service = new ImageService();
+        assertThatThrownBy(() -> service.fingerprint(new ByteArrayInputStream(bomb), "bomb"))
+                .isInstanceOf(DecodeRejectedException.class)
+                .hasMessageContaining("100000x100000")
+                .satisfies(e -> assertThat(((DecodeRejectedException) e).isRetryable()).isFalse());
+    }
+
+    @Test
+    void routesToTheCheapestStrategyThatServesTheHash() throws IOException {
+        ImageProbe small = ImageProbe.probe(new ByteArrayInputStream(ImageServiceTest.encode(ImageServiceTest.testImage(100, 80), "jpg")));
+        ImageProbe large = ImageProbe.probe(new ByteArrayInputStream(ImageServiceTest.encode(ImageServiceTest.testImage(1200, 900), "jpg")));
+        FingerprintProperties properties = new FingerprintProperties();
+        ImageService service = new ImageService(properties);
+        assertThat(service.route(small, FingerprintAlgorithms.AVERAGE)).isEqualTo(DecodeStrategy.FULL);
+        assertThat(service.route(large, FingerprintAlgorithms.AVERAGE)).isEqualTo(DecodeStrategy.SUBSAMPLED);
+        properties.setUseEmbeddedThumbnail(true);
+        assertThat(service.route(large, FingerprintAlgorithms.AVERAGE)).isEqualTo(DecodeStrategy.THUMBNAIL);
+        assertThat(service.route(small, FingerprintAlgorithms.AVERAGE)).isEqualTo(DecodeStrategy.FULL);
+
+        // PNG readers discard the stream behind the header, so PNGs must not be sent looking for thumbnails
+        byte[] png = ImageServiceTest.encode(ImageServiceTest.testImage(1200, 900), "png");
+        assertThat(service.fingerprint(new ByteArrayInputStream(png), "png"))
+                .isEqualTo(ImageService.computeFingerprint(new ByteArrayInputStream(png)));
+    }
+
+    /**
+     * A PNG made of a signature and an IHDR chunk declaring the given size, with no image data.
+     */
+    static byte[] pngHeader(int width, int height) throws IOException {
+        ByteArrayOutputStream chunk = new ByteArrayOutputStream();
+        DataOutputStream ihdr = new DataOutputStream(chunk);
+        ihdr.write("IHDR".getBytes(StandardCharsets.US_ASCII));
+        ihdr.writeInt(width);
+        ihdr.writeInt(height);
+        ihdr.write(new byte[]{8, 2, 0, 0, 0});
+        byte[] typeAndData = chunk.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(typeAndData);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.write(new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'});
+        out.writeInt(typeAndData.length - 4);
+        out.write(typeAndData);
+        out.writeInt((int) crc.getValue());
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.imagefingerprint;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ImageServiceTest {
+
+    @Test
+    void subsampledDecodeIsSizedToTheHashGrid() throws IOException {
+        byte[] png = encode(testImage(1024, 768), "png");
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(png))) {
+            BufferedImage decoded = ImageDecoder.decode(input, 64, 64);
+            assertThat(decoded.getWidth()).isEqualTo(64);
+            assertThat(decoded.getHeight()).isEqualTo(64);
+        }
+    }
+
+    @Test
+    void subsampledFingerprintMatchesFullResolutionHash() throws IOException {
+        BufferedImage image = testImage(1024, 768);
+        long full = ImageService.calculateBinaryHash(GrayscaleReducer.reduce(image, 8, 8));
+        Fingerprint decoded = ImageService.computeFingerprint(new ByteArrayInputStream(encode(image, "png")));
+        assertThat(Fingerprint.distance(full, decoded.value())).isLessThanOrEqualTo(2);
+    }
+
+    @Test
+    void sameImageInDifferentFormatsIsSimilar() throws IOException {
+        BufferedImage image = testImage(640, 480);
+        Fingerprint png = ImageService.computeFingerprint(new ByteArrayInputStream(encode(image, "png")));
+        Fingerprint jpeg = ImageService.computeFingerprint(new ByteArrayInputStream(encode(image, "jpg")));
+        assertThat(png.similarityTo(jpeg)).isGreaterThanOrEqualTo(0.9);
+    }
+
+    @Test
+    void embeddedExifThumbnailIsUsedWhenEnabled() throws IOException {
+        byte[] jpeg = withExifThumbnail(encode(testImage(1600, 1200), "jpg"), encode(testImage(160, 120), "jpg"));
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(jpeg))) {
+            BufferedImage thumbnail = EmbeddedThumbnails.read(input, 64);
+            assertThat(thumbnail.getWidth()).isEqualTo(160);
+            assertThat(input.getStreamPosition()).isZero();
+        }
+
+        FingerprintProperties properties = new FingerprintProperties();
+        properties.setUseEmbeddedThumbnail(true);
+        Fingerprint fromThumbnail = new ImageService(properties).fingerprint(new ByteArrayInputStream(jpeg), "test");
+        Fingerprint fromFullImage = ImageService.computeFingerprint(new ByteArrayInputStream(jpeg));
+        assertThat(fromThumbnail.distanceTo(fromFullImage)).isLessThanOrEqualTo(4);
+    }
+
+    @Test
+    void thumbnailValidationReportsAgreement(@TempDir Path directory) throws IOException {
+        Path withThumbnail = directory.resolve("with.jpg");
+        Path withoutThumbnail = directory.resolve("without.jpg");
+        Files.write(withThumbnail, withExifThumbnail(encode(testImage(1600, 1200), "jpg"), encode(testImage(160, 120), "jpg")));
+        Files.write(withoutThumbnail, encode(testImage(1600, 1200), "jpg"));
+
+        ThumbnailValidationReport report = new ImageService()
+                .validateEmbeddedThumbnails(Arrays.asList(withThumbnail, withoutThumbnail), 4);
+        assertThat(report.getFilesExamined()).isEqualTo(2);
+        assertThat(report.getFilesWithThumbnail()).isEqualTo(1);
+        assertThat(report.getAgreeing()).isEqualTo(1);
+    }
+
+    /**
+     * Inserts a big-endian EXIF APP1 segment whose IFD1 points at the given thumbnail JPEG,
+     * right after the JFIF APP0 segment.
+     */
+    static byte[] withExifThumbnail(byte[] jpeg, byte[] thumbnail) {
+        ByteBuffer tiff = ByteBuffer.allocate(8 + 6 + 2 + 3 * 12 + 4 + thumbnail.length);
+        tiff.put((byte) 'M').put((byte) 'M').putShort((short) 42).putInt(8);
+        tiff.putShort((short) 0).putInt(14); // IFD0: no entries, IFD1 at offset 14
+        tiff.putShort((short) 3);
+        tiff.putShort((short) 0x0103).putShort((short) 3).putInt(1).putShort((short) 6).putShort((short) 0);
+        tiff.putShort((short) 0x0201).putShort((short) 4).putInt(1).putInt(14 + 2 + 3 * 12 + 4);
+        tiff.putShort((short) 0x0202).putShort((short) 4).putInt(1).putInt(thumbnail.length);
+        tiff.putInt(0);
+        tiff.put(thumbnail);
+
+        int app0End = 4 + (((jpeg[4] & 0xFF) << 8) | (jpeg[5] & 0xFF));
+        int segmentLength = 2 + 6 + tiff.capacity();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(jpeg, 0, app0End);
+        out.write(0xFF);
+        out.write(0xE1);
+        out.write(segmentLength >> 8);
+        out.write(segmentLength);
+        out.write(new byte[]{'E', 'x', 'i', 'f', 0, 0}, 0, 6);
+        out.write(tiff.array(), 0, tiff.capacity());
+        out.write(jpeg, app0End, jpeg.length - app0End);
+        return out.toByteArray();
+    }
+
+    static BufferedImage testImage(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setPaint(new GradientPaint(0, 0, Color.BLACK, width, height, Color.WHITE));
+        graphics.fillRect(0, 0, width, height);
+        graphics.setColor(Color.RED);
+        graphics.fillOval(width / 4, height / 4, width / 3, height / 3);
+        graphics.dispose();
+        return image;
+    }
+
+    static byte[] encode(BufferedImage image, String format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, format, out);
+        return out.toByteArray();
+    }
+}
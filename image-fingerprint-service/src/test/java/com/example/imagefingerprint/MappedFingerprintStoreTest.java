@@ -0,0 +1,122 @@
+package com.example.imagefingerprint;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MappedFingerprintStoreTest {
+
+    @Test
+    void recordsSurviveReopenAcrossSegments(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("fingerprints.store");
+        try (MappedFingerprintStore store = MappedFingerprintStore.open(file, 4)) {
+            for (long id = 0; id < 10; id++) {
+                store.append(id, id * 31, id == 3 ? "three" : null);
+            }
+            store.appendDelete(5);
+        }
+        try (MappedFingerprintStore store = MappedFingerprintStore.open(file, 4)) {
+            assertThat(store.recordCount()).isEqualTo(11);
+            assertThat(store.readHash(7)).isEqualTo(7 * 31);
+            assertThat(store.readMetadata(store.readMetadataOffset(3))).isEqualTo("three");
+            assertThat(store.readMetadataOffset(4)).isEqualTo(-1L);
+            assertThat(store.isDeleted(10)).isTrue();
+            assertThat(store.readId(10)).isEqualTo(5);
+
+            List<Long> ids = new ArrayList<>();
+            store.forEach((id, hash, metadataOffset, deleted) -> ids.add(id));
+            assertThat(ids).hasSize(11).startsWith(0L, 1L, 2L);
+        }
+    }
+
+    @Test
+    void tornTailIsDiscardedOnRecovery(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("fingerprints.store");
+        try (MappedFingerprintStore store = MappedFingerprintStore.open(file, 16)) {
+            store.append(1, 11, null);
+            store.append(2, 22, null);
+            store.append(3, 33, null);
+        }
+        // Corrupt the third record as if the process died half way through writing it
+        try (RandomAccessFile raw = new RandomAccessFile(file.toFile(), "rw")) {
+            raw.seek(MappedFingerprintStore.HEADER_SIZE + 2L * MappedFingerprintStore.RECORD_SIZE + 8);
+            raw.writeLong(0xDEADBEEFL);
+        }
+        try (MappedFingerprintStore store = MappedFingerprintStore.open(file, 16)) {
+            assertThat(store.recordCount()).isEqualTo(2);
+            store.append(4, 44, null);
+        }
+        try (MappedFingerprintStore store = MappedFingerprintStore.open(file, 16)) {
+            assertThat(store.recordCount()).isEqualTo(3);
+            assertThat(store.readId(2)).isEqualTo(4);
+        }
+    }
+
+    @Test
+    void recordsPastABlankGapAreNotResurrected(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("fingerprints.store");
+        try (MappedFingerprintStore store = MappedFingerprintStore.open(file, 16)) {
+            for (long id = 1; id <= 5; id++) {
+                store.append(id, id * 11, null);
+            }
+        }
+        // The page holding the second record never reached the disk, the later ones did
+        try (RandomAccessFile raw = new RandomAccessFile(file.toFile(), "rw")) {
+            raw.seek(MappedFingerprintStore.HEADER_SIZE + MappedFingerprintStore.RECORD_SIZE);
+            raw.write(new byte[MappedFingerprintStore.RECORD_SIZE]);
+        }
+        try (MappedFingerprintStore store = MappedFingerprintStore.open(file, 16)) {
+            assertThat(store.recordCount()).isEqualTo(1);
+            store.append(6, 66, null);
+        }
+        try (MappedFingerprintStore store = MappedFingerprintStore.open(file, 16)) {
+            assertThat(store.recordCount()).isEqualTo(2);
+            assertThat(store.readId(1)).isEqualTo(6);
+        }
+    }
+
+    @Test
+    void damagedMetadataLengthReadsAsMissing(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("fingerprints.store");
+        try (MappedFingerprintStore store = MappedFingerprintStore.open(file, 16)) {
+            store.append(1, 11, "one");
+        }
+        try (RandomAccessFile raw = new RandomAccessFile(file + ".meta", "rw")) {
+            raw.writeInt(-7);
+            raw.seek(raw.length());
+            raw.writeInt(Integer.MAX_VALUE);
+        }
+        try (MappedFingerprintStore store = MappedFingerprintStore.open(file, 16)) {
+            assertThat(store.readMetadata(0)).isNull();
+            assertThat(store.readMetadata(7)).isNull();
+        }
+    }
+
+    @Test
+    void indexServiceReloadsFromStore(@TempDir Path directory) throws IOException {
+        FingerprintProperties properties = new FingerprintProperties();
+        properties.getStore().setEnabled(true);
+        properties.getStore().setPath(directory.resolve("index.store").toString());
+
+        FingerprintIndexService service = new FingerprintIndexService(properties);
+        service.add(1, new Fingerprint(0xFFL), "first");
+        service.add(2, new Fingerprint(0xF0L));
+        service.add(1, new Fingerprint(0x0FL), "replaced");
+        assertThat(service.remove(2)).isTrue();
+        service.destroy();
+
+        FingerprintIndexService reloaded = new FingerprintIndexService(properties);
+        assertThat(reloaded.stats()).containsEntry("size", 1);
+        assertThat(reloaded.get(1)).containsEntry("fingerprint", "000000000000000f").containsEntry("metadata", "replaced");
+        assertThat(reloaded.get(2)).isNull();
+        assertThat(reloaded.search(new Fingerprint(0x0FL), 0, 10)).extracting(IndexMatch::getId).containsExactly(1L);
+        reloaded.destroy();
+    }
+}
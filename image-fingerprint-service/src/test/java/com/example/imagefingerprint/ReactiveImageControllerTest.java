@@ -0,0 +1,92 @@
+package com.example.imagefingerprint;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.MultipartBodyBuilder;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.BodyInserters;
+
+import java.io.ByteArrayInputStream;
+
+@SpringBootTest(properties = {"spring.main.web-application-type=reactive", "image.fingerprint.cpu.pool-size=2",
+        "image.fingerprint.cpu.queue-capacity=2"})
+@AutoConfigureWebTestClient
+class ReactiveImageControllerTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private BoundedFingerprintScheduler scheduler;
+
+    @Test
+    void fingerprintsStreamedUploadWithFormFields() throws Exception {
+        byte[] png = ImageServiceTest.encode(ImageServiceTest.testImage(200, 150), "png");
+        String expected = new ImageService().fingerprint(new ByteArrayInputStream(png), "png", FingerprintAlgorithms.PERCEPTUAL).toHex();
+        MultipartBodyBuilder body = new MultipartBodyBuilder();
+        body.part("algorithm", "phash");
+        body.part("file", new ByteArrayResource(png)).filename("a.png").contentType(MediaType.IMAGE_PNG);
+        webTestClient.post().uri("/api/image/fingerprint")
+                .contentType(MediaType.MULTIPART_FORM_DATA)
+                .body(BodyInserters.fromMultipartData(body.build()))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.algorithm").isEqualTo("phash")
+                .jsonPath("$.fingerprint").isEqualTo(expected);
+
+        MultipartBodyBuilder empty = new MultipartBodyBuilder();
+        empty.part("algorithm", "ahash");
+        webTestClient.post().uri("/api/image/fingerprint")
+                .contentType(MediaType.MULTIPART_FORM_DATA)
+                .body(BodyInserters.fromMultipartData(empty.build()))
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void rejectsMalformedLocalPaths() {
+        webTestClient.post().uri("/api/image/fingerprint-local")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"filePath\": \"/tmp/a\\u0000.png\"}")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.error").isEqualTo("Invalid file path: Nul character not allowed");
+    }
+
+    @Test
+    void rejectsUploadsWhileTheSchedulerIsSaturated() throws Exception {
+        byte[] png = ImageServiceTest.encode(ImageServiceTest.testImage(200, 150), "png");
+        MultipartBodyBuilder body = new MultipartBodyBuilder();
+        body.part("file", new ByteArrayResource(png)).filename("a.png").contentType(MediaType.IMAGE_PNG);
+        for (int i = 0; i < scheduler.limit(); i++) {
+            scheduler.tryAcquire();
+        }
+        try {
+            webTestClient.post().uri("/api/image/fingerprint")
+                    .contentType(MediaType.MULTIPART_FORM_DATA)
+                    .body(BodyInserters.fromMultipartData(body.build()))
+                    .exchange()
+                    .expectStatus().isEqualTo(429)
+                    .expectHeader().valueEquals(HttpHeaders.RETRY_AFTER, "1")
+                    .expectBody()
+                    .jsonPath("$.inFlight").isEqualTo(4)
+                    .jsonPath("$.limit").isEqualTo(4);
+        } finally {
+            for (int i = 0; i < scheduler.limit(); i++) {
+                scheduler.release();
+            }
+        }
+        webTestClient.post().uri("/api/image/fingerprint")
+                .contentType(MediaType.MULTIPART_FORM_DATA)
+                .body(BodyInserters.fromMultipartData(body.build()))
+                .exchange()
+                .expectStatus().isOk();
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.imagefingerprint;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TiledDecoderTest {
+
+    @Test
+    void bandsHaveTheSamePixelsAsOneSubsampledDecode() throws IOException {
+        // The JDK TIFF writer stores 8-row strips
+        ByteBuffer tiff = ByteBuffer.wrap(ImageServiceTest.encode(ImageServiceTest.testImage(2000, 1500), "tiff"));
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            BufferedImage tiled = TiledDecoder.decode(new ByteBufferImageInputStream(tiff), 0, 2000, 1500, 8, 31, 23, pool);
+
+            ByteBufferImageInputStream input = new ByteBufferImageInputStream(tiff);
+            ImageReader reader = ImageDecoder.acquireReader(input);
+            reader.setInput(input, true, true);
+            ImageReadParam param = reader.getDefaultReadParam();
+            param.setSourceSubsampling(31, 23, 0, 0);
+            BufferedImage expected = reader.read(0, param);
+            ImageDecoder.releaseReader(reader, true);
+
+            assertThat(tiled.getWidth()).isEqualTo(expected.getWidth());
+            assertThat(tiled.getHeight()).isEqualTo(expected.getHeight());
+            assertThat(tiled.getRGB(0, 0, tiled.getWidth(), tiled.getHeight(), null, 0, tiled.getWidth()))
+                    .isEqualTo(expected.getRGB(0, 0, expected.getWidth(), expected.getHeight(), null, 0, expected.getWidth()));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void routesLargeTiffsToParallelBands() throws IOException {
+        byte[] tiff = ImageServiceTest.encode(ImageServiceTest.testImage(2000, 1500), "tiff");
+        byte[] png = ImageServiceTest.encode(ImageServiceTest.testImage(2000, 1500), "png");
+        FingerprintProperties properties = new FingerprintProperties();
+        properties.getTiled().setMinPixels(1_000_000);
+        ImageService service = new ImageService(properties);
+        try {
+            assertThat(service.route(ImageProbe.probe(new ByteArrayInputStream(tiff)), FingerprintAlgorithms.AVERAGE))
+                    .isEqualTo(DecodeStrategy.TILED);
+            assertThat(service.route(ImageProbe.probe(new ByteArrayInputStream(png)), FingerprintAlgorithms.AVERAGE))
+                    .isEqualTo(DecodeStrategy.SUBSAMPLED);
+
+            FingerprintProperties sequential = new FingerprintProperties();
+            sequential.getTiled().setEnabled(false);
+            for (FingerprintAlgorithm algorithm : new FingerprintAlgorithm[]{FingerprintAlgorithms.AVERAGE,
+                    FingerprintAlgorithms.forName("phash", 256)}) {
+                assertThat(service.fingerprint(ByteBuffer.wrap(tiff), "tiff", algorithm))
+                        .isEqualTo(new ImageService(sequential).fingerprint(ByteBuffer.wrap(tiff), "tiff", algorithm));
+            }
+        } finally {
+            service.destroy();
+        }
+    }
+}
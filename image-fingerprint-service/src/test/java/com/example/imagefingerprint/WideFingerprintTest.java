@@ -0,0 +1,115 @@
+package com.example.imagefingerprint;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class WideFingerprintTest {
+
+    @Test
+    void hexRoundTripForEverySupportedSize() {
+        Random random = new Random(7);
+        for (int bits : new int[]{64, 256, 1024}) {
+            long[] words = randomWords(random, bits / 64);
+            WideFingerprint fingerprint = new WideFingerprint(words);
+            assertThat(fingerprint.toHex()).hasSize(bits / 4);
+            assertThat(WideFingerprint.fromHex(fingerprint.toHex())).isEqualTo(fingerprint);
+            assertThat(fingerprint.bits()).isEqualTo(bits);
+        }
+        assertThat(WideFingerprint.of(new Fingerprint(0x0fL)).toHex()).isEqualTo("000000000000000f");
+        assertThat(WideFingerprint.fromHex("00000000000000ff").toFingerprint().value()).isEqualTo(0xffL);
+    }
+
+    @Test
+    void distanceMatchesBitCountOfEveryWord() {
+        Random random = new Random(11);
+        for (int words : new int[]{1, 4, 16}) {
+            long[] a = randomWords(random, words);
+            long[] b = randomWords(random, words);
+            int expected = 0;
+            for (int i = 0; i < words; i++) {
+                expected += Long.bitCount(a[i] ^ b[i]);
+            }
+            assertThat(WideFingerprint.distance(a, b)).isEqualTo(expected);
+            assertThat(WideFingerprint.boundedDistance(a, 0, b, 0, words, 1000)).isEqualTo(expected);
+            // Past the bound the result only has to exceed it
+            assertThat(WideFingerprint.boundedDistance(a, 0, b, 0, words, 3)).isGreaterThan(3);
+            assertThat(WideFingerprint.similarity(a, a)).isEqualTo(1.0);
+        }
+    }
+
+    @Test
+    void rejectsUnsupportedSizesAndMismatchedLengths() {
+        assertThatThrownBy(() -> WideFingerprint.fromHex("00")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new WideFingerprint(new long[2])).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> WideFingerprint.distance(new long[1], new long[4]))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new ImageService().calculateSimilarity("0000000000000000", repeat('0', 64)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(new ImageService().calculateSimilarity(repeat('0', 64), repeat('0', 63) + "f"))
+                .isEqualTo(1.0 - 4.0 / 256);
+    }
+
+    @Test
+    void wideLinearScanMatchesBruteForce() {
+        Random random = new Random(42);
+        WideLinearScanIndex index = new WideLinearScanIndex(256, 16);
+        Map<Long, long[]> expected = new HashMap<>();
+        List<long[]> centres = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            centres.add(randomWords(random, 4));
+        }
+        for (long id = 0; id < 2_000; id++) {
+            long[] hash = centres.get(random.nextInt(centres.size())).clone();
+            for (int flips = random.nextInt(40); flips > 0; flips--) {
+                int bit = random.nextInt(256);
+                hash[bit >>> 6] ^= 1L << (63 - (bit & 63));
+            }
+            index.add(id, hash);
+            expected.put(id, hash);
+        }
+        for (long id = 0; id < 2_000; id += 3) {
+            assertThat(index.remove(id)).isTrue();
+            expected.remove(id);
+        }
+        assertThat(index.remove(-1L)).isFalse();
+        assertThat(index.size()).isEqualTo(expected.size());
+
+        for (long[] probe : centres) {
+            for (int radius : new int[]{0, 12, 30}) {
+                List<IndexMatch> matches = index.search(probe, radius, Integer.MAX_VALUE);
+                long bruteForce = expected.values().stream().filter(h -> WideFingerprint.distance(h, probe) <= radius).count();
+                assertThat(matches).hasSize((int) bruteForce);
+                for (IndexMatch match : matches) {
+                    assertThat(WideFingerprint.toHex(expected.get(match.getId()))).isEqualTo(match.getFingerprint());
+                    assertThat(match.getDistance()).isLessThanOrEqualTo(radius);
+                }
+                assertThat(matches).isSortedAccordingTo(IndexMatch.BY_DISTANCE);
+            }
+        }
+        assertThat(index.search(centres.get(0), 30, 5)).hasSizeLessThanOrEqualTo(5);
+    }
+
+    private static long[] randomWords(Random random, int words) {
+        long[] result = new long[words];
+        for (int i = 0; i < words; i++) {
+            result[i] = random.nextLong();
+        }
+        return result;
+    }
+
+    private static String repeat(char c, int count) {
+        StringBuilder sb = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+}